@@ -1,65 +1,64 @@
 package hu.trigary.cmcm.library.generator;
 
 import hu.trigary.cmcm.library.utilities.ChunkConverter;
-import hu.trigary.cmcm.library.utilities.Color;
 import hu.trigary.cmcm.library.utilities.FrameInfo;
-import hu.trigary.cmcm.library.utilities.reedsolomon.ReedSolomonEncoder;
+import hu.trigary.cmcm.library.utilities.FrameLayout;
+import hu.trigary.cmcm.library.utilities.ProductLayout;
+import hu.trigary.cmcm.library.utilities.reedsolomon.InterleavedEncoder;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
- * A class that is capable of converting byte data to chunks in the form 4 {@link Color} references.
+ * A class that is capable of converting byte data to content chunks and writing them into frames.
  */
 class ColorQueue {
-	private final Color[] colors = new Color[4];
 	private final int[] dataChunks;
 	private final int[] correctionChunks;
+	private final int codewordCount;
+	private final ProductLayout productLayout;
 	private int[] values;
-	private int index;
 	
 	/**
 	 * Creates a new instance.
 	 *
 	 * @param frameInfo the properties of the frame that will be used
 	 * @param dataBytes the data to include in the frame(s), copied internally
+	 * @param productLayout the layout to use if the frame uses {@link FrameInfo.Layout#PRODUCT}, shared between frames
 	 */
-	ColorQueue(@NotNull FrameInfo frameInfo, @NotNull byte[] dataBytes) {
+	ColorQueue(@NotNull FrameInfo frameInfo, @NotNull byte[] dataBytes, @Nullable ProductLayout productLayout) {
 		dataChunks = new int[frameInfo.getDataChunks()];
-		correctionChunks = new int[frameInfo.getCorrectionChunks()];
+		correctionChunks = new int[productLayout == null ? frameInfo.getCorrectionChunks() : 0];
+		codewordCount = frameInfo.getCodewordCount();
+		this.productLayout = productLayout;
 		ChunkConverter.bytesToChunks(dataBytes, dataChunks);
 	}
 	
 	/**
 	 * Initializes this instance, must be called before any
-	 * {@link #calculateNextColors(int, int)} calls are made.
+	 * {@link #writeChunks(FrameFormat, FrameLayout, Object)} calls are made.
 	 * This method is not called in the constructor in order to
 	 * allow callers to take advantage of multithreading.
 	 */
 	public void initialize() {
-		ReedSolomonEncoder.encode(dataChunks, correctionChunks);
+		if (productLayout != null) {
+			values = productLayout.encode(dataChunks);
+			return;
+		}
+		
+		InterleavedEncoder.encode(dataChunks, correctionChunks, codewordCount);
 		values = dataChunks;
 	}
 	
 	/**
-	 * Calculates the next 4 colors at the specified top-left position.
-	 * The returned array is reused internally,
-	 * its contents are overwritten whenever this method is called.
+	 * Writes all content chunks into their cells in the specified frame.
 	 *
-	 * @param x the position's X coordinate
-	 * @param y the position's Y coordinate
-	 * @return the 4 calculated colors
+	 * @param format the representation of the frame
+	 * @param layout the layout of the frame
+	 * @param frame the frame to write into
+	 * @param <T> the type of the frame
 	 */
-	@NotNull
-	public Color[] calculateNextColors(int x, int y) {
-		if (index == values.length) {
-			values = correctionChunks;
-			index = 0;
-		}
-		
-		int value = values[index++];
-		colors[0] = Color.fromBits(x, y, value >>> 9);
-		colors[1] = Color.fromBits(x + 1, y, (value >>> 6) & 7);
-		colors[2] = Color.fromBits(x, y + 1, (value >>> 3) & 7);
-		colors[3] = Color.fromBits(x + 1, y + 1, value & 7);
-		return colors;
+	public <T> void writeChunks(@NotNull FrameFormat<T> format, @NotNull FrameLayout layout, @NotNull T frame) {
+		format.writeChunks(layout, values, 0, frame);
+		format.writeChunks(layout, correctionChunks, values.length, frame);
 	}
 }
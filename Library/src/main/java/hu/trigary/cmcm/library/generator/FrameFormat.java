@@ -0,0 +1,98 @@
+package hu.trigary.cmcm.library.generator;
+
+import hu.trigary.cmcm.library.utilities.Color;
+import hu.trigary.cmcm.library.utilities.FrameLayout;
+import hu.trigary.cmcm.library.utilities.PackedFrame;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The representation the generated frames are stored in.
+ * The frames are drawn using a {@link FrameLayout}, this interface only defines the type of the frames.
+ *
+ * @param <T> the type of the generated frames
+ */
+interface FrameFormat<T> {
+	/**
+	 * Frames stored as {@link Color} matrices.
+	 */
+	FrameFormat<Color[]> COLORS = new FrameFormat<Color[]>() {
+		@NotNull
+		@Override
+		public Color[] createTemplateFrame(@NotNull FrameLayout layout) {
+			return layout.createTemplateFrame();
+		}
+		
+		@Override
+		public void writeChunks(@NotNull FrameLayout layout, @NotNull int[] chunks,
+				int firstChunk, @NotNull Color[] frame) {
+			layout.writeChunks(chunks, firstChunk, frame);
+		}
+		
+		@Override
+		public void readChunks(@NotNull FrameLayout layout, @NotNull Color[] frame, @NotNull int[] target) {
+			layout.readChunks(frame, target);
+		}
+	};
+	
+	/**
+	 * Gets the format that stores frames as {@link PackedFrame} instances.
+	 *
+	 * @param format the way the cells are stored
+	 * @param direct whether the frames should be backed by direct buffers
+	 * @return the format that creates frames of the specified kind
+	 */
+	@NotNull
+	@Contract(pure = true)
+	static FrameFormat<PackedFrame> packed(@NotNull PackedFrame.Format format, boolean direct) {
+		return new FrameFormat<PackedFrame>() {
+			@NotNull
+			@Override
+			public PackedFrame createTemplateFrame(@NotNull FrameLayout layout) {
+				return layout.createTemplateFrame(format, direct);
+			}
+			
+			@Override
+			public void writeChunks(@NotNull FrameLayout layout, @NotNull int[] chunks,
+					int firstChunk, @NotNull PackedFrame frame) {
+				layout.writeChunks(chunks, firstChunk, frame);
+			}
+			
+			@Override
+			public void readChunks(@NotNull FrameLayout layout, @NotNull PackedFrame frame, @NotNull int[] target) {
+				layout.readChunks(frame, target);
+			}
+		};
+	}
+	
+	/**
+	 * Creates a new frame containing only the padding and the template pixels.
+	 *
+	 * @param layout the layout of the frame
+	 * @return the newly created frame
+	 * @see FrameLayout#createTemplateFrame()
+	 */
+	@NotNull
+	T createTemplateFrame(@NotNull FrameLayout layout);
+	
+	/**
+	 * Writes the specified content chunks into the frame.
+	 *
+	 * @param layout the layout of the frame
+	 * @param chunks the content chunks to write
+	 * @param firstChunk the index of the first specified chunk among all content chunks of the frame
+	 * @param frame the frame to modify
+	 * @see FrameLayout#writeChunks(int[], int, Color[])
+	 */
+	void writeChunks(@NotNull FrameLayout layout, @NotNull int[] chunks, int firstChunk, @NotNull T frame);
+	
+	/**
+	 * Reads all content chunks of the specified frame.
+	 *
+	 * @param layout the layout of the frame
+	 * @param frame the frame to read from
+	 * @param target the array to write the content chunks into
+	 * @see FrameLayout#readChunks(Color[], int[])
+	 */
+	void readChunks(@NotNull FrameLayout layout, @NotNull T frame, @NotNull int[] target);
+}
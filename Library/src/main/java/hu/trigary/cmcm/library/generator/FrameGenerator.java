@@ -1,12 +1,15 @@
 package hu.trigary.cmcm.library.generator;
 
-import hu.trigary.cmcm.library.utilities.Color;
+import hu.trigary.cmcm.library.utilities.ChunkConverter;
+import hu.trigary.cmcm.library.utilities.FountainCode;
+import hu.trigary.cmcm.library.utilities.FrameDigest;
+import hu.trigary.cmcm.library.utilities.FrameInfo;
+import hu.trigary.cmcm.library.utilities.FrameLayout;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.concurrent.Callable;
-
 /**
  * Utility class used for creating the different frames (color matrices) from a {@link PayloadQueue}.
+ * Any frame can be created on any thread, in any order.
  */
 final class FrameGenerator {
 	
@@ -17,118 +20,186 @@ final class FrameGenerator {
 	 *
 	 * @param settings the properties of the frame that will be used
 	 * @param queue the container of the payload that should be included in the frame
-	 * @return a function that creates the requested frame and that can be called asynchronously
+	 * @param format the representation of the created frame
+	 * @param <T> the type of the created frame
+	 * @return the newly created frame
 	 */
 	@NotNull
-	public static Callable<Color[]> createFirstFrame(@NotNull GeneratorSettings settings, @NotNull PayloadQueue queue) {
-		byte[] bytes = queue.setDataOffset(7);
-		setBytes(bytes, 0, queue.getPayloadLength(), 3);
-		bytes[0] |= 128;
-		setBytes(bytes, 3, queue.calculatePayloadCrc(), 4);
-		return createFrame(settings, queue);
+	public static <T> T createFirstFrame(@NotNull GeneratorSettings settings,
+			@NotNull PayloadQueue queue, @NotNull FrameFormat<T> format) {
+		return createFirstFrame(settings, queue, queue.createDataBytes(0), format);
 	}
 	
 	/**
-	 * Creates a new frame of the "regular-frame" type.
+	 * Creates a new frame of the "first-frame" type from its already created data bytes,
+	 * see {@link PayloadQueue#createDataBytes(int)}.
 	 *
 	 * @param settings the properties of the frame that will be used
 	 * @param queue the container of the payload that should be included in the frame
-	 * @param sequenceId the sequence ID of this regular frame in the whole movie
-	 * @return a function that creates the requested frame and that can be called asynchronously
+	 * @param bytes the data bytes of the frame, the header is written into it
+	 * @param format the representation of the created frame
+	 * @param <T> the type of the created frame
+	 * @return the newly created frame
 	 */
 	@NotNull
-	public static Callable<Color[]> createRegularFrame(@NotNull GeneratorSettings settings,
-			@NotNull PayloadQueue queue, int sequenceId) {
-		byte[] bytes = queue.setDataOffset(2);
-		setBytes(bytes, 0, sequenceId << 5, 2);
-		//bytes[2] |= reserved;
-		return createFrame(settings, queue);
+	public static <T> T createFirstFrame(@NotNull GeneratorSettings settings, @NotNull PayloadQueue queue,
+			@NotNull byte[] bytes, @NotNull FrameFormat<T> format) {
+		setFirstHeader(bytes, queue.getPayloadLength(), queue.getPayloadCrc());
+		setDigest(settings, bytes, settings.getFirstHeaderLength());
+		return createFrame(settings, queue.createFrameQueue(bytes), format);
 	}
 	
-	private static void setBytes(@NotNull byte[] array, int offset, int value, int size) {
-		for (int i = size - 1; i >= 0; i--) {
-			array[offset + i] = (byte) value;
-			value >>>= 8;
-		}
+	/**
+	 * Creates a new frame of the "regular-frame" type.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param queue the container of the payload that should be included in the frame
+	 * @param sequenceId the sequence ID of this regular frame in the whole movie
+	 * @param format the representation of the created frame
+	 * @param <T> the type of the created frame
+	 * @return the newly created frame
+	 */
+	@NotNull
+	public static <T> T createRegularFrame(@NotNull GeneratorSettings settings,
+			@NotNull PayloadQueue queue, int sequenceId, @NotNull FrameFormat<T> format) {
+		return createRegularFrame(settings, queue, queue.createDataBytes(sequenceId + 1), sequenceId, format);
 	}
 	
+	/**
+	 * Creates a new frame of the "regular-frame" type from its already created data bytes,
+	 * see {@link PayloadQueue#createDataBytes(int)}.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param queue the container of the payload that should be included in the frame
+	 * @param bytes the data bytes of the frame, the header is written into it
+	 * @param sequenceId the sequence ID of this regular frame in the whole movie
+	 * @param format the representation of the created frame
+	 * @param <T> the type of the created frame
+	 * @return the newly created frame
+	 */
 	@NotNull
-	private static Callable<Color[]> createFrame(@NotNull GeneratorSettings settings, @NotNull PayloadQueue queue) {
-		ColorQueue colorQueue = queue.createNextFrameQueue();
-		return () -> {
-			colorQueue.initialize();
-			return createFrame(settings, colorQueue);
-		};
+	public static <T> T createRegularFrame(@NotNull GeneratorSettings settings, @NotNull PayloadQueue queue,
+			@NotNull byte[] bytes, int sequenceId, @NotNull FrameFormat<T> format) {
+		setRegularHeader(settings, bytes, sequenceId);
+		if (settings.getMovieHeader() == FrameInfo.MovieHeader.EVERY_FRAME) {
+			setMovieHeader(bytes, settings.getFrameCount(queue.getPayloadLength()), queue.getPayloadCrc());
+		}
+		setDigest(settings, bytes, settings.getRegularHeaderLength());
+		return createFrame(settings, queue.createFrameQueue(bytes), format);
 	}
 	
+	/**
+	 * Creates a new frame of the "fountain-frame" type.
+	 * Its header has the same structure as the header of regular frames,
+	 * but its fountain flag is set and the sequence ID is replaced by the upper bits of the symbol ID.
+	 * The lower 16 bits of the symbol ID are stored in the next two bytes.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param queue the container of the payload, only used to create the {@link ColorQueue}
+	 * @param blocks the blocks the remaining payload was split into
+	 * @param symbolId the symbol ID of this fountain frame
+	 * @param format the representation of the created frame
+	 * @param <T> the type of the created frame
+	 * @return the newly created frame
+	 * @see FountainCode
+	 */
 	@NotNull
-	private static Color[] createFrame(@NotNull GeneratorSettings settings, @NotNull ColorQueue queue) {
-		int resolution = settings.getImageResolution();
-		Color[] pixels = new Color[resolution * resolution];
-		
-		int offset = 0;
-		GeneratorSettings.Padding padding = settings.getPadding();
-		if (padding.hasWhitePadding()) {
-			drawRectangle(pixels, offset++, resolution, Color.WHITE);
+	public static <T> T createFountainFrame(@NotNull GeneratorSettings settings,
+			@NotNull PayloadQueue queue, @NotNull byte[][] blocks, int symbolId, @NotNull FrameFormat<T> format) {
+		byte[] bytes = new byte[ChunkConverter.getByteCount(settings.getDataChunks())];
+		setBytes(bytes, 0, (symbolId >>> 16) << 5, 2);
+		bytes[1] |= 8 | settings.getLayout().getId() << 2 | settings.getRedundancy().getId(); //8: fountain flag
+		setBytes(bytes, 2, symbolId, 2);
+		int headerLength = settings.getFountainHeaderLength();
+		for (int neighbor : FountainCode.getNeighbors(blocks.length, symbolId)) {
+			byte[] block = blocks[neighbor];
+			for (int i = 0; i < block.length; i++) {
+				bytes[headerLength + i] ^= block[i];
+			}
 		}
-		if (padding.hasBlackPadding()) {
-			drawRectangle(pixels, offset++, resolution, Color.BLACK);
-		}
-		setTemplatePixels(pixels, offset, resolution);
-		
-		//the first chunk is the one around the upper template bits
-		Color[] colors = queue.calculateNextColors(0, 0);
-		pixels[offset + (offset + 1) * resolution] = colors[0];
-		pixels[offset + 1 + (offset + 1) * resolution] = colors[1];
-		pixels[resolution - offset - 1 + (offset + 1) * resolution] = colors[2];
-		pixels[resolution - offset - 2 + (offset + 1) * resolution] = colors[3];
 		
-		int chunkCount = resolution / 2 - offset;
-		int y = offset;
-		setChunksInRow(pixels, queue, offset, offset + 2, y, resolution, chunkCount - 2);
-		y += 2;
-		for (int i = 2; i < chunkCount; i++) {
-			setChunksInRow(pixels, queue, offset, offset, y, resolution, chunkCount);
-			y += 2;
-		}
-		setChunksInRow(pixels, queue, offset, offset + 1, y, resolution, chunkCount - 1);
-		return pixels;
+		setDigest(settings, bytes, headerLength);
+		return createFrame(settings, queue.createFrameQueue(bytes), format);
 	}
 	
-	private static void drawRectangle(@NotNull Color[] pixels, int offset, int resolution, Color color) {
-		int max = resolution - offset;
-		for (int x = offset; x < max; x++) {
-			pixels[x + offset * resolution] = color;
-			pixels[x + (max - 1) * resolution] = color;
-		}
-		max--;
-		for (int y = offset + 1; y < max; y++) {
-			pixels[offset + y * resolution] = color;
-			pixels[max + y * resolution] = color;
+	/**
+	 * Writes the header of the "first-frame" frame type into the specified data bytes.
+	 *
+	 * @param bytes the data bytes of the frame
+	 * @param payloadLength the length of the whole payload
+	 * @param payloadCrc the CRC32 value of the whole payload
+	 */
+	public static void setFirstHeader(@NotNull byte[] bytes, int payloadLength, int payloadCrc) {
+		setBytes(bytes, 0, payloadLength, 3);
+		bytes[0] |= 128;
+		setBytes(bytes, 3, payloadCrc, 4);
+	}
+	
+	/**
+	 * Writes the header of the "regular-frame" frame type into the specified data bytes.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param bytes the data bytes of the frame
+	 * @param sequenceId the sequence ID of this regular frame in the whole movie
+	 */
+	public static void setRegularHeader(@NotNull GeneratorSettings settings, @NotNull byte[] bytes, int sequenceId) {
+		setBytes(bytes, 0, sequenceId << 5, 2);
+		//bit 3 is the fountain flag, bit 4 is the movie header flag
+		bytes[1] |= settings.getMovieHeader().getId() << 4
+				| settings.getLayout().getId() << 2 | settings.getRedundancy().getId();
+	}
+	
+	/**
+	 * Writes the compact movie header into the specified data bytes of a regular frame,
+	 * after the regular header, see {@link FrameInfo.MovieHeader#EVERY_FRAME}.
+	 *
+	 * @param bytes the data bytes of the frame
+	 * @param frameCount the count of frames in the movie
+	 * @param payloadCrc the CRC32 value of the whole payload, as it is stored in the first frame
+	 */
+	public static void setMovieHeader(@NotNull byte[] bytes, int frameCount, int payloadCrc) {
+		setBytes(bytes, 2, frameCount, 2);
+		setBytes(bytes, 4, payloadCrc, 2);
+	}
+	
+	/**
+	 * Writes the digest of the frame into the end of its header,
+	 * if the settings specify {@link FrameInfo.Integrity#FRAME_DIGEST}.
+	 * Must be called after the rest of the data bytes were written.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param bytes the data bytes of the frame
+	 * @param headerLength the length of the header of the frame, including the digest
+	 */
+	public static void setDigest(@NotNull GeneratorSettings settings, @NotNull byte[] bytes, int headerLength) {
+		if (settings.getIntegrity() == FrameInfo.Integrity.FRAME_DIGEST) {
+			FrameDigest.write(bytes, headerLength);
 		}
 	}
 	
-	private static void setTemplatePixels(@NotNull Color[] pixels, int offset, int resolution) {
-		int bound = resolution - offset - 1;
-		pixels[offset + offset * resolution] = Color.WHITE;
-		pixels[offset + 1 + offset * resolution] = Color.BLACK;
-		pixels[bound + offset * resolution] = Color.GREEN;
-		pixels[bound - 1 + offset * resolution] = Color.MAGENTA;
-		pixels[offset + bound * resolution] = Color.AQUA;
-		pixels[offset + (bound - 1) * resolution] = Color.RED;
-		pixels[bound + bound * resolution] = Color.YELLOW;
-		pixels[bound + (bound - 1) * resolution] = Color.BLUE;
+	/**
+	 * Creates a new frame from the content chunks of the specified queue.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param queue the container of the data bytes of the frame, including its header
+	 * @param format the representation of the created frame
+	 * @param <T> the type of the created frame
+	 * @return the newly created frame
+	 */
+	@NotNull
+	public static <T> T createFrame(@NotNull GeneratorSettings settings,
+			@NotNull ColorQueue queue, @NotNull FrameFormat<T> format) {
+		queue.initialize();
+		FrameLayout layout = settings.getFrameLayout();
+		T pixels = format.createTemplateFrame(layout);
+		queue.writeChunks(format, layout, pixels);
+		return pixels;
 	}
 	
-	private static void setChunksInRow(@NotNull Color[] pixels, @NotNull ColorQueue queue,
-			int offset, int startX, int y, int resolution, int chunkCount) {
-		for (int i = 0; i < chunkCount; i++) {
-			Color[] colors = queue.calculateNextColors(startX - offset, y - offset);
-			pixels[startX + y * resolution] = colors[0];
-			pixels[startX + 1 + y * resolution] = colors[1];
-			pixels[startX + (y + 1) * resolution] = colors[2];
-			pixels[startX + 1 + (y + 1) * resolution] = colors[3];
-			startX += 2;
+	private static void setBytes(@NotNull byte[] array, int offset, int value, int size) {
+		for (int i = size - 1; i >= 0; i--) {
+			array[offset + i] = (byte) value;
+			value >>>= 8;
 		}
 	}
 }
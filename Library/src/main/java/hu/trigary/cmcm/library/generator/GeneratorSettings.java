@@ -1,6 +1,8 @@
 package hu.trigary.cmcm.library.generator;
 
 import hu.trigary.cmcm.library.utilities.FrameInfo;
+import hu.trigary.cmcm.library.utilities.FrameLayout;
+import hu.trigary.cmcm.library.utilities.PayloadCodec;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
@@ -9,16 +11,96 @@ import org.jetbrains.annotations.NotNull;
  */
 public class GeneratorSettings extends FrameInfo {
 	private final Padding padding;
+	private final PayloadCodec compression;
 	
 	/**
-	 * Creates a new instance.
+	 * Creates a new instance with {@link Redundancy#STANDARD} redundancy.
 	 *
 	 * @param resolution the resolution to use
 	 * @param padding the padding configuration to use
 	 */
 	public GeneratorSettings(@NotNull ContentResolution resolution, @NotNull Padding padding) {
-		super(resolution);
+		this(resolution, padding, Redundancy.STANDARD);
+	}
+	
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param resolution the resolution to use
+	 * @param padding the padding configuration to use
+	 * @param redundancy the amount of error correction to use
+	 */
+	public GeneratorSettings(@NotNull ContentResolution resolution, @NotNull Padding padding,
+			@NotNull Redundancy redundancy) {
+		this(resolution, padding, redundancy, Layout.INTERLEAVED);
+	}
+	
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param resolution the resolution to use
+	 * @param padding the padding configuration to use
+	 * @param redundancy the amount of error correction to use
+	 * @param layout the way the content chunks are protected by error correction codes
+	 */
+	public GeneratorSettings(@NotNull ContentResolution resolution, @NotNull Padding padding,
+			@NotNull Redundancy redundancy, @NotNull Layout layout) {
+		this(resolution, padding, redundancy, layout, PayloadCodec.NONE);
+	}
+	
+	/**
+	 * Creates a new instance.
+	 * Payloads are only compressed if that makes them shorter, see {@link PayloadCodec#compress(byte[])},
+	 * parsers detect and decompress compressed payloads on their own.
+	 *
+	 * @param resolution the resolution to use
+	 * @param padding the padding configuration to use
+	 * @param redundancy the amount of error correction to use
+	 * @param layout the way the content chunks are protected by error correction codes
+	 * @param compression the way the payloads are compressed before being split into frames
+	 */
+	public GeneratorSettings(@NotNull ContentResolution resolution, @NotNull Padding padding,
+			@NotNull Redundancy redundancy, @NotNull Layout layout, @NotNull PayloadCodec compression) {
+		this(resolution, padding, redundancy, layout, compression, MovieHeader.FIRST_FRAME);
+	}
+	
+	/**
+	 * Creates a new instance.
+	 * Payloads are only compressed if that makes them shorter, see {@link PayloadCodec#compress(byte[])},
+	 * parsers detect and decompress compressed payloads on their own.
+	 *
+	 * @param resolution the resolution to use
+	 * @param padding the padding configuration to use
+	 * @param redundancy the amount of error correction to use
+	 * @param layout the way the content chunks are protected by error correction codes
+	 * @param compression the way the payloads are compressed before being split into frames
+	 * @param movieHeader the frames the properties of the movie are stored in
+	 */
+	public GeneratorSettings(@NotNull ContentResolution resolution, @NotNull Padding padding,
+			@NotNull Redundancy redundancy, @NotNull Layout layout, @NotNull PayloadCodec compression,
+			@NotNull MovieHeader movieHeader) {
+		this(resolution, padding, redundancy, layout, compression, movieHeader, Integrity.PAYLOAD_CRC);
+	}
+	
+	/**
+	 * Creates a new instance.
+	 * Payloads are only compressed if that makes them shorter, see {@link PayloadCodec#compress(byte[])},
+	 * parsers detect and decompress compressed payloads on their own.
+	 *
+	 * @param resolution the resolution to use
+	 * @param padding the padding configuration to use
+	 * @param redundancy the amount of error correction to use
+	 * @param layout the way the content chunks are protected by error correction codes
+	 * @param compression the way the payloads are compressed before being split into frames
+	 * @param movieHeader the frames the properties of the movie are stored in
+	 * @param integrity the way the integrity of the data is verified by parsers
+	 */
+	public GeneratorSettings(@NotNull ContentResolution resolution, @NotNull Padding padding,
+			@NotNull Redundancy redundancy, @NotNull Layout layout, @NotNull PayloadCodec compression,
+			@NotNull MovieHeader movieHeader, @NotNull Integrity integrity) {
+		super(resolution, redundancy, layout, movieHeader, integrity);
 		this.padding = padding;
+		this.compression = compression;
 	}
 	
 	/**
@@ -32,6 +114,17 @@ public class GeneratorSettings extends FrameInfo {
 		return padding;
 	}
 	
+	/**
+	 * Gets the way the payloads are compressed before being split into frames.
+	 *
+	 * @return the compression of the payloads
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public PayloadCodec getCompression() {
+		return compression;
+	}
+	
 	/**
 	 * Gets the image resolution, which is the padding resolution and the padding combined.
 	 *
@@ -42,6 +135,17 @@ public class GeneratorSettings extends FrameInfo {
 		return getContentResolution() + 2 * padding.getWidth();
 	}
 	
+	/**
+	 * Gets the layout of the frames, including the padding.
+	 *
+	 * @return the cached layout of the frames
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public FrameLayout getFrameLayout() {
+		return FrameLayout.get(getContentResolution(), padding.getWidth());
+	}
+	
 	/**
 	 * The padding types a frame can have.
 	 */
@@ -0,0 +1,261 @@
+package hu.trigary.cmcm.library.generator;
+
+import hu.trigary.cmcm.library.utilities.Color;
+import hu.trigary.cmcm.library.utilities.FrameInfo;
+import hu.trigary.cmcm.library.utilities.PackedFrame;
+import hu.trigary.cmcm.library.utilities.PayloadCodec;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+/**
+ * A bounded cache of movies, so that payloads which are transmitted repeatedly don't have to be encoded again.
+ * Movies are identified by the SHA-256 digest of their payloads and by the settings they were created with.
+ * The size of the cache is measured in the estimated memory usage of the cached frames:
+ * when it exceeds the limit, the least recently used movies are evicted.
+ * Movies larger than the limit are not cached.
+ * The cached frames are shared between the callers, therefore they must not be modified.
+ * Instances are thread-safe: the movies are created outside of the lock,
+ * concurrent misses for the same movie may create it multiple times.
+ */
+public final class MovieCache {
+	private static final int ARRAY_OVERHEAD = 16;
+	private static final int REFERENCE_SIZE = 4;
+	private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final long maxSize;
+	private long size;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+	
+	/**
+	 * Creates a new, empty instance.
+	 *
+	 * @param maxSize the maximum total size of the cached frames in bytes
+	 */
+	public MovieCache(long maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maximum size must be positive");
+		}
+		this.maxSize = maxSize;
+	}
+	
+	/**
+	 * Gets the movie of the specified payload from the cache or creates it
+	 * using {@link MovieGenerator#createMovie(GeneratorSettings, byte[])} and caches it.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param payload the data that should be included in the movie
+	 * @return the unmodifiable movie in the form of a sequence of shared frames (color matrices)
+	 */
+	@NotNull
+	public List<Color[]> getMovie(@NotNull GeneratorSettings settings, @NotNull byte[] payload) {
+		Key key = new Key(digest(payload), settings, null, false);
+		List<Color[]> cached = get(key);
+		if (cached != null) {
+			return cached;
+		}
+		
+		List<Color[]> movie = Collections.unmodifiableList(MovieGenerator.createMovie(settings, payload));
+		put(key, movie, frames -> frames.stream().mapToLong(frame -> getArraySize(frame.length)).sum());
+		return movie;
+	}
+	
+	/**
+	 * Gets the packed movie of the specified payload from the cache or creates it using
+	 * {@link MovieGenerator#createPackedMovie(GeneratorSettings, byte[], PackedFrame.Format, boolean)}
+	 * and caches it.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param payload the data that should be included in the movie
+	 * @param format the way the cells of the frames are stored
+	 * @param direct whether the frames should be backed by direct buffers instead of heap buffers
+	 * @return the unmodifiable movie in the form of a sequence of shared packed frames
+	 */
+	@NotNull
+	public List<PackedFrame> getPackedMovie(@NotNull GeneratorSettings settings, @NotNull byte[] payload,
+			@NotNull PackedFrame.Format format, boolean direct) {
+		Key key = new Key(digest(payload), settings, format, direct);
+		List<PackedFrame> cached = get(key);
+		if (cached != null) {
+			return cached;
+		}
+		
+		List<PackedFrame> movie = Collections.unmodifiableList(
+				MovieGenerator.createPackedMovie(settings, payload, format, direct));
+		put(key, movie, frames -> frames.stream().mapToLong(frame -> ARRAY_OVERHEAD
+				+ PackedFrame.getByteCount(frame.getResolution(), frame.getFormat())).sum());
+		return movie;
+	}
+	
+	/**
+	 * Gets the estimated total size of the cached frames in bytes.
+	 *
+	 * @return the current size of the cache
+	 */
+	@Contract(pure = true)
+	public synchronized long getSize() {
+		return size;
+	}
+	
+	/**
+	 * Gets the count of requests that were served from the cache.
+	 *
+	 * @return the count of cache hits
+	 */
+	@Contract(pure = true)
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+	
+	/**
+	 * Gets the count of requests that required a movie to be created.
+	 *
+	 * @return the count of cache misses
+	 */
+	@Contract(pure = true)
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+	
+	/**
+	 * Gets the count of movies that were removed from the cache to make space for others.
+	 *
+	 * @return the count of evictions
+	 */
+	@Contract(pure = true)
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+	
+	/**
+	 * Removes all movies from the cache. The counters are not reset.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		size = 0;
+	}
+	
+	@Nullable
+	private synchronized <T> List<T> get(@NotNull Key key) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			missCount++;
+			return null;
+		}
+		
+		hitCount++;
+		//noinspection unchecked
+		return (List<T>) entry.movie;
+	}
+	
+	private <T> void put(@NotNull Key key, @NotNull List<T> movie, @NotNull ToLongFunction<List<T>> sizeFunction) {
+		long movieSize = sizeFunction.applyAsLong(movie);
+		if (movieSize > maxSize) {
+			return;
+		}
+		
+		synchronized (this) {
+			Entry old = entries.put(key, new Entry(movie, movieSize));
+			size += movieSize - (old == null ? 0 : old.size);
+			Iterator<Entry> iterator = entries.values().iterator();
+			while (size > maxSize) {
+				Entry eldest = iterator.next();
+				iterator.remove();
+				size -= eldest.size;
+				evictionCount++;
+			}
+		}
+	}
+	
+	@Contract(pure = true)
+	private static long getArraySize(int length) {
+		return ARRAY_OVERHEAD + (long) length * REFERENCE_SIZE;
+	}
+	
+	@NotNull
+	@Contract(pure = true)
+	private static byte[] digest(@NotNull byte[] payload) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(payload);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 must be supported by all platforms", e);
+		}
+	}
+	
+	
+	
+	private static final class Key {
+		private final byte[] digest;
+		private final int resolution;
+		private final GeneratorSettings.Padding padding;
+		private final FrameInfo.Redundancy redundancy;
+		private final FrameInfo.Layout layout;
+		private final PayloadCodec compression;
+		private final FrameInfo.MovieHeader movieHeader;
+		private final FrameInfo.Integrity integrity;
+		private final PackedFrame.Format format;
+		private final boolean direct;
+		private final int hashCode;
+		
+		Key(@NotNull byte[] digest, @NotNull GeneratorSettings settings,
+				@Nullable PackedFrame.Format format, boolean direct) {
+			this.digest = digest;
+			resolution = settings.getContentResolution();
+			padding = settings.getPadding();
+			redundancy = settings.getRedundancy();
+			layout = settings.getLayout();
+			compression = settings.getCompression();
+			movieHeader = settings.getMovieHeader();
+			integrity = settings.getIntegrity();
+			this.format = format;
+			this.direct = direct;
+			hashCode = Objects.hash(Arrays.hashCode(digest), resolution, padding, redundancy, layout,
+					compression, movieHeader, integrity, format, direct);
+		}
+		
+		@Override
+		@Contract(pure = true)
+		public boolean equals(Object object) {
+			if (!(object instanceof Key)) {
+				return false;
+			}
+			
+			Key other = (Key) object;
+			return other.resolution == resolution && other.padding == padding && other.redundancy == redundancy
+					&& other.layout == layout && other.compression == compression && other.movieHeader == movieHeader
+					&& other.integrity == integrity
+					&& other.format == format && other.direct == direct
+					&& Arrays.equals(other.digest, digest);
+		}
+		
+		@Override
+		@Contract(pure = true)
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+	
+	
+	
+	private static final class Entry {
+		private final List<?> movie;
+		private final long size;
+		
+		Entry(@NotNull List<?> movie, long size) {
+			this.movie = movie;
+			this.size = size;
+		}
+	}
+}
@@ -1,22 +1,41 @@
 package hu.trigary.cmcm.library.generator;
 
+import hu.trigary.cmcm.library.utilities.ChunkConverter;
 import hu.trigary.cmcm.library.utilities.Color;
+import hu.trigary.cmcm.library.utilities.FountainCode;
+import hu.trigary.cmcm.library.utilities.FrameInfo;
+import hu.trigary.cmcm.library.utilities.PackedFrame;
+import hu.trigary.cmcm.library.utilities.PayloadCodec;
+import hu.trigary.cmcm.library.utilities.ProductLayout;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32;
 
 /**
  * The class that is used for converting payloads in the form of bytes to movies
  * (sequence of frames, aka systems of color matrices).
  */
 public final class MovieGenerator {
+	/**
+	 * The count of frames after which the first frame is repeated in fountain movies.
+	 */
+	public static final int FOUNTAIN_FIRST_FRAME_INTERVAL = 8;
+	private static final int CELLS_PER_TASK = 1 << 16;
 	
 	private MovieGenerator() { }
 	
@@ -32,27 +51,507 @@ public final class MovieGenerator {
 	@NotNull
 	@Contract(pure = true)
 	public static List<Color[]> createMovie(@NotNull GeneratorSettings settings, @NotNull byte[] payload) {
-		int frameCount = settings.getFrameCount(payload.length);
+		return createMovie(settings, payload, FrameFormat.COLORS);
+	}
+	
+	/**
+	 * Converts the specified payload into a movie whose frames are {@link PackedFrame} instances.
+	 * The frames are the same as the ones {@link #createMovie(GeneratorSettings, byte[])} creates,
+	 * but no {@link Color} matrices are created: the cells are written directly into the packed frames.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param payload the data that should be included in the movie
+	 * @param format the way the cells of the frames are stored
+	 * @param direct whether the frames should be backed by direct buffers instead of heap buffers
+	 * @return the movie in the form of a sequence of packed frames
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static List<PackedFrame> createPackedMovie(@NotNull GeneratorSettings settings, @NotNull byte[] payload,
+			@NotNull PackedFrame.Format format, boolean direct) {
+		return createMovie(settings, payload, FrameFormat.packed(format, direct));
+	}
+	
+	/**
+	 * Converts the specified payload into an unbounded fountain movie whose frames are {@link PackedFrame} instances.
+	 * The frames are the same as the ones {@link #createFountainMovie(GeneratorSettings, byte[])} creates,
+	 * but no {@link Color} matrices are created: the cells are written directly into the packed frames.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param payload the data that should be included in the movie, not copied
+	 * @param format the way the cells of the frames are stored
+	 * @param direct whether the frames should be backed by direct buffers instead of heap buffers
+	 * @return the iterator of the packed frames of the movie
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static Iterator<PackedFrame> createPackedFountainMovie(@NotNull GeneratorSettings settings,
+			@NotNull byte[] payload, @NotNull PackedFrame.Format format, boolean direct) {
+		return createFountainMovie(settings, payload, FrameFormat.packed(format, direct));
+	}
+	
+	/**
+	 * Creates the movie of a modified payload from the movie of the original payload,
+	 * only regenerating the frames whose payload segment changed and the first frame.
+	 * The payload must have the same length as the original one and only the specified ranges may differ.
+	 * The original bytes are read back from the old frames and the CRC of the new payload is calculated
+	 * from the CRC stored in the old first frame and the changed segments,
+	 * therefore the work is proportional to the count of changed frames, not to the length of the movie.
+	 * The returned list contains the unchanged frames of the old movie, they are not copied.
+	 * The result is the same as the one {@link #createMovie(GeneratorSettings, byte[])} would create.
+	 * Compression is not supported, since changing any byte may change the whole compressed payload.
+	 * If every frame contains the movie header (see {@link FrameInfo.MovieHeader#EVERY_FRAME}),
+	 * then every frame is regenerated.
+	 *
+	 * @param settings the properties of the frame that were used to create the old movie
+	 * @param movie the old movie, created by {@link #createMovie(GeneratorSettings, byte[])} or similar methods
+	 * @param payload the modified payload
+	 * @param changes the ranges of the payload that changed, they may overlap
+	 * @return the movie of the modified payload in the form of a sequence of frames (color matrices)
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static List<Color[]> updateMovie(@NotNull GeneratorSettings settings, @NotNull List<Color[]> movie,
+			@NotNull byte[] payload, @NotNull List<PayloadRange> changes) {
+		return MovieUpdater.update(settings, movie, payload, changes, FrameFormat.COLORS);
+	}
+	
+	/**
+	 * Creates the movie of a modified payload from the packed movie of the original payload,
+	 * see {@link #updateMovie(GeneratorSettings, List, byte[], List)}.
+	 * The regenerated frames have the same format as the first frame of the old movie.
+	 *
+	 * @param settings the properties of the frame that were used to create the old movie
+	 * @param movie the old movie, created by
+	 * {@link #createPackedMovie(GeneratorSettings, byte[], PackedFrame.Format, boolean)} or similar methods
+	 * @param payload the modified payload
+	 * @param changes the ranges of the payload that changed, they may overlap
+	 * @return the movie of the modified payload in the form of a sequence of packed frames
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static List<PackedFrame> updatePackedMovie(@NotNull GeneratorSettings settings,
+			@NotNull List<PackedFrame> movie, @NotNull byte[] payload, @NotNull List<PayloadRange> changes) {
+		if (movie.isEmpty()) {
+			throw new IllegalArgumentException("the length of the movie must match the length of the payload");
+		}
+		
+		PackedFrame first = movie.get(0);
+		FrameFormat<PackedFrame> format = FrameFormat.packed(first.getFormat(), first.getBuffer().isDirect());
+		return MovieUpdater.update(settings, movie, payload, changes, format);
+	}
+	
+	/**
+	 * Converts the specified payload into a movie whose frames are only created when they are requested.
+	 * The frames are the same as the ones {@link #createMovie(GeneratorSettings, byte[])} creates.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param payload the data that should be included in the movie, not copied
+	 * @return the movie whose frames (color matrices) can be retrieved in any order
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static VirtualMovie<Color[]> createVirtualMovie(@NotNull GeneratorSettings settings,
+			@NotNull byte[] payload) {
+		return createVirtualMovie(settings, PayloadSource.of(payload));
+	}
+	
+	/**
+	 * Converts the specified payload into a movie whose frames are only created when they are requested.
+	 * The payload is never loaded as a whole: its CRC is calculated by reading it in small parts
+	 * and each frame only reads its own segment.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param payload the source of the data that should be included in the movie
+	 * @return the movie whose frames (color matrices) can be retrieved in any order
+	 * @throws java.io.UncheckedIOException if the payload could not be read
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static VirtualMovie<Color[]> createVirtualMovie(@NotNull GeneratorSettings settings,
+			@NotNull PayloadSource payload) {
+		return new VirtualMovie<>(settings, payload, FrameFormat.COLORS);
+	}
+	
+	/**
+	 * Converts the specified payload into a movie whose frames are only created when they are requested.
+	 * The frames are the same as the ones
+	 * {@link #createPackedMovie(GeneratorSettings, byte[], PackedFrame.Format, boolean)} creates.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param payload the data that should be included in the movie, not copied
+	 * @param format the way the cells of the frames are stored
+	 * @param direct whether the frames should be backed by direct buffers instead of heap buffers
+	 * @return the movie whose packed frames can be retrieved in any order
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static VirtualMovie<PackedFrame> createVirtualPackedMovie(@NotNull GeneratorSettings settings,
+			@NotNull byte[] payload, @NotNull PackedFrame.Format format, boolean direct) {
+		return createVirtualPackedMovie(settings, PayloadSource.of(payload), format, direct);
+	}
+	
+	/**
+	 * Converts the specified payload into a movie whose packed frames are only created when they are requested.
+	 * The payload is never loaded as a whole, see {@link #createVirtualMovie(GeneratorSettings, PayloadSource)}.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param payload the source of the data that should be included in the movie
+	 * @param format the way the cells of the frames are stored
+	 * @param direct whether the frames should be backed by direct buffers instead of heap buffers
+	 * @return the movie whose packed frames can be retrieved in any order
+	 * @throws java.io.UncheckedIOException if the payload could not be read
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static VirtualMovie<PackedFrame> createVirtualPackedMovie(@NotNull GeneratorSettings settings,
+			@NotNull PayloadSource payload, @NotNull PackedFrame.Format format, boolean direct) {
+		return new VirtualMovie<>(settings, payload, FrameFormat.packed(format, direct));
+	}
+	
+	/**
+	 * Converts the payload read from the specified stream into a movie, reading the stream only once.
+	 * The length of the payload does not have to be known in advance.
+	 * The frames are created one by one on the calling thread and are passed to the consumer as soon as they are ready.
+	 * Since the first frame contains the length and the CRC of the whole payload, it is created last:
+	 * the regular frames come first, in order. Parsers accept frames in any order.
+	 * Only the data of the first frame and of the current frame is kept in memory.
+	 * If the payload turns out to be too large for the settings, an exception is thrown
+	 * after the frames created so far have been passed to the consumer.
+	 * Compression is not supported, since it requires the whole payload,
+	 * and neither is {@link FrameInfo.MovieHeader#EVERY_FRAME},
+	 * since the frame count and the CRC are only known at the end.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param input the stream to read the payload from, it is not closed
+	 * @param consumer the function the created frames (color matrices) are passed to
+	 * @return the count of frames created, aka the length of the movie
+	 * @throws IOException if the stream could not be read
+	 */
+	public static int streamMovie(@NotNull GeneratorSettings settings, @NotNull InputStream input,
+			@NotNull Consumer<? super Color[]> consumer) throws IOException {
+		return streamMovie(settings, input, FrameFormat.COLORS, consumer);
+	}
+	
+	/**
+	 * Converts the payload read from the specified stream into a movie whose frames are {@link PackedFrame} instances,
+	 * reading the stream only once, see {@link #streamMovie(GeneratorSettings, InputStream, Consumer)}.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param input the stream to read the payload from, it is not closed
+	 * @param format the way the cells of the frames are stored
+	 * @param direct whether the frames should be backed by direct buffers instead of heap buffers
+	 * @param consumer the function the created packed frames are passed to
+	 * @return the count of frames created, aka the length of the movie
+	 * @throws IOException if the stream could not be read
+	 */
+	public static int streamPackedMovie(@NotNull GeneratorSettings settings, @NotNull InputStream input,
+			@NotNull PackedFrame.Format format, boolean direct,
+			@NotNull Consumer<? super PackedFrame> consumer) throws IOException {
+		return streamMovie(settings, input, FrameFormat.packed(format, direct), consumer);
+	}
+	
+	private static <T> int streamMovie(@NotNull GeneratorSettings settings, @NotNull InputStream input,
+			@NotNull FrameFormat<T> format, @NotNull Consumer<? super T> consumer) throws IOException {
+		if (settings.getCompression() != PayloadCodec.NONE) {
+			throw new IllegalArgumentException("streamed payloads cannot be compressed");
+		} else if (settings.getMovieHeader() != FrameInfo.MovieHeader.FIRST_FRAME) {
+			throw new IllegalArgumentException("streamed movies can only store the movie header in the first frame");
+		}
+		
+		ProductLayout productLayout = settings.getLayout() == FrameInfo.Layout.PRODUCT
+				? new ProductLayout(settings) : null;
+		int dataBytesLength = ChunkConverter.getByteCount(settings.getDataChunks());
+		int firstHeaderLength = settings.getFirstHeaderLength();
+		int regularHeaderLength = settings.getRegularHeaderLength();
+		int regularSegmentLength = dataBytesLength - regularHeaderLength;
+		CRC32 crc = new CRC32();
+		
+		byte[] firstBytes = new byte[dataBytesLength];
+		int payloadLength = readFully(input, firstBytes, firstHeaderLength);
+		crc.update(firstBytes, firstHeaderLength, payloadLength);
+		int sequenceId = 0;
+		int length = payloadLength == dataBytesLength - firstHeaderLength ? regularSegmentLength : 0;
+		while (length == regularSegmentLength) {
+			byte[] bytes = new byte[dataBytesLength];
+			length = readFully(input, bytes, regularHeaderLength);
+			if (length == 0) {
+				break;
+			}
+			
+			payloadLength += length;
+			if (settings.getFrameCount(payloadLength) == -1) {
+				throw new IllegalArgumentException("payload is too large for the settings");
+			}
+			crc.update(bytes, regularHeaderLength, length);
+			FrameGenerator.setRegularHeader(settings, bytes, sequenceId++);
+			FrameGenerator.setDigest(settings, bytes, regularHeaderLength);
+			ColorQueue queue = new ColorQueue(settings, bytes, productLayout);
+			consumer.accept(FrameGenerator.createFrame(settings, queue, format));
+		}
+		
+		int frameCount = settings.getFrameCount(payloadLength);
 		if (frameCount == -1) {
 			throw new IllegalArgumentException("invalid payload length, settings combination");
 		}
 		
-		PayloadQueue queue = new PayloadQueue(settings, payload);
-		List<Callable<Color[]>> tasks = new ArrayList<>(frameCount);
-		tasks.add(FrameGenerator.createFirstFrame(settings, queue));
-		for (int i = 1; i < frameCount; i++) {
-			tasks.add(FrameGenerator.createRegularFrame(settings, queue, i - 1));
+		//the frame count may contain a frame whose payload segment is empty
+		while (sequenceId < frameCount - 1) {
+			byte[] bytes = new byte[dataBytesLength];
+			FrameGenerator.setRegularHeader(settings, bytes, sequenceId++);
+			FrameGenerator.setDigest(settings, bytes, regularHeaderLength);
+			ColorQueue queue = new ColorQueue(settings, bytes, productLayout);
+			consumer.accept(FrameGenerator.createFrame(settings, queue, format));
 		}
 		
-		try {
-			List<Future<Color[]>> results = ForkJoinPool.commonPool().invokeAll(tasks);
-			Color[][] tempFrames = new Color[frameCount][];
-			for (int i = 0; i < results.size(); i++) {
-				tempFrames[i] = results.get(i).get();
+		FrameGenerator.setFirstHeader(firstBytes, payloadLength, (int) crc.getValue());
+		FrameGenerator.setDigest(settings, firstBytes, firstHeaderLength);
+		consumer.accept(FrameGenerator.createFrame(settings,
+				new ColorQueue(settings, firstBytes, productLayout), format));
+		return frameCount;
+	}
+	
+	private static int readFully(@NotNull InputStream input, @NotNull byte[] target, int offset) throws IOException {
+		int index = offset;
+		while (index < target.length) {
+			int read = input.read(target, index, target.length - index);
+			if (read == -1) {
+				break;
 			}
-			return Arrays.asList(tempFrames);
+			index += read;
+		}
+		return index - offset;
+	}
+	
+	/**
+	 * Converts the specified payload into a movie asynchronously, using the specified executor.
+	 * The frames are created in batches: multiple small frames are created by a single task,
+	 * so that the task overhead does not outweigh the work.
+	 * Cancelling the returned future stops the creation of further frames,
+	 * the frames currently being created are finished first.
+	 * Any failure (including invalid settings) completes the returned future exceptionally.
+	 * The progress listener is called from the executor's threads, possibly concurrently,
+	 * with the count of frames created so far, the total count being
+	 * {@link GeneratorSettings#getFrameCount(int)}.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param payload the source of the data that should be included in the movie
+	 * @param executor the executor the frames are created on
+	 * @param progressListener the function notified whenever a frame is created or null
+	 * @return the future that completes with the movie in the form of a sequence of frames (color matrices)
+	 */
+	@NotNull
+	public static CompletableFuture<List<Color[]>> createMovieAsync(@NotNull GeneratorSettings settings,
+			@NotNull PayloadSource payload, @NotNull Executor executor, @Nullable IntConsumer progressListener) {
+		return createMovieAsync(settings, payload, FrameFormat.COLORS, executor, progressListener);
+	}
+	
+	/**
+	 * Converts the specified payload into a movie whose frames are {@link PackedFrame} instances asynchronously,
+	 * see {@link #createMovieAsync(GeneratorSettings, PayloadSource, Executor, IntConsumer)}.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param payload the source of the data that should be included in the movie
+	 * @param format the way the cells of the frames are stored
+	 * @param direct whether the frames should be backed by direct buffers instead of heap buffers
+	 * @param executor the executor the frames are created on
+	 * @param progressListener the function notified whenever a frame is created or null
+	 * @return the future that completes with the movie in the form of a sequence of packed frames
+	 */
+	@NotNull
+	public static CompletableFuture<List<PackedFrame>> createPackedMovieAsync(@NotNull GeneratorSettings settings,
+			@NotNull PayloadSource payload, @NotNull PackedFrame.Format format, boolean direct,
+			@NotNull Executor executor, @Nullable IntConsumer progressListener) {
+		return createMovieAsync(settings, payload, FrameFormat.packed(format, direct), executor, progressListener);
+	}
+	
+	@NotNull
+	private static <T> List<T> createMovie(@NotNull GeneratorSettings settings,
+			@NotNull byte[] payload, @NotNull FrameFormat<T> format) {
+		PayloadQueue queue = PayloadQueue.createWithoutCrc(settings, PayloadSource.of(payload));
+		CompletableFuture<List<T>> result = new CompletableFuture<>();
+		createFrames(settings, queue, format, ForkJoinPool.commonPool(), null, result);
+		try {
+			return result.get();
 		} catch (InterruptedException | ExecutionException e) {
 			throw new RuntimeException(e);
 		}
 	}
+	
+	@NotNull
+	private static <T> CompletableFuture<List<T>> createMovieAsync(@NotNull GeneratorSettings settings,
+			@NotNull PayloadSource payload, @NotNull FrameFormat<T> format,
+			@NotNull Executor executor, @Nullable IntConsumer progressListener) {
+		CompletableFuture<List<T>> result = new CompletableFuture<>();
+		execute(executor, result, () -> createFrames(settings, PayloadQueue.createWithoutCrc(settings, payload),
+				format, executor, progressListener, result));
+		return result;
+	}
+	
+	/**
+	 * Creates the frames of the movie on the specified executor, in batches.
+	 * The CRC of the payload is not calculated in advance: each task calculates the CRCs of the segments
+	 * of its frames and the task finishing last combines them and creates the first frame.
+	 * If every regular frame contains the movie header (and therefore the CRC), then the segment CRCs
+	 * are calculated by separate tasks on the same executor before the frames are created.
+	 */
+	private static <T> void createFrames(@NotNull GeneratorSettings settings, @NotNull PayloadQueue queue,
+			@NotNull FrameFormat<T> format, @NotNull Executor executor, @Nullable IntConsumer progressListener,
+			@NotNull CompletableFuture<List<T>> result) {
+		int frameCount = settings.getFrameCount(queue.getPayloadLength());
+		if (frameCount == -1) {
+			throw new IllegalArgumentException("invalid payload length, settings combination");
+		}
+		
+		int batchSize = Math.max(1, CELLS_PER_TASK / (settings.getImageResolution() * settings.getImageResolution()));
+		int[] segmentCrcs = new int[frameCount];
+		if (settings.getMovieHeader() == FrameInfo.MovieHeader.FIRST_FRAME) {
+			createFrames(settings, queue, format, executor, progressListener, result, batchSize, segmentCrcs);
+			return;
+		}
+		
+		executeBatches(executor, result, frameCount, batchSize, frameIndex ->
+				segmentCrcs[frameIndex] = queue.calculateSegmentCrc(frameIndex, queue.createDataBytes(frameIndex)),
+				() -> createFrames(settings, queue.withSegmentCrcs(segmentCrcs), format,
+						executor, progressListener, result, batchSize, null));
+	}
+	
+	/**
+	 * Creates the regular frames, then the first frame. If the segment CRCs are specified,
+	 * then the tasks fill them and the first frame is created using the CRC they are combined into.
+	 */
+	private static <T> void createFrames(@NotNull GeneratorSettings settings, @NotNull PayloadQueue queue,
+			@NotNull FrameFormat<T> format, @NotNull Executor executor, @Nullable IntConsumer progressListener,
+			@NotNull CompletableFuture<List<T>> result, int batchSize, @Nullable int[] segmentCrcs) {
+		int frameCount = segmentCrcs == null ? settings.getFrameCount(queue.getPayloadLength()) : segmentCrcs.length;
+		//noinspection unchecked
+		List<T> frames = Arrays.asList((T[]) new Object[frameCount]);
+		AtomicInteger createdFrames = new AtomicInteger();
+		executeBatches(executor, result, frameCount - 1, batchSize, index -> {
+			byte[] bytes = queue.createDataBytes(index + 1);
+			if (segmentCrcs != null) {
+				segmentCrcs[index + 1] = queue.calculateSegmentCrc(index + 1, bytes);
+			}
+			frames.set(index + 1, FrameGenerator.createRegularFrame(settings, queue, bytes, index, format));
+			notifyProgress(progressListener, createdFrames.incrementAndGet());
+		}, () -> {
+			byte[] bytes = queue.createDataBytes(0);
+			PayloadQueue firstQueue = queue;
+			if (segmentCrcs != null) {
+				segmentCrcs[0] = queue.calculateSegmentCrc(0, bytes);
+				firstQueue = queue.withSegmentCrcs(segmentCrcs);
+			}
+			frames.set(0, FrameGenerator.createFirstFrame(settings, firstQueue, bytes, format));
+			notifyProgress(progressListener, createdFrames.incrementAndGet());
+			result.complete(frames);
+		});
+	}
+	
+	/**
+	 * Runs the specified task for each index below the count on the executor,
+	 * multiple indexes being handled by a single task. The completion is run once all indexes were handled,
+	 * by the task finishing last. No further indexes are handled once the result is done (e.g. cancelled).
+	 */
+	private static void executeBatches(@NotNull Executor executor, @NotNull CompletableFuture<?> result,
+			int count, int batchSize, @NotNull IntConsumer task, @NotNull Runnable completion) {
+		if (count == 0) {
+			execute(executor, result, completion);
+			return;
+		}
+		
+		AtomicInteger remainingBatches = new AtomicInteger((count + batchSize - 1) / batchSize);
+		for (int start = 0; start < count && !result.isDone(); start += batchSize) {
+			int batchStart = start;
+			int batchEnd = Math.min(count, start + batchSize);
+			execute(executor, result, () -> {
+				for (int i = batchStart; i < batchEnd; i++) {
+					if (result.isDone()) {
+						return;
+					}
+					task.accept(i);
+				}
+				if (remainingBatches.decrementAndGet() == 0) {
+					completion.run();
+				}
+			});
+		}
+	}
+	
+	private static void notifyProgress(@Nullable IntConsumer progressListener, int createdFrames) {
+		if (progressListener != null) {
+			progressListener.accept(createdFrames);
+		}
+	}
+	
+	private static void execute(@NotNull Executor executor,
+			@NotNull CompletableFuture<?> result, @NotNull Runnable task) {
+		try {
+			executor.execute(() -> {
+				try {
+					task.run();
+				} catch (Throwable t) {
+					result.completeExceptionally(t);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			result.completeExceptionally(e);
+		}
+	}
+	
+	/**
+	 * Converts the specified payload into an unbounded fountain movie.
+	 * The first frame is the same as in regular movies and it is repeated every
+	 * {@link #FOUNTAIN_FIRST_FRAME_INTERVAL} frames, the other frames are fountain frames:
+	 * the first fountain frames contain the blocks of the payload in order, the rest contain random combinations.
+	 * A receiver needs the first frame and any set of slightly more fountain frames than blocks,
+	 * therefore missed frames do not have to be waited for.
+	 * {@link GeneratorSettings#getFountainBlockCount(int)} should be called before this method
+	 * to make sure that the parameters form a valid combination.
+	 * The frames are created lazily, when requested from the iterator, whose {@code hasNext()} is always true.
+	 * The returned first frame instances are shared and therefore must not be modified.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param payload the data that should be included in the movie, not copied
+	 * @return the iterator of the frames (color matrices) of the movie
+	 * @see FountainCode
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static Iterator<Color[]> createFountainMovie(@NotNull GeneratorSettings settings, @NotNull byte[] payload) {
+		return createFountainMovie(settings, payload, FrameFormat.COLORS);
+	}
+	
+	@NotNull
+	private static <T> Iterator<T> createFountainMovie(@NotNull GeneratorSettings settings,
+			@NotNull byte[] payload, @NotNull FrameFormat<T> format) {
+		PayloadQueue queue = PayloadQueue.create(settings, PayloadSource.of(payload));
+		int blockCount = settings.getFountainBlockCount(queue.getPayloadLength());
+		if (blockCount == -1) {
+			throw new IllegalArgumentException("invalid payload length, settings combination");
+		}
+		
+		T firstFrame = FrameGenerator.createFirstFrame(settings, queue, format);
+		byte[][] blocks = queue.createRemainingBlocks(settings.getFountainBlockLength(), blockCount);
+		
+		return new Iterator<T>() {
+			private int frameIndex;
+			private int symbolId;
+			
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+			
+			@Override
+			public T next() {
+				if (blocks.length == 0 || frameIndex++ % FOUNTAIN_FIRST_FRAME_INTERVAL == 0) {
+					return firstFrame;
+				}
+				
+				T frame = FrameGenerator.createFountainFrame(settings, queue, blocks, symbolId, format);
+				symbolId = (symbolId + 1) % FountainCode.SYMBOL_ID_BOUND;
+				return frame;
+			}
+		};
+	}
 }
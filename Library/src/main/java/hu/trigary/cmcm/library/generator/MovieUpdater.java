@@ -0,0 +1,159 @@
+package hu.trigary.cmcm.library.generator;
+
+import hu.trigary.cmcm.library.utilities.ChunkConverter;
+import hu.trigary.cmcm.library.utilities.CrcCombiner;
+import hu.trigary.cmcm.library.utilities.FrameInfo;
+import hu.trigary.cmcm.library.utilities.FrameLayout;
+import hu.trigary.cmcm.library.utilities.PayloadCodec;
+import hu.trigary.cmcm.library.utilities.ProductLayout;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Utility class used for regenerating only the frames of a movie whose payload segment changed.
+ * The old bytes are read back from the frames of the old movie, therefore the old payload is not needed.
+ * The first frame is always regenerated, since it contains the CRC of the whole payload,
+ * which is updated using only the difference of the changed segments, see {@link CrcCombiner}.
+ * If every frame contains the movie header (see {@link FrameInfo.MovieHeader#EVERY_FRAME}),
+ * then every frame is regenerated, since the header contains a fragment of the CRC.
+ */
+final class MovieUpdater {
+	
+	private MovieUpdater() { }
+	
+	/**
+	 * Creates the movie of the specified payload from the movie of a payload of the same length.
+	 * The returned list contains the unchanged frames of the old movie, they are not copied.
+	 *
+	 * @param settings the properties of the frames, they must equal the ones the old movie was created with
+	 * @param movie the old movie, created by {@link MovieGenerator}
+	 * @param payload the new payload, its length must equal the length of the old payload
+	 * @param changes the ranges of the payload that might have changed, the rest must be unchanged
+	 * @param format the representation of the frames
+	 * @param <T> the type of the frames
+	 * @return the movie of the new payload
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static <T> List<T> update(@NotNull GeneratorSettings settings, @NotNull List<T> movie,
+			@NotNull byte[] payload, @NotNull List<PayloadRange> changes, @NotNull FrameFormat<T> format) {
+		if (settings.getCompression() != PayloadCodec.NONE) {
+			throw new IllegalArgumentException("compressed movies cannot be updated");
+		}
+		
+		int frameCount = settings.getFrameCount(payload.length);
+		if (frameCount == -1) {
+			throw new IllegalArgumentException("invalid payload length, settings combination");
+		}
+		if (frameCount != movie.size()) {
+			throw new IllegalArgumentException("the length of the movie must match the length of the payload");
+		}
+		
+		int dataBytesLength = ChunkConverter.getByteCount(settings.getDataChunks());
+		boolean[] changed = new boolean[frameCount];
+		changed[0] = true;
+		if (settings.getMovieHeader() == FrameInfo.MovieHeader.EVERY_FRAME) {
+			Arrays.fill(changed, true);
+		}
+		for (PayloadRange change : changes) {
+			if (change.getOffset() + change.getLength() > payload.length) {
+				throw new IllegalArgumentException("changed ranges must be within the payload");
+			}
+			if (change.getLength() == 0) {
+				continue;
+			}
+			
+			int last = getFrameIndex(settings, dataBytesLength, change.getOffset() + change.getLength() - 1);
+			for (int i = getFrameIndex(settings, dataBytesLength, change.getOffset()); i <= last; i++) {
+				changed[i] = true;
+			}
+		}
+		
+		FrameLayout layout = settings.getFrameLayout();
+		ProductLayout productLayout = settings.getLayout() == FrameInfo.Layout.PRODUCT
+				? new ProductLayout(settings) : null;
+		byte[] firstBytes = readDataBytes(settings, layout, productLayout, format, movie.get(0));
+		if ((firstBytes[0] & 128) == 0 || (getBytes(firstBytes, 0, 3) & 0x7fffff) != payload.length) {
+			throw new IllegalArgumentException("the old payload must have the same length as the new one");
+		}
+		
+		int crc = getBytes(firstBytes, 3, 4);
+		for (int i = 0; i < frameCount; i++) {
+			if (!changed[i]) {
+				continue;
+			}
+			
+			byte[] bytes = i == 0 ? firstBytes : readDataBytes(settings, layout, productLayout, format, movie.get(i));
+			int headerLength = i == 0 ? settings.getFirstHeaderLength() : settings.getRegularHeaderLength();
+			int start = getSegmentStart(settings, dataBytesLength, i);
+			int length = Math.min(dataBytesLength - headerLength, payload.length - start);
+			if (length <= 0) {
+				continue;
+			}
+			
+			for (int j = 0; j < length; j++) {
+				bytes[headerLength + j] ^= payload[start + j];
+			}
+			crc = CrcCombiner.applyDifference(crc, bytes, headerLength, length, payload.length - start - length);
+		}
+		
+		PayloadQueue queue = new PayloadQueue(settings, PayloadSource.of(payload), crc);
+		List<T> frames = new ArrayList<>(movie);
+		for (int i = 0; i < frameCount; i++) {
+			if (changed[i]) {
+				frames.set(i, i == 0 ? FrameGenerator.createFirstFrame(settings, queue, format)
+						: FrameGenerator.createRegularFrame(settings, queue, i - 1, format));
+			}
+		}
+		return frames;
+	}
+	
+	@Contract(pure = true)
+	private static int getSegmentStart(@NotNull FrameInfo frameInfo, int dataBytesLength, int frameIndex) {
+		return frameIndex == 0 ? 0 : dataBytesLength - frameInfo.getFirstHeaderLength()
+				+ (frameIndex - 1) * (dataBytesLength - frameInfo.getRegularHeaderLength());
+	}
+	
+	@Contract(pure = true)
+	private static int getFrameIndex(@NotNull FrameInfo frameInfo, int dataBytesLength, int payloadIndex) {
+		int firstSegmentLength = dataBytesLength - frameInfo.getFirstHeaderLength();
+		return payloadIndex < firstSegmentLength ? 0
+				: 1 + (payloadIndex - firstSegmentLength) / (dataBytesLength - frameInfo.getRegularHeaderLength());
+	}
+	
+	/**
+	 * Reads the data bytes (the header and the payload segment) of a frame.
+	 * The frame was created by the generator, therefore no error correction is necessary.
+	 */
+	@NotNull
+	@Contract(pure = true)
+	private static <T> byte[] readDataBytes(@NotNull GeneratorSettings settings, @NotNull FrameLayout layout,
+			@Nullable ProductLayout productLayout, @NotNull FrameFormat<T> format, @NotNull T frame) {
+		int[] contentChunks = new int[settings.getContentChunks()];
+		format.readChunks(layout, frame, contentChunks);
+		int[] dataChunks = new int[settings.getDataChunks()];
+		if (productLayout == null) {
+			System.arraycopy(contentChunks, 0, dataChunks, 0, dataChunks.length);
+		} else {
+			productLayout.readDataChunks(contentChunks, dataChunks);
+		}
+		
+		byte[] bytes = new byte[ChunkConverter.getByteCount(dataChunks.length)];
+		ChunkConverter.chunksToBytes(dataChunks, bytes);
+		return bytes;
+	}
+	
+	@Contract(pure = true)
+	private static int getBytes(@NotNull byte[] array, int offset, int size) {
+		int value = 0;
+		for (int i = 0; i < size; i++) {
+			value = value << 8 | (array[offset + i] & 0xff);
+		}
+		return value;
+	}
+}
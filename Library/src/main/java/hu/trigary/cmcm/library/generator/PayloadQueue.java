@@ -1,94 +1,253 @@
 package hu.trigary.cmcm.library.generator;
 
 import hu.trigary.cmcm.library.utilities.ChunkConverter;
+import hu.trigary.cmcm.library.utilities.CrcCombiner;
 import hu.trigary.cmcm.library.utilities.FrameInfo;
+import hu.trigary.cmcm.library.utilities.PayloadCodec;
+import hu.trigary.cmcm.library.utilities.ProductLayout;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.zip.CRC32;
 
 /**
  * A class that is capable of splitting the whole payload into smaller
- * segments segments that the frames then can then store.
+ * segments that the frames then can store.
+ * The segment of any frame can be retrieved at any time, in any order:
+ * instances are immutable and therefore can be shared between threads.
  */
 class PayloadQueue {
+	private static final int CRC_BUFFER_LENGTH = 1 << 16;
 	private final FrameInfo frameInfo;
-	private final byte[] payload;
-	private final byte[] mutableDataBytesArray;
-	private int mutableDataBytesArrayOffset;
-	private int payloadIndex;
+	private final PayloadSource payload;
+	private final int payloadLength;
+	private final int payloadCrc;
+	private final boolean payloadCrcKnown;
+	private final int crcMask;
+	private final ProductLayout productLayout;
+	private final int dataBytesLength;
 	
 	/**
-	 * Creates a new instance.
-	 * The specified payload is not copied and therefore it mustn't be modified
-	 * while this newly created instance is used.
+	 * Creates a new instance whose payload CRC is already known,
+	 * therefore the payload is only read when frames are created.
 	 *
 	 * @param frameInfo the properties of the frame that will be used
-	 * @param payload the data to include in the frame(s), not copied
+	 * @param payload the source of the data to include in the frame(s)
+	 * @param payloadCrc the CRC32 value of the whole payload
 	 */
-	PayloadQueue(@NotNull FrameInfo frameInfo, @NotNull byte[] payload) {
+	PayloadQueue(@NotNull FrameInfo frameInfo, @NotNull PayloadSource payload, int payloadCrc) {
+		this(frameInfo, payload, payloadCrc, true, 0);
+	}
+	
+	private PayloadQueue(@NotNull FrameInfo frameInfo, @NotNull PayloadSource payload,
+			int payloadCrc, boolean payloadCrcKnown, int crcMask) {
 		this.frameInfo = frameInfo;
 		this.payload = payload;
-		mutableDataBytesArray = new byte[ChunkConverter.getByteCount(frameInfo.getDataChunks())];
+		payloadLength = payload.getLength();
+		this.payloadCrc = payloadCrc;
+		this.payloadCrcKnown = payloadCrcKnown;
+		this.crcMask = crcMask;
+		productLayout = frameInfo.getLayout() == FrameInfo.Layout.PRODUCT ? new ProductLayout(frameInfo) : null;
+		dataBytesLength = ChunkConverter.getByteCount(frameInfo.getDataChunks());
+	}
+	
+	/**
+	 * Creates a new instance, compressing the payload if the settings specify a compression
+	 * and the compression makes the payload shorter.
+	 * Compressed payloads are read as a whole and their CRC is masked, see {@link PayloadCodec}.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param payload the source of the data to include in the frame(s)
+	 * @return the new instance
+	 * @throws UncheckedIOException if the payload could not be read
+	 */
+	@NotNull
+	public static PayloadQueue create(@NotNull GeneratorSettings settings, @NotNull PayloadSource payload) {
+		PayloadQueue queue = createWithoutCrc(settings, payload);
+		return new PayloadQueue(settings, queue.payload,
+				calculateCrc(queue.payload, 0, queue.payloadLength) ^ queue.crcMask, true, queue.crcMask);
+	}
+	
+	/**
+	 * Creates a new instance just like {@link #create(GeneratorSettings, PayloadSource)} does,
+	 * except that the CRC of the payload is not calculated: the frame tasks calculate the CRCs of their segments
+	 * (see {@link #calculateSegmentCrc(int, byte[])}), which are then combined by {@link #withSegmentCrcs(int[])}.
+	 * {@link #getPayloadCrc()} must not be called on the returned instance.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param payload the source of the data to include in the frame(s)
+	 * @return the new instance
+	 * @throws UncheckedIOException if the payload could not be read
+	 */
+	@NotNull
+	public static PayloadQueue createWithoutCrc(@NotNull GeneratorSettings settings, @NotNull PayloadSource payload) {
+		if (settings.getCompression() == PayloadCodec.NONE) {
+			return new PayloadQueue(settings, payload, 0, false, 0);
+		}
+		
+		byte[] bytes = new byte[payload.getLength()];
+		read(payload, 0, bytes, 0, bytes.length);
+		byte[] compressed = settings.getCompression().compress(bytes);
+		return compressed == null ? new PayloadQueue(settings, PayloadSource.of(bytes), 0, false, 0)
+				: new PayloadQueue(settings, PayloadSource.of(compressed), 0, false, PayloadCodec.COMPRESSED_CRC_MASK);
+	}
+	
+	/**
+	 * Creates a new instance that only differs from this one in its payload CRC,
+	 * which is assembled from the specified CRCs of the segments of the frames using {@link CrcCombiner}.
+	 *
+	 * @param segmentCrcs the CRCs of the segments of all frames, the first frame being at index 0
+	 * @return the new instance
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public PayloadQueue withSegmentCrcs(@NotNull int[] segmentCrcs) {
+		int crc = 0; //the CRC of an empty message
+		for (int frameIndex = 0; frameIndex < segmentCrcs.length; frameIndex++) {
+			crc = CrcCombiner.combine(crc, segmentCrcs[frameIndex], Math.max(0, getSegmentLength(frameIndex)));
+		}
+		return new PayloadQueue(frameInfo, payload, crc ^ crcMask, true, crcMask);
 	}
 	
 	/**
 	 * Gets the total length of the payload that is to be included in the frame(s).
+	 * If the payload was compressed, then this is the length of the compressed payload.
 	 *
 	 * @return the payload's length
 	 */
 	@Contract(pure = true)
 	public int getPayloadLength() {
-		return payload.length;
+		return payloadLength;
 	}
 	
 	/**
-	 * Calculates a CRC32 value from the whole payload.
+	 * Gets the CRC32 value of the whole payload, as it is stored in the first frame.
 	 *
 	 * @return the payload's CRC
+	 * @throws IllegalStateException if the instance was created without calculating the CRC
+	 */
+	@Contract(pure = true)
+	public int getPayloadCrc() {
+		if (!payloadCrcKnown) {
+			throw new IllegalStateException("payload CRC must be calculated first");
+		}
+		return payloadCrc;
+	}
+	
+	/**
+	 * Creates the data bytes of the frame at the specified index in the movie.
+	 * The header bytes are left empty, they are followed by the payload segment of the frame,
+	 * the bytes after the end of the payload are zeroes.
+	 *
+	 * @param frameIndex the index of the frame, 0 being the first frame
+	 * @return a new array containing the payload segment of the frame
+	 * @throws UncheckedIOException if the payload could not be read
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public byte[] createDataBytes(int frameIndex) {
+		byte[] bytes = new byte[dataBytesLength];
+		int length = getSegmentLength(frameIndex);
+		if (length > 0) {
+			read(payload, getSegmentStart(frameIndex), bytes, getHeaderLength(frameIndex), length);
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Calculates the CRC of the payload segment of the frame at the specified index in the movie.
+	 *
+	 * @param frameIndex the index of the frame, 0 being the first frame
+	 * @param dataBytes the data bytes of the frame, as created by {@link #createDataBytes(int)}
+	 * @return the CRC32 value of the frame's payload segment
 	 */
 	@Contract(pure = true)
-	public int calculatePayloadCrc() {
+	public int calculateSegmentCrc(int frameIndex, @NotNull byte[] dataBytes) {
 		CRC32 crc = new CRC32();
-		crc.update(payload, 0, payload.length);
+		crc.update(dataBytes, getHeaderLength(frameIndex), Math.max(0, getSegmentLength(frameIndex)));
 		return (int) crc.getValue();
 	}
 	
 	/**
-	 * Sets the offset of the internal buffer and returns this buffer.
-	 * The offset determines how many bytes at the start of the buffer won't be overwritten
-	 * when {@link #createNextFrameQueue()} is called.
+	 * Splits the part of the payload not included in the first frame into blocks of equal length.
+	 * The last block is padded with zeroes.
 	 *
-	 * @param offset the amount of bytes {@link #createNextFrameQueue()} should skip
-	 * @return the internal, mutable buffer
+	 * @param blockLength the length of a single block
+	 * @param blockCount the count of blocks to create
+	 * @return the newly created blocks
+	 * @throws UncheckedIOException if the payload could not be read
 	 */
-	public byte[] setDataOffset(int offset) {
-		mutableDataBytesArrayOffset = offset;
-		return mutableDataBytesArray;
+	@NotNull
+	@Contract(pure = true)
+	public byte[][] createRemainingBlocks(int blockLength, int blockCount) {
+		byte[][] blocks = new byte[blockCount][blockLength];
+		int payloadIndex = getFirstSegmentLength();
+		for (byte[] block : blocks) {
+			int length = Math.min(blockLength, payloadLength - payloadIndex);
+			if (length <= 0) {
+				break;
+			}
+			read(payload, payloadIndex, block, 0, length);
+			payloadIndex += length;
+		}
+		return blocks;
 	}
 	
 	/**
-	 * Creates a new {@link ColorQueue} from the data manually inserted into the internal buffer
-	 * using {@link #setDataOffset(int)} and from the next payload segment.
-	 * This newly created instance is not dependent on the this class instance
-	 * and therefore can be given to another thread.
+	 * Creates a new {@link ColorQueue} from the specified data.
 	 *
+	 * @param dataBytes all the data to include in the frame, copied internally
 	 * @return a new {@link ColorQueue} instance
 	 */
 	@NotNull
-	public ColorQueue createNextFrameQueue() {
-		int length = mutableDataBytesArray.length - mutableDataBytesArrayOffset;
-		if (payloadIndex + length <= payload.length) {
-			System.arraycopy(payload, payloadIndex, mutableDataBytesArray, mutableDataBytesArrayOffset, length);
-			payloadIndex += length;
-		} else {
-			int remaining = payload.length - payloadIndex;
-			System.arraycopy(payload, payloadIndex, mutableDataBytesArray, mutableDataBytesArrayOffset, remaining);
-			for (int i = mutableDataBytesArrayOffset + remaining; i < mutableDataBytesArray.length; i++) {
-				mutableDataBytesArray[i] = 0;
-			}
-			payloadIndex = -1;
+	public ColorQueue createFrameQueue(@NotNull byte[] dataBytes) {
+		return new ColorQueue(frameInfo, dataBytes, productLayout);
+	}
+	
+	@Contract(pure = true)
+	private int getFirstSegmentLength() {
+		return dataBytesLength - frameInfo.getFirstHeaderLength();
+	}
+	
+	@Contract(pure = true)
+	private int getHeaderLength(int frameIndex) {
+		return frameIndex == 0 ? frameInfo.getFirstHeaderLength() : frameInfo.getRegularHeaderLength();
+	}
+	
+	@Contract(pure = true)
+	private int getSegmentStart(int frameIndex) {
+		return frameIndex == 0 ? 0 : getFirstSegmentLength()
+				+ (frameIndex - 1) * (dataBytesLength - frameInfo.getRegularHeaderLength());
+	}
+	
+	/**
+	 * Gets the count of payload bytes the frame at the specified index in the movie contains,
+	 * which is negative or zero if the frame is after the end of the payload.
+	 */
+	@Contract(pure = true)
+	private int getSegmentLength(int frameIndex) {
+		return Math.min(dataBytesLength - getHeaderLength(frameIndex), payloadLength - getSegmentStart(frameIndex));
+	}
+	
+	private static int calculateCrc(@NotNull PayloadSource payload, int offset, int length) {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[Math.min(CRC_BUFFER_LENGTH, length)];
+		for (int index = 0; index < length; index += buffer.length) {
+			int count = Math.min(buffer.length, length - index);
+			read(payload, offset + index, buffer, 0, count);
+			crc.update(buffer, 0, count);
+		}
+		return (int) crc.getValue();
+	}
+	
+	private static void read(@NotNull PayloadSource payload, int offset,
+			@NotNull byte[] target, int targetOffset, int length) {
+		try {
+			payload.read(offset, target, targetOffset, length);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
-		return new ColorQueue(frameInfo, mutableDataBytesArray);
 	}
 }
@@ -0,0 +1,46 @@
+package hu.trigary.cmcm.library.generator;
+
+import org.jetbrains.annotations.Contract;
+
+/**
+ * A contiguous range of bytes in a payload, used to specify which part of a payload changed.
+ */
+public final class PayloadRange {
+	private final int offset;
+	private final int length;
+	
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param offset the index of the first byte of the range in the payload
+	 * @param length the count of bytes in the range
+	 */
+	public PayloadRange(int offset, int length) {
+		if (offset < 0 || length < 0) {
+			throw new IllegalArgumentException("offset and length must not be negative");
+		}
+		
+		this.offset = offset;
+		this.length = length;
+	}
+	
+	/**
+	 * Gets the index of the first byte of the range in the payload.
+	 *
+	 * @return the offset of the range
+	 */
+	@Contract(pure = true)
+	public int getOffset() {
+		return offset;
+	}
+	
+	/**
+	 * Gets the count of bytes in the range.
+	 *
+	 * @return the length of the range
+	 */
+	@Contract(pure = true)
+	public int getLength() {
+		return length;
+	}
+}
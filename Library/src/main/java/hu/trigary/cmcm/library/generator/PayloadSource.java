@@ -0,0 +1,121 @@
+package hu.trigary.cmcm.library.generator;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A seekable source of payload bytes, allowing movies to be created
+ * without the whole payload having to be stored in a single array.
+ * Implementations must support concurrent reads from multiple threads.
+ * The content of the source must not change while a movie created from it is used.
+ */
+public interface PayloadSource {
+	/**
+	 * Creates a new instance that reads from the specified array.
+	 *
+	 * @param payload the payload, not copied
+	 * @return the newly created instance
+	 */
+	@NotNull
+	@Contract(pure = true)
+	static PayloadSource of(@NotNull byte[] payload) {
+		return new PayloadSource() {
+			@Override
+			public int getLength() {
+				return payload.length;
+			}
+			
+			@Override
+			public void read(int offset, @NotNull byte[] target, int targetOffset, int length) {
+				System.arraycopy(payload, offset, target, targetOffset, length);
+			}
+		};
+	}
+	
+	/**
+	 * Creates a new instance that reads the remaining bytes of the specified buffer,
+	 * eg. the contents of a file mapped using {@link FileChannel#map(FileChannel.MapMode, long, long)}.
+	 * The position and limit of the specified buffer are not modified.
+	 *
+	 * @param buffer the buffer containing the payload, not copied
+	 * @return the newly created instance
+	 */
+	@NotNull
+	@Contract(pure = true)
+	static PayloadSource of(@NotNull ByteBuffer buffer) {
+		ByteBuffer payload = buffer.slice();
+		return new PayloadSource() {
+			@Override
+			public int getLength() {
+				return payload.remaining();
+			}
+			
+			@Override
+			public void read(int offset, @NotNull byte[] target, int targetOffset, int length) {
+				ByteBuffer view = payload.duplicate();
+				((Buffer) view).position(offset); //the cast keeps the call binary compatible with Java 8
+				view.get(target, targetOffset, length);
+			}
+		};
+	}
+	
+	/**
+	 * Creates a new instance that reads the whole specified file using positional reads,
+	 * therefore the position of the channel is not modified.
+	 * The size of the file is queried only once, in this method.
+	 *
+	 * @param channel the channel of the file containing the payload
+	 * @return the newly created instance
+	 * @throws IOException if the size of the file cannot be queried
+	 */
+	@NotNull
+	@Contract(pure = true)
+	static PayloadSource of(@NotNull FileChannel channel) throws IOException {
+		long size = channel.size();
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("file is too large");
+		}
+		
+		return new PayloadSource() {
+			@Override
+			public int getLength() {
+				return (int) size;
+			}
+			
+			@Override
+			public void read(int offset, @NotNull byte[] target, int targetOffset, int length) throws IOException {
+				ByteBuffer buffer = ByteBuffer.wrap(target, targetOffset, length);
+				while (buffer.hasRemaining()) {
+					if (channel.read(buffer, offset + buffer.position() - targetOffset) == -1) {
+						throw new EOFException("file is shorter than it was when the payload source was created");
+					}
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Gets the length of the payload in bytes.
+	 *
+	 * @return the payload's length
+	 */
+	@Contract(pure = true)
+	int getLength();
+	
+	/**
+	 * Copies a part of the payload into the specified array.
+	 *
+	 * @param offset the index of the first byte to read in the payload
+	 * @param target the array to copy into
+	 * @param targetOffset the index of the first byte to write in the target array
+	 * @param length the count of bytes to copy, the source must contain at least this many bytes after the offset
+	 * @throws IOException if the underlying storage could not be read
+	 */
+	void read(int offset, @NotNull byte[] target, int targetOffset, int length) throws IOException;
+}
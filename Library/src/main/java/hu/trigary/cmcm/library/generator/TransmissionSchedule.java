@@ -0,0 +1,245 @@
+package hu.trigary.cmcm.library.generator;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * The order in which a transmitter displays the frames of a regular movie, repeated in a loop.
+ * Since parsers cannot complete a movie without its first frame, the first frame can be repeated multiple times
+ * in each loop: the repetitions are spread evenly, while the regular frames keep their order between them.
+ * Repeating the first frame makes the loop longer, but a receiver that misses it
+ * does not have to wait for a whole loop to see it again: until the first frame is received,
+ * the count of frames in the movie is unknown, therefore no progress can be shown.
+ * Every frame is needed to complete a regular movie, therefore repeating the first frame
+ * slightly increases the expected completion time: the trade-off can be evaluated using
+ * {@link #getExpectedCompletion(double)} and {@link #getExpectedFirstFrameWait(double)}.
+ * Instances are immutable.
+ */
+public final class TransmissionSchedule {
+	private static final int MAX_EVALUATED_STARTS = 64;
+	private static final int MAX_EVALUATED_LOOPS = 64;
+	private static final double NEGLIGIBLE_PROBABILITY = 1e-9;
+	private final int frameCount;
+	private final int firstFrameRepeats;
+	private final int[] order;
+	
+	private TransmissionSchedule(int frameCount, int firstFrameRepeats) {
+		int repeats = frameCount == 1 ? 1 : firstFrameRepeats;
+		this.frameCount = frameCount;
+		this.firstFrameRepeats = repeats;
+		order = new int[frameCount - 1 + repeats];
+		int regularFrame = 1;
+		int nextRepeat = 1;
+		//order[0] is the first frame, the rest of the repeats are at the evenly spaced positions
+		for (int i = 1; i < order.length; i++) {
+			if (nextRepeat < repeats && i == (int) ((long) nextRepeat * order.length / repeats)) {
+				nextRepeat++;
+			} else {
+				order[i] = regularFrame++;
+			}
+		}
+	}
+	
+	/**
+	 * Creates a new schedule in which the first frame is displayed the specified count of times in each loop.
+	 *
+	 * @param frameCount the count of frames in the movie, see {@link GeneratorSettings#getFrameCount(int)}
+	 * @param firstFrameRepeats how many times the first frame is displayed in each loop
+	 * @return the newly created schedule
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static TransmissionSchedule create(int frameCount, int firstFrameRepeats) {
+		if (frameCount <= 0 || firstFrameRepeats <= 0) {
+			throw new IllegalArgumentException("frame count and first frame repeats must be positive");
+		}
+		
+		return new TransmissionSchedule(frameCount, firstFrameRepeats);
+	}
+	
+	/**
+	 * Creates a new schedule in which the first frame is displayed at least once within the specified delay.
+	 * The first frame is repeated as few times as possible.
+	 *
+	 * @param frameCount the count of frames in the movie, see {@link GeneratorSettings#getFrameCount(int)}
+	 * @param frameRate the count of frames displayed per second
+	 * @param maxFirstFrameDelay the maximum time between the displays of the first frame in seconds,
+	 * it must be longer than the time a single frame is displayed for
+	 * @return the newly created schedule
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static TransmissionSchedule forFrameRate(int frameCount, double frameRate, double maxFirstFrameDelay) {
+		if (frameCount <= 0 || frameRate <= 0) {
+			throw new IllegalArgumentException("frame count and frame rate must be positive");
+		}
+		
+		//the distance of the first frames is at most ceil(length / repeats), length = frameCount - 1 + repeats
+		int maxDistance = (int) Math.floor(maxFirstFrameDelay * frameRate);
+		if (maxDistance < 2) {
+			throw new IllegalArgumentException("first frame delay must allow at least two frames");
+		}
+		
+		int repeats = Math.max(1, (frameCount - 1 + maxDistance - 2) / (maxDistance - 1));
+		return new TransmissionSchedule(frameCount, repeats);
+	}
+	
+	/**
+	 * Gets the count of frames in the movie.
+	 *
+	 * @return the count of distinct frames
+	 */
+	@Contract(pure = true)
+	public int getFrameCount() {
+		return frameCount;
+	}
+	
+	/**
+	 * Gets how many times the first frame is displayed in each loop.
+	 *
+	 * @return the count of first frames in a loop
+	 */
+	@Contract(pure = true)
+	public int getFirstFrameRepeats() {
+		return firstFrameRepeats;
+	}
+	
+	/**
+	 * Gets the count of frames displayed in each loop.
+	 *
+	 * @return the length of a loop
+	 */
+	@Contract(pure = true)
+	public int getLength() {
+		return order.length;
+	}
+	
+	/**
+	 * Gets the index of the frame (in the movie) to display at the specified position.
+	 * Positions past the end of the loop start the loop again, therefore a transmitter
+	 * can simply increment the position after displaying each frame.
+	 *
+	 * @param position the count of frames displayed so far, not negative
+	 * @return the index of the frame to display
+	 */
+	@Contract(pure = true)
+	public int getFrameIndex(long position) {
+		return order[(int) (position % order.length)];
+	}
+	
+	/**
+	 * Gets the indexes of the frames in a single loop.
+	 *
+	 * @return a new array containing the frame indexes in display order
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public int[] toArray() {
+		return Arrays.copyOf(order, order.length);
+	}
+	
+	/**
+	 * Calculates the expected count of frames displayed until a receiver receives every frame of the movie.
+	 * The receiver starts receiving at a random position of the loop and misses each displayed frame
+	 * independently with the specified probability.
+	 * Dividing the result by the frame rate yields the expected completion time in seconds.
+	 * Long loops are evaluated at a subset of evenly spaced starting positions.
+	 *
+	 * @param lossRate the probability of a receiver missing a displayed frame, at least 0 and less than 1
+	 * @return the expected count of displayed frames until completion
+	 */
+	@Contract(pure = true)
+	public double getExpectedCompletion(double lossRate) {
+		if (lossRate < 0 || lossRate >= 1) {
+			throw new IllegalArgumentException("loss rate must be at least 0 and less than 1");
+		}
+		
+		//logTerms[c] is the logarithm of the probability of receiving a frame displayed c times
+		int termCount = lossRate == 0 ? 1 : (int) Math.min(order.length * (long) MAX_EVALUATED_LOOPS,
+				(long) Math.ceil(Math.log(NEGLIGIBLE_PROBABILITY / 1e8) / Math.log(lossRate)) + 1);
+		double[] logTerms = new double[termCount + 1];
+		for (int i = 1; i < logTerms.length; i++) {
+			logTerms[i] = Math.log1p(-Math.pow(lossRate, i));
+		}
+		
+		int starts = Math.min(order.length, MAX_EVALUATED_STARTS);
+		int[] counts = new int[frameCount];
+		double sum = 0;
+		for (int i = 0; i < starts; i++) {
+			Arrays.fill(counts, 0);
+			sum += getExpectedCompletion((int) ((long) i * order.length / starts), counts, logTerms);
+		}
+		return sum / starts;
+	}
+	
+	/**
+	 * Calculates the expected count of frames displayed until a receiver receives the first frame,
+	 * including the first frame itself. The receiver is modelled the same way as in
+	 * {@link #getExpectedCompletion(double)}.
+	 * This is the time until a receiver can show its progress.
+	 *
+	 * @param lossRate the probability of a receiver missing a displayed frame, at least 0 and less than 1
+	 * @return the expected count of displayed frames until the first frame is received
+	 */
+	@Contract(pure = true)
+	public double getExpectedFirstFrameWait(double lossRate) {
+		if (lossRate < 0 || lossRate >= 1) {
+			throw new IllegalArgumentException("loss rate must be at least 0 and less than 1");
+		}
+		
+		int starts = Math.min(order.length, MAX_EVALUATED_STARTS);
+		double sum = 0;
+		for (int i = 0; i < starts; i++) {
+			int start = (int) ((long) i * order.length / starts);
+			double notReceived = 1;
+			for (long t = 0; t < (long) order.length * MAX_EVALUATED_LOOPS; t++) {
+				sum += notReceived;
+				if (order[(int) ((start + t) % order.length)] == 0) {
+					notReceived *= lossRate;
+					if (notReceived < NEGLIGIBLE_PROBABILITY) {
+						break;
+					}
+				}
+			}
+		}
+		return sum / starts;
+	}
+	
+	/**
+	 * Sums the probabilities of the movie not being complete after each count of displayed frames.
+	 */
+	@Contract(pure = true)
+	private double getExpectedCompletion(int start, @NotNull int[] counts, @NotNull double[] logTerms) {
+		int missing = frameCount;
+		double logProbability = 0;
+		double expected = 0;
+		long maxFrames = (long) order.length * MAX_EVALUATED_LOOPS;
+		for (long t = 0; t < maxFrames; t++) {
+			if (missing == 0) {
+				double incomplete = -Math.expm1(logProbability);
+				if (incomplete < NEGLIGIBLE_PROBABILITY) {
+					break;
+				}
+				expected += incomplete;
+			} else {
+				expected++;
+			}
+			
+			int frame = order[(int) ((start + t) % order.length)];
+			int count = counts[frame]++;
+			if (count == 0) {
+				missing--;
+			}
+			logProbability += logTerm(logTerms, count + 1) - logTerm(logTerms, count);
+		}
+		return expected;
+	}
+	
+	@Contract(pure = true)
+	private static double logTerm(@NotNull double[] logTerms, int count) {
+		//frames displayed more times are practically certain to have been received
+		return count < logTerms.length ? logTerms[count] : 0;
+	}
+}
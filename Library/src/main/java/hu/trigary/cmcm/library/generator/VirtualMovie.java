@@ -0,0 +1,164 @@
+package hu.trigary.cmcm.library.generator;
+
+import hu.trigary.cmcm.library.utilities.Color;
+import hu.trigary.cmcm.library.utilities.PackedFrame;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+/**
+ * A movie whose frames are only created when they are requested, in any order.
+ * Only the payload source (which is not copied) and the payload's CRC are stored, therefore
+ * the memory usage does not depend on the length of the movie.
+ * The only exception is compression (see {@link GeneratorSettings#getCompression()}):
+ * the payload is read and compressed as a whole and the compressed payload is kept in memory.
+ * If the payload source fails, {@link java.io.UncheckedIOException} is thrown when creating frames.
+ * Frames are not cached: requesting the same frame twice creates two identical instances.
+ * Instances are immutable and thread-safe.
+ *
+ * @param <T> the type of the frames, either {@link Color} matrices or {@link PackedFrame} instances
+ */
+public final class VirtualMovie<T> implements Iterable<T> {
+	private final GeneratorSettings settings;
+	private final PayloadQueue queue;
+	private final FrameFormat<T> format;
+	private final int frameCount;
+	
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param settings the properties of the frame that will be used
+	 * @param payload the source of the data that should be included in the movie
+	 * @param format the representation of the frames
+	 * @throws java.io.UncheckedIOException if the payload could not be read
+	 */
+	VirtualMovie(@NotNull GeneratorSettings settings, @NotNull PayloadSource payload, @NotNull FrameFormat<T> format) {
+		queue = PayloadQueue.create(settings, payload);
+		frameCount = settings.getFrameCount(queue.getPayloadLength());
+		if (frameCount == -1) {
+			throw new IllegalArgumentException("invalid payload length, settings combination");
+		}
+		
+		this.settings = settings;
+		this.format = format;
+	}
+	
+	/**
+	 * Gets the count of frames in this movie.
+	 *
+	 * @return the length of this movie
+	 */
+	@Contract(pure = true)
+	public int getFrameCount() {
+		return frameCount;
+	}
+	
+	/**
+	 * Creates the frame at the specified index.
+	 * The frame at index 0 is the first frame, the rest are regular frames.
+	 *
+	 * @param index the index of the frame, between 0 (inclusive) and {@link #getFrameCount()} (exclusive)
+	 * @return the newly created frame
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public T frameAt(int index) {
+		if (index < 0 || index >= frameCount) {
+			throw new IndexOutOfBoundsException("frame index must be between 0 and the frame count: " + index);
+		}
+		
+		return index == 0 ? FrameGenerator.createFirstFrame(settings, queue, format)
+				: FrameGenerator.createRegularFrame(settings, queue, index - 1, format);
+	}
+	
+	/**
+	 * Gets an iterator that creates the frames in order, each one when it is requested.
+	 *
+	 * @return a new iterator of the frames
+	 */
+	@NotNull
+	@Contract(pure = true)
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private int index;
+			
+			@Override
+			public boolean hasNext() {
+				return index < frameCount;
+			}
+			
+			@Override
+			public T next() {
+				if (index == frameCount) {
+					throw new NoSuchElementException();
+				}
+				return frameAt(index++);
+			}
+		};
+	}
+	
+	/**
+	 * Gets an iterator that creates the frames in order,
+	 * the specified count of upcoming frames being created in the background,
+	 * using {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+	 * Abandoning the iterator does not cancel the creation of the already requested frames.
+	 *
+	 * @param lookAhead the count of frames to create ahead of time, 0 meaning none
+	 * @return a new iterator of the frames
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public Iterator<T> iterator(int lookAhead) {
+		if (lookAhead < 0) {
+			throw new IllegalArgumentException("look-ahead must not be negative");
+		} else if (lookAhead == 0) {
+			return iterator();
+		}
+		
+		return new Iterator<T>() {
+			private final Deque<CompletableFuture<T>> pending = new ArrayDeque<>(lookAhead + 1);
+			private int requested;
+			private int returned;
+			
+			@Override
+			public boolean hasNext() {
+				return returned < frameCount;
+			}
+			
+			@Override
+			public T next() {
+				if (returned == frameCount) {
+					throw new NoSuchElementException();
+				}
+				
+				while (requested < frameCount && requested <= returned + lookAhead) {
+					int index = requested++;
+					pending.add(CompletableFuture.supplyAsync(() -> frameAt(index)));
+				}
+				returned++;
+				return pending.remove().join();
+			}
+		};
+	}
+	
+	/**
+	 * Gets a spliterator of the frames which supports efficient splitting,
+	 * therefore it is suitable for creating the frames using parallel streams.
+	 *
+	 * @return a new, sized spliterator of the frames
+	 */
+	@NotNull
+	@Contract(pure = true)
+	@Override
+	public Spliterator<T> spliterator() {
+		return IntStream.range(0, frameCount).mapToObj(this::frameAt).spliterator();
+	}
+}
@@ -0,0 +1,247 @@
+package hu.trigary.cmcm.library.parser;
+
+import hu.trigary.cmcm.library.utilities.FountainCode;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Incrementally recovers the fountain blocks from fountain symbols.
+ * Each added symbol is reduced using the already known blocks, symbols that end up
+ * containing a single unknown block reveal that block, which is then removed from the other symbols (peeling).
+ * If peeling stalls while there are at least as many pending symbols as unknown blocks,
+ * then the remaining system is solved using Gaussian elimination.
+ * Instances are not thread-safe.
+ */
+final class FountainDecoder {
+	private final int blockLength;
+	private final byte[][] blocks;
+	private final BitSet addedSymbols = new BitSet();
+	private final List<List<Symbol>> symbolsByBlock;
+	private final List<Symbol> pendingSymbols = new ArrayList<>();
+	private final Deque<Symbol> resolvableSymbols = new ArrayDeque<>();
+	private int knownBlocks;
+	
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param blockCount the count of blocks the payload is split into
+	 * @param blockLength the length of a single block
+	 */
+	FountainDecoder(int blockCount, int blockLength) {
+		this.blockLength = blockLength;
+		blocks = new byte[blockCount][];
+		symbolsByBlock = new ArrayList<>(blockCount);
+		for (int i = 0; i < blockCount; i++) {
+			symbolsByBlock.add(new ArrayList<>());
+		}
+	}
+	
+	/**
+	 * Adds a symbol to this decoder. Symbols whose ID has already been added are ignored.
+	 *
+	 * @param symbolId the ID of the symbol
+	 * @param data the XOR of the symbol's neighboring blocks, its length must be at least the block length, not copied
+	 * @return true if all blocks are known
+	 */
+	boolean add(int symbolId, @NotNull byte[] data) {
+		if (isComplete() || addedSymbols.get(symbolId)) {
+			return isComplete();
+		}
+		addedSymbols.set(symbolId);
+		
+		Symbol symbol = new Symbol(data.clone());
+		for (int neighbor : FountainCode.getNeighbors(blocks.length, symbolId)) {
+			if (blocks[neighbor] == null) {
+				symbol.addUnknown(neighbor);
+				symbolsByBlock.get(neighbor).add(symbol);
+			} else {
+				xor(symbol.data, blocks[neighbor]);
+			}
+		}
+		
+		if (symbol.unknownCount == 1) {
+			resolvableSymbols.add(symbol);
+			peel();
+		} else if (symbol.unknownCount > 1) {
+			pendingSymbols.add(symbol);
+		} else {
+			return false; //the symbol contains no new information
+		}
+		
+		if (!isComplete() && pendingSymbols.size() >= blocks.length - knownBlocks) {
+			eliminate();
+		}
+		return isComplete();
+	}
+	
+	/**
+	 * Checks whether all blocks are known.
+	 *
+	 * @return true if all blocks are known
+	 */
+	@Contract(pure = true)
+	boolean isComplete() {
+		return knownBlocks == blocks.length;
+	}
+	
+	/**
+	 * Gets the recovered blocks. Must only be called after this decoder became complete.
+	 *
+	 * @return the recovered blocks, not copied
+	 */
+	@NotNull
+	@Contract(pure = true)
+	byte[][] getBlocks() {
+		//noinspection AssignmentOrReturnOfFieldWithMutableType
+		return blocks;
+	}
+	
+	private void peel() {
+		while (!resolvableSymbols.isEmpty()) {
+			Symbol symbol = resolvableSymbols.poll();
+			if (symbol.unknownCount != 1) {
+				continue; //it was already resolved by another symbol
+			}
+			setBlock(symbol.unknownXor, symbol.data);
+		}
+		pendingSymbols.removeIf(symbol -> symbol.unknownCount <= 1);
+	}
+	
+	private void setBlock(int index, @NotNull byte[] data) {
+		if (blocks[index] != null) {
+			return;
+		}
+		
+		blocks[index] = data.length == blockLength ? data : Arrays.copyOf(data, blockLength);
+		knownBlocks++;
+		for (Symbol symbol : symbolsByBlock.get(index)) {
+			if (symbol.unknownCount == 0 || symbol.data == data) {
+				symbol.removeUnknown(index);
+				continue;
+			}
+			xor(symbol.data, blocks[index]);
+			symbol.removeUnknown(index);
+			if (symbol.unknownCount == 1) {
+				resolvableSymbols.add(symbol);
+			}
+		}
+		symbolsByBlock.get(index).clear();
+	}
+	
+	/**
+	 * Solves the system formed by the pending symbols over the unknown blocks using Gaussian elimination.
+	 * The elimination is first done without the data, which is only touched if the solution is unique.
+	 */
+	private void eliminate() {
+		int[] unknownIndexes = new int[blocks.length - knownBlocks];
+		int[] columnOfBlock = new int[blocks.length];
+		for (int i = 0, column = 0; i < blocks.length; i++) {
+			if (blocks[i] == null) {
+				columnOfBlock[i] = column;
+				unknownIndexes[column++] = i;
+			}
+		}
+		
+		int rowCount = pendingSymbols.size();
+		BitSet[] rows = new BitSet[rowCount];
+		for (int r = 0; r < rowCount; r++) {
+			Symbol symbol = pendingSymbols.get(r);
+			rows[r] = new BitSet(unknownIndexes.length);
+			for (int i = 0; i < symbol.unknownCount; i++) {
+				rows[r].set(columnOfBlock[symbol.unknowns[i]]);
+			}
+		}
+		
+		BitSet[] rankRows = new BitSet[rowCount];
+		Arrays.setAll(rankRows, r -> (BitSet) rows[r].clone());
+		if (!reduce(rankRows, null, unknownIndexes.length)) {
+			return;
+		}
+		
+		byte[][] data = new byte[rowCount][];
+		Arrays.setAll(data, r -> pendingSymbols.get(r).data.clone());
+		reduce(rows, data, unknownIndexes.length);
+		for (int column = 0; column < unknownIndexes.length; column++) {
+			setBlock(unknownIndexes[column], data[column]);
+		}
+		pendingSymbols.clear();
+		resolvableSymbols.clear();
+	}
+	
+	private boolean reduce(@NotNull BitSet[] rows, @Nullable byte[][] data, int columnCount) {
+		for (int column = 0; column < columnCount; column++) {
+			int pivot = column;
+			while (pivot < rows.length && !rows[pivot].get(column)) {
+				pivot++;
+			}
+			if (pivot == rows.length) {
+				return false;
+			}
+			
+			swap(rows, column, pivot);
+			if (data != null) {
+				swap(data, column, pivot);
+			}
+			for (int r = 0; r < rows.length; r++) {
+				if (r != column && rows[r].get(column)) {
+					rows[r].xor(rows[column]);
+					if (data != null) {
+						xor(data[r], data[column]);
+					}
+				}
+			}
+		}
+		return true;
+	}
+	
+	private static <T> void swap(@NotNull T[] array, int first, int second) {
+		T temp = array[first];
+		array[first] = array[second];
+		array[second] = temp;
+	}
+	
+	private void xor(@NotNull byte[] target, @NotNull byte[] source) {
+		for (int i = 0; i < blockLength; i++) {
+			target[i] ^= source[i];
+		}
+	}
+	
+	
+	
+	private static final class Symbol {
+		private final byte[] data;
+		private int[] unknowns = new int[4];
+		private int unknownCount;
+		private int unknownXor;
+		
+		Symbol(@NotNull byte[] data) {
+			this.data = data;
+		}
+		
+		void addUnknown(int index) {
+			if (unknownCount == unknowns.length) {
+				unknowns = Arrays.copyOf(unknowns, unknownCount * 2);
+			}
+			unknowns[unknownCount++] = index;
+			unknownXor ^= index;
+		}
+		
+		void removeUnknown(int index) {
+			for (int i = 0; i < unknownCount; i++) {
+				if (unknowns[i] == index) {
+					unknowns[i] = unknowns[--unknownCount];
+					unknownXor ^= index;
+					return;
+				}
+			}
+		}
+	}
+}
@@ -2,37 +2,119 @@ package hu.trigary.cmcm.library.parser;
 
 import hu.trigary.cmcm.library.utilities.Color;
 import hu.trigary.cmcm.library.utilities.ChunkConverter;
+import hu.trigary.cmcm.library.utilities.CrcCombiner;
 import hu.trigary.cmcm.library.utilities.FrameInfo;
-import hu.trigary.cmcm.library.utilities.reedsolomon.ReedSolomonDecoder;
+import hu.trigary.cmcm.library.utilities.FrameLayout;
+import hu.trigary.cmcm.library.utilities.PackedFrame;
+import hu.trigary.cmcm.library.utilities.PayloadCodec;
+import hu.trigary.cmcm.library.utilities.ProductLayout;
+import hu.trigary.cmcm.library.utilities.reedsolomon.ChaseDecoder;
+import hu.trigary.cmcm.library.utilities.reedsolomon.InterleavedDecoder;
+import hu.trigary.cmcm.library.utilities.reedsolomon.ProductDecoder;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.Executor;
 import java.util.zip.CRC32;
 
 /**
  * The class that is used for converting an unordered stream of frames
- * (in the form of color matrices or content chunks) to the actual payload.
+ * (in the form of color matrices, packed frames or content chunks) to the actual payload.
+ * Both regular movies and fountain movies (see {@link hu.trigary.cmcm.library.utilities.FountainCode})
+ * are supported: the latter only require a first frame and slightly more fountain frames than blocks.
+ * Compressed payloads (see {@link PayloadCodec}) are detected using the CRC stored in the first frame
+ * and are decompressed once their CRC has been verified.
+ * The redundancy of the received frames (see {@link FrameInfo.Redundancy}) does not have to be known in advance:
+ * frames are decoded with the redundancy of the last accepted frame (initially the configured one) and
+ * if that fails, then the other redundancies are tried as well.
+ * If every regular frame contains the movie header (see {@link FrameInfo.MovieHeader#EVERY_FRAME}),
+ * then the length of the movie is known from any frame and frames of other movies are never tried as candidates.
+ * If every frame contains its own digest (see {@link FrameInfo.Integrity#FRAME_DIGEST}),
+ * then corrupted frames are discarded on arrival, therefore there is practically a single version of each frame
+ * and completing the movie only requires a single check of the CRC of the whole payload.
+ * Frames may be added from multiple threads concurrently: each thread decodes the frames
+ * using its own buffers and decoders, only the storing of the decoded frames is synchronized.
  */
 public class MovieParser {
 	private static final int EXPECTED_DUPLICATE_FRAMES_COUNT = 5;
+	private static final int DEFAULT_SOFT_DECISION_BUDGET = 16;
+	private static final int MAX_COMBINATION_CHECKS = 1024;
+	private static final FrameInfo.Redundancy[] REDUNDANCIES_BY_STRENGTH = FrameInfo.Redundancy.values();
 	private final Map<Integer, List<ParsedRegularFrame>> regularFrames = new HashMap<>();
+	private final BitSet receivedSequenceIds = new BitSet();
 	private final List<ParsedFirstFrame> firstFrames = new ArrayList<>(EXPECTED_DUPLICATE_FRAMES_COUNT);
+	private final Map<Integer, List<ParsedFountainFrame>> fountainFrames = new HashMap<>();
+	private final Map<Integer, FountainDecoder> fountainDecoders = new HashMap<>();
+	private final Map<Integer, Map<Integer, ParsedFountainFrame>> fountainInputs = new HashMap<>();
+	private final Map<ParsedFirstFrame, CombinationSearch> combinationSearches = new HashMap<>();
+	private final FrameInfo[] redundancyInfos = new FrameInfo[FrameInfo.Redundancy.values().length];
 	private final FrameInfo frameInfo;
-	private final byte[] payloadBytes;
+	private final FrameLayout frameLayout;
+	private final int softDecisionBudget;
+	private final Executor codewordExecutor;
 	private final int contentChunksLength;
-	private int[] contentChunks;
+	private final ThreadLocal<Workspace> workspaces;
+	private volatile FrameInfo.Redundancy acceptedRedundancy;
+	private int candidateRankingVersion;
+	private int combinationSearchesVersion;
+	
+	static {
+		Arrays.sort(REDUNDANCIES_BY_STRENGTH, Comparator.comparingDouble(FrameInfo.Redundancy::getRatioConstant));
+	}
 	
 	/**
 	 * Creates a new instance.
+	 * The frames are first decoded using the error correction code matching the redundancy of the specified properties.
+	 * If that fails or the header of the decoded frame signals a different redundancy,
+	 * then the other redundancies are tried as well, their decoders are only built when they are first needed.
 	 *
 	 * @param frameInfo the properties of the frame that this instance will receive
 	 */
 	public MovieParser(@NotNull FrameInfo frameInfo) {
+		this(frameInfo, DEFAULT_SOFT_DECISION_BUDGET);
+	}
+	
+	/**
+	 * Creates a new instance.
+	 * The soft-decision budget is the maximum count of decode attempts
+	 * {@link #tryAddFrame(Color[], Color[])} may make for a single codeword of a frame,
+	 * it should be chosen so that decoding fits inside the per-frame processing deadline.
+	 * The codewords of frames containing multiple codewords (see {@link FrameInfo#getCodewordCount()})
+	 * are decoded one after the other on the thread adding the frame.
+	 *
+	 * @param frameInfo the properties of the frame that this instance will receive
+	 * @param softDecisionBudget the maximum count of decode attempts per codeword when using soft-decision decoding
+	 */
+	public MovieParser(@NotNull FrameInfo frameInfo, int softDecisionBudget) {
+		this(frameInfo, softDecisionBudget, null);
+	}
+	
+	/**
+	 * Creates a new instance, see {@link #MovieParser(FrameInfo, int)}.
+	 * The codewords of frames containing multiple codewords (see {@link FrameInfo#getCodewordCount()})
+	 * are decoded in parallel: the thread adding the frame decodes one of them, the others are decoded on the executor.
+	 * The threads of the executor should therefore not be the ones adding the frames.
+	 *
+	 * @param frameInfo the properties of the frame that this instance will receive
+	 * @param softDecisionBudget the maximum count of decode attempts per codeword when using soft-decision decoding
+	 * @param codewordExecutor the executor the codewords are decoded on
+	 * or null, if they should be decoded on the thread adding the frame
+	 */
+	public MovieParser(@NotNull FrameInfo frameInfo, int softDecisionBudget, @Nullable Executor codewordExecutor) {
+		if (softDecisionBudget < 1) {
+			throw new IllegalArgumentException("soft-decision budget must allow at least one decode attempt");
+		}
+		
 		this.frameInfo = frameInfo;
-		payloadBytes = new byte[ChunkConverter.getByteCount(frameInfo.getDataChunks())];
+		frameLayout = FrameLayout.get(frameInfo.getContentResolution(), 0);
+		this.softDecisionBudget = softDecisionBudget;
+		this.codewordExecutor = codewordExecutor;
 		contentChunksLength = frameInfo.getContentChunks();
+		workspaces = ThreadLocal.withInitial(() -> new Workspace(contentChunksLength));
+		acceptedRedundancy = frameInfo.getRedundancy();
+		redundancyInfos[frameInfo.getRedundancy().getId()] = frameInfo;
 	}
 	
 	/**
@@ -47,7 +129,30 @@ public class MovieParser {
 			throw new IllegalArgumentException("content chunks array length must equal FrameInfo#getContentChunks()");
 		}
 		
-		return tryAddChunks(contentChunks);
+		return tryAddChunks(workspaces.get(), contentChunks, null);
+	}
+	
+	/**
+	 * Adds a frame in the form of content chunks into this parser.
+	 * The chunks marked as unreliable are treated as erasures during error correction:
+	 * an erased chunk only uses up half as much error correction capacity as an unknown error.
+	 * Unreliable chunks are usually the ones under glare, the occluded ones
+	 * or the ones whose sampled colors were close to a threshold.
+	 * If a codeword contains more marked chunks than correction chunks, then the mask is ignored for that codeword.
+	 *
+	 * @param contentChunks the frame to add
+	 * @param unreliableChunks the array whose element is true at the index of each unreliable content chunk
+	 * @return the complete decoded payload, if decoding was successful
+	 */
+	@Nullable
+	public byte[] tryAddFrame(@NotNull int[] contentChunks, @NotNull boolean[] unreliableChunks) {
+		if (contentChunks.length != contentChunksLength) {
+			throw new IllegalArgumentException("content chunks array length must equal FrameInfo#getContentChunks()");
+		} else if (unreliableChunks.length != contentChunksLength) {
+			throw new IllegalArgumentException("reliability mask length must equal FrameInfo#getContentChunks()");
+		}
+		
+		return tryAddChunks(workspaces.get(), contentChunks, unreliableChunks);
 	}
 	
 	/**
@@ -58,81 +163,421 @@ public class MovieParser {
 	 */
 	@Nullable
 	public byte[] tryAddFrame(@NotNull Color[] paddinglessFrame) {
-		int resolution = frameInfo.getContentResolution();
-		if (paddinglessFrame.length != resolution * resolution) {
-			throw new IllegalArgumentException("frame array length must equal squared resolution");
+		Workspace workspace = workspaces.get();
+		return tryAddChunks(workspace, readChunks(workspace, paddinglessFrame), null);
+	}
+	
+	/**
+	 * Adds a frame in the form of a paddingless color matrix into this parser.
+	 * The chunks marked as unreliable are treated as erasures, see {@link #tryAddFrame(int[], boolean[])}.
+	 * Chunks are indexed in the order they are stored in the frame, not by their pixel positions.
+	 *
+	 * @param paddinglessFrame the frame to add
+	 * @param unreliableChunks the array whose element is true at the index of each unreliable content chunk
+	 * @return the complete decoded payload, if decoding was successful
+	 */
+	@Nullable
+	public byte[] tryAddFrame(@NotNull Color[] paddinglessFrame, @NotNull boolean[] unreliableChunks) {
+		if (unreliableChunks.length != contentChunksLength) {
+			throw new IllegalArgumentException("reliability mask length must equal FrameInfo#getContentChunks()");
 		}
 		
-		if (contentChunks == null) {
-			contentChunks = new int[contentChunksLength];
+		Workspace workspace = workspaces.get();
+		return tryAddChunks(workspace, readChunks(workspace, paddinglessFrame), unreliableChunks);
+	}
+	
+	/**
+	 * Adds a frame in the form of a paddingless packed frame into this parser.
+	 * The cells are read directly from the packed representation, no {@link Color} instances are used.
+	 *
+	 * @param paddinglessFrame the frame to add
+	 * @return the complete decoded payload, if decoding was successful
+	 */
+	@Nullable
+	public byte[] tryAddFrame(@NotNull PackedFrame paddinglessFrame) {
+		Workspace workspace = workspaces.get();
+		return tryAddChunks(workspace, readChunks(workspace, paddinglessFrame), null);
+	}
+	
+	/**
+	 * Adds a frame in the form of a paddingless packed frame into this parser.
+	 * The chunks marked as unreliable are treated as erasures, see {@link #tryAddFrame(int[], boolean[])}.
+	 * Chunks are indexed in the order they are stored in the frame, not by their pixel positions.
+	 *
+	 * @param paddinglessFrame the frame to add
+	 * @param unreliableChunks the array whose element is true at the index of each unreliable content chunk
+	 * @return the complete decoded payload, if decoding was successful
+	 */
+	@Nullable
+	public byte[] tryAddFrame(@NotNull PackedFrame paddinglessFrame, @NotNull boolean[] unreliableChunks) {
+		if (unreliableChunks.length != contentChunksLength) {
+			throw new IllegalArgumentException("reliability mask length must equal FrameInfo#getContentChunks()");
+		}
+		
+		Workspace workspace = workspaces.get();
+		return tryAddChunks(workspace, readChunks(workspace, paddinglessFrame), unreliableChunks);
+	}
+	
+	/**
+	 * Adds a frame in the form of a paddingless color matrix into this parser,
+	 * using soft-decision decoding if the frame cannot be decoded as it is.
+	 * The second choices are the second most likely colors of the cells the caller is not confident about.
+	 * Chunks containing more uncertain cells are considered less reliable.
+	 * A bounded amount of combinations of the second choices are tried,
+	 * the bound can be specified using {@link #MovieParser(FrameInfo, int)}.
+	 * Frames using the {@link FrameInfo.Layout#PRODUCT} layout are decoded without using the second choices,
+	 * since their iterative decoding already copes with concentrated errors.
+	 *
+	 * @param paddinglessFrame the frame to add, containing the most likely color of each cell
+	 * @param secondChoices the second most likely color of each cell in the frame
+	 * or null for the cells whose color is certain
+	 * @return the complete decoded payload, if decoding was successful
+	 * @see ChaseDecoder
+	 */
+	@Nullable
+	public byte[] tryAddFrame(@NotNull Color[] paddinglessFrame, @NotNull Color[] secondChoices) {
+		if (secondChoices.length != paddinglessFrame.length) {
+			throw new IllegalArgumentException("second choices array length must equal frame array length");
+		}
+		
+		Workspace workspace = workspaces.get();
+		int[] chunks = readChunks(workspace, paddinglessFrame);
+		if (frameInfo.getLayout() == FrameInfo.Layout.PRODUCT) {
+			return tryAddChunks(workspace, chunks, null);
 		}
 		
-		int chunkIndex = 0;
-		int firstChunk = paddinglessFrame[resolution].getBits(0, 0) << 9;
-		firstChunk |= paddinglessFrame[1 + resolution].getBits(1, 0) << 6;
-		firstChunk |= paddinglessFrame[2 * resolution - 1].getBits(0, 1) << 3;
-		firstChunk |= paddinglessFrame[2 * resolution - 2].getBits(1, 1);
-		contentChunks[chunkIndex++] = firstChunk;
+		if (workspace.mergedFrame == null) {
+			workspace.mergedFrame = new Color[secondChoices.length];
+			workspace.alternativeChunks = new int[contentChunksLength];
+			workspace.uncertainPositions = new int[contentChunksLength];
+			workspace.uncertainAlternatives = new int[contentChunksLength];
+		}
+		Color[] mergedFrame = workspace.mergedFrame;
+		int[] alternativeChunks = workspace.alternativeChunks;
+		int[] uncertainPositions = workspace.uncertainPositions;
+		int[] uncertainAlternatives = workspace.uncertainAlternatives;
+		for (int i = 0; i < secondChoices.length; i++) {
+			mergedFrame[i] = secondChoices[i] == null ? paddinglessFrame[i] : secondChoices[i];
+		}
+		readChunks(mergedFrame, alternativeChunks);
 		
-		int chunkCount = resolution / 2;
-		readChunksInRow(paddinglessFrame, 2, 0, resolution, chunkCount - 2, chunkIndex);
-		int y = 2;
-		chunkIndex += chunkCount - 2;
-		for (int i = 2; i < chunkCount; i++) {
-			readChunksInRow(paddinglessFrame, 0, y, resolution, chunkCount, chunkIndex);
-			chunkIndex += chunkCount;
-			y += 2;
+		//the chunks with the most uncertain cells come first
+		int count = 0;
+		for (int cells = 4; cells > 0; cells--) {
+			for (int i = 0; i < contentChunksLength; i++) {
+				int difference = chunks[i] ^ alternativeChunks[i];
+				if (difference != 0 && countDifferentCells(difference) == cells) {
+					uncertainPositions[count] = i;
+					uncertainAlternatives[count++] = alternativeChunks[i];
+				}
+			}
+		}
+		
+		return tryAddChunks(workspace, chunks, null, uncertainPositions, uncertainAlternatives, count);
+	}
+	
+	/**
+	 * Gets the count of frames in the regular movie being received.
+	 * The count is known once the first frame was received or, if every regular frame contains the movie header
+	 * (see {@link FrameInfo.MovieHeader#EVERY_FRAME}), once any regular frame was received.
+	 * If frames of multiple movies were received, then the most often received first frame
+	 * or regular frame determines the movie. Once that frame was received multiple times,
+	 * received regular frames that do not belong to its movie are dropped.
+	 * Returns -1 if the count is not known yet.
+	 *
+	 * @return the count of frames in the movie or -1
+	 */
+	@Contract(pure = true)
+	public synchronized int getExpectedFrameCount() {
+		ParsedFrame reference = getReferenceFrame();
+		if (reference == null) {
+			return -1;
+		}
+		return reference instanceof ParsedFirstFrame ? ((ParsedFirstFrame) reference).getFrameCount()
+				: ((ParsedRegularFrame) reference).getFrameCount();
+	}
+	
+	/**
+	 * Gets the count of distinct frames received so far that may belong to the regular movie being received,
+	 * see {@link #getExpectedFrameCount()}. Frames received multiple times are only counted once.
+	 * Returns 0 if the count of frames in the movie is not known yet.
+	 *
+	 * @return the count of received frames of the movie
+	 */
+	@Contract(pure = true)
+	public synchronized int getReceivedFrameCount() {
+		ParsedFrame reference = getReferenceFrame();
+		if (reference == null) {
+			return 0;
 		}
-		readChunksInRow(paddinglessFrame, 1, y, resolution, chunkCount - 1, chunkIndex);
 		
-		return tryAddChunks(contentChunks);
+		int count = reference instanceof ParsedFirstFrame ? 1 : 0;
+		for (List<ParsedRegularFrame> list : regularFrames.values()) {
+			//noinspection Convert2streamapi
+			for (ParsedRegularFrame frame : list) {
+				if (isOfMovie(frame, reference)) {
+					count++;
+					break;
+				}
+			}
+		}
+		return count;
 	}
 	
-	private void readChunksInRow(@NotNull Color[] pixels, int startX, int y,
-			int resolution, int chunkCount, int chunkIndex) {
-		for (int i = 0; i < chunkCount; i++) {
-			int value = pixels[startX + y * resolution].getBits(startX, y) << 9;
-			value |= pixels[startX + 1 + y * resolution].getBits(startX + 1, y) << 6;
-			value |= pixels[startX + (y + 1) * resolution].getBits(startX, y + 1) << 3;
-			value |= pixels[startX + 1 + (y + 1) * resolution].getBits(startX + 1, y + 1);
-			contentChunks[chunkIndex++] = value;
-			startX += 2;
+	/**
+	 * Checks whether the specified regular frame may belong to the movie of the specified reference frame:
+	 * whether its sequence ID is in range and it was encoded with the same code
+	 * and, if it contains the movie header, whether the header matches the movie.
+	 */
+	@Contract(pure = true)
+	private static boolean isOfMovie(@NotNull ParsedRegularFrame frame, @NotNull ParsedFrame reference) {
+		if (reference instanceof ParsedFirstFrame) {
+			ParsedFirstFrame firstFrame = (ParsedFirstFrame) reference;
+			return frame.getSequenceId() <= firstFrame.getFrameCount() - 2 && frame.belongsTo(firstFrame);
 		}
+		
+		ParsedRegularFrame regularFrame = (ParsedRegularFrame) reference;
+		return frame.getSequenceId() <= regularFrame.getFrameCount() - 2 && frame.isSameMovie(regularFrame);
 	}
 	
+	/**
+	 * Gets the most often received first frame or, if there are none,
+	 * the most often received regular frame containing the movie header.
+	 */
 	@Nullable
-	private byte[] tryAddChunks(@NotNull int[] contentChunks) {
-		if (!ReedSolomonDecoder.decode(contentChunks, frameInfo.getCorrectionChunks())) {
-			return null;
+	@Contract(pure = true)
+	private ParsedFrame getReferenceFrame() {
+		if (!firstFrames.isEmpty()) {
+			return firstFrames.get(0);
 		}
 		
-		ChunkConverter.chunksToBytes(contentChunks, payloadBytes);
+		ParsedRegularFrame best = null;
+		for (List<ParsedRegularFrame> list : regularFrames.values()) {
+			ParsedRegularFrame frame = list.get(0);
+			if (frame.getFrameCount() != -1 && (best == null || frame.getEqualCount() > best.getEqualCount())) {
+				best = frame;
+			}
+		}
+		return best;
+	}
+	
+	@Contract(pure = true)
+	private static int countDifferentCells(int difference) {
+		int count = 0;
+		for (int i = 0; i < 4; i++) {
+			if ((difference & (7 << (3 * i))) != 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	@NotNull
+	private int[] readChunks(@NotNull Workspace workspace, @NotNull Color[] paddinglessFrame) {
+		readChunks(paddinglessFrame, workspace.contentChunks);
+		return workspace.contentChunks;
+	}
+	
+	@NotNull
+	private int[] readChunks(@NotNull Workspace workspace, @NotNull PackedFrame paddinglessFrame) {
+		if (paddinglessFrame.getResolution() != frameInfo.getContentResolution()) {
+			throw new IllegalArgumentException("packed frame resolution must equal FrameInfo#getContentResolution()");
+		}
+		
+		frameLayout.readChunks(paddinglessFrame, workspace.contentChunks);
+		return workspace.contentChunks;
+	}
+	
+	private void readChunks(@NotNull Color[] paddinglessFrame, @NotNull int[] target) {
+		int resolution = frameInfo.getContentResolution();
+		if (paddinglessFrame.length != resolution * resolution) {
+			throw new IllegalArgumentException("frame array length must equal squared resolution");
+		}
+		
+		frameLayout.readChunks(paddinglessFrame, target);
+	}
+	
+	@Nullable
+	private byte[] tryAddChunks(@NotNull Workspace workspace, @NotNull int[] contentChunks,
+			@Nullable boolean[] unreliableChunks) {
+		return tryAddChunks(workspace, contentChunks, unreliableChunks, null, null, 0);
+	}
+	
+	/**
+	 * Decodes the content chunks using the redundancy of the last accepted frame (initially the configured one) first.
+	 * If that fails or the header of the decoded frame signals a different redundancy,
+	 * then the signalled redundancy and then the remaining ones are tried, each time starting from the received chunks.
+	 * The remaining ones are tried starting from the highest one: a lower redundancy corrects fewer errors,
+	 * therefore it is more likely to miscorrect a frame of a higher redundancy into a seemingly valid frame.
+	 * The decode whose redundancy matches the one in its header is accepted.
+	 * First frames do not contain the redundancy, the highest redundancy that can decode them is accepted.
+	 */
+	@Nullable
+	private byte[] tryAddChunks(@NotNull Workspace workspace, @NotNull int[] contentChunks,
+			@Nullable boolean[] unreliableChunks, @Nullable int[] uncertainPositions,
+			@Nullable int[] uncertainAlternatives, int uncertainCount) {
+		int[] received = workspace.receivedChunks;
+		System.arraycopy(contentChunks, 0, received, 0, contentChunksLength);
+		FrameInfo.Redundancy redundancy = acceptedRedundancy;
+		int triedIds = 0;
+		while (redundancy != null) {
+			triedIds |= 1 << redundancy.getId();
+			RedundancyDecoder decoder = getDecoder(workspace, redundancy);
+			FrameInfo.Redundancy signalled = null;
+			if (decoder.decode(contentChunks, unreliableChunks, uncertainPositions, uncertainAlternatives,
+					uncertainCount)) {
+				byte[] dataBytes = decoder.readDataBytes(contentChunks);
+				if ((dataBytes[0] & 128) != 0) {
+					RedundancyDecoder stronger = decodeStrongerFirstFrame(workspace, triedIds, contentChunks,
+							unreliableChunks, uncertainPositions, uncertainAlternatives, uncertainCount,
+							decoder.getFrameInfo());
+					if (stronger == null) {
+						acceptedRedundancy = redundancy;
+						return processDecodedChunks(dataBytes, decoder.getFrameInfo());
+					}
+					acceptedRedundancy = stronger.getFrameInfo().getRedundancy();
+					return processDecodedChunks(stronger.readDataBytes(contentChunks), stronger.getFrameInfo());
+				} else if ((dataBytes[1] & 0x3) == redundancy.getId()) {
+					acceptedRedundancy = redundancy;
+					return processDecodedChunks(dataBytes, decoder.getFrameInfo());
+				}
+				signalled = FrameInfo.Redundancy.fromId(dataBytes[1] & 0x3);
+			}
+			
+			System.arraycopy(received, 0, contentChunks, 0, contentChunksLength);
+			redundancy = signalled != null && (triedIds & 1 << signalled.getId()) == 0
+					? signalled : getUntriedRedundancy(triedIds);
+		}
+		return null;
+	}
+	
+	/**
+	 * The generator polynomials of the different redundancies share their roots,
+	 * therefore a codeword of a higher redundancy is also a valid codeword of all lower redundancies.
+	 * A successfully decoded first frame is therefore decoded again using the untried higher redundancies
+	 * that result in fewer data chunks, starting from the highest one,
+	 * and the first decode that results in a first frame is accepted.
+	 * Returns null if none of them succeed, in which case the content chunks are left in an unspecified state.
+	 */
+	@Nullable
+	private RedundancyDecoder decodeStrongerFirstFrame(@NotNull Workspace workspace, int triedIds,
+			@NotNull int[] contentChunks, @Nullable boolean[] unreliableChunks, @Nullable int[] uncertainPositions,
+			@Nullable int[] uncertainAlternatives, int uncertainCount, @NotNull FrameInfo decodedInfo) {
+		for (FrameInfo.Redundancy redundancy : REDUNDANCIES_BY_STRENGTH) {
+			if (redundancy.getRatioConstant() >= decodedInfo.getRedundancy().getRatioConstant()) {
+				return null;
+			} else if ((triedIds & 1 << redundancy.getId()) != 0) {
+				continue;
+			}
+			
+			RedundancyDecoder decoder = getDecoder(workspace, redundancy);
+			if (decoder.getFrameInfo().getDataChunks() >= decodedInfo.getDataChunks()) {
+				continue; //the same code
+			}
+			
+			System.arraycopy(workspace.receivedChunks, 0, contentChunks, 0, contentChunksLength);
+			if (decoder.decode(contentChunks, unreliableChunks, uncertainPositions, uncertainAlternatives,
+					uncertainCount) && (decoder.readDataBytes(contentChunks)[0] & 128) != 0) {
+				return decoder;
+			}
+		}
+		return null;
+	}
+	
+	@Nullable
+	@Contract(pure = true)
+	private static FrameInfo.Redundancy getUntriedRedundancy(int triedIds) {
+		//noinspection Convert2streamapi
+		for (FrameInfo.Redundancy redundancy : REDUNDANCIES_BY_STRENGTH) {
+			if ((triedIds & 1 << redundancy.getId()) == 0) {
+				return redundancy;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Gets the decoder of the specified redundancy belonging to the specified workspace,
+	 * creating it if it does not exist yet.
+	 */
+	@NotNull
+	private RedundancyDecoder getDecoder(@NotNull Workspace workspace, @NotNull FrameInfo.Redundancy redundancy) {
+		RedundancyDecoder decoder = workspace.decoders[redundancy.getId()];
+		if (decoder == null) {
+			decoder = new RedundancyDecoder(getFrameInfo(redundancy), softDecisionBudget, codewordExecutor);
+			workspace.decoders[redundancy.getId()] = decoder;
+		}
+		return decoder;
+	}
+	
+	/**
+	 * Gets the properties of the frames of the specified redundancy, creating them if they do not exist yet.
+	 */
+	@NotNull
+	private FrameInfo getFrameInfo(@NotNull FrameInfo.Redundancy redundancy) {
+		synchronized (redundancyInfos) {
+			FrameInfo info = redundancyInfos[redundancy.getId()];
+			if (info == null) {
+				//noinspection ConstantConditions
+				info = new FrameInfo(FrameInfo.ContentResolution.fromValue(frameInfo.getContentResolution()),
+						redundancy, frameInfo.getLayout(), frameInfo.getMovieHeader(), frameInfo.getIntegrity());
+				redundancyInfos[redundancy.getId()] = info;
+			}
+			return info;
+		}
+	}
+	
+	/**
+	 * Parses the data bytes of a decoded frame and stores the frame.
+	 *
+	 * @param payloadBytes all the data stored in the frame, in raw form
+	 * @param decodingInfo the properties the frame was decoded with, its redundancy is the frame's redundancy
+	 * @return the complete decoded payload, if decoding was successful
+	 */
+	@Nullable
+	private byte[] processDecodedChunks(@NotNull byte[] payloadBytes, @NotNull FrameInfo decodingInfo) {
 		if ((payloadBytes[0] & 128) != 0) {
-			ParsedFirstFrame firstFrame = ParsedFirstFrame.create(payloadBytes, frameInfo);
+			ParsedFirstFrame firstFrame = ParsedFirstFrame.create(payloadBytes, decodingInfo);
 			if (firstFrame == null) {
 				return null;
 			}
 			
 			synchronized (this) {
 				storeFrame(firstFrames, firstFrame);
-				return checkCombinations(firstFrame, null);
+				byte[] result = checkCombinations(firstFrame, null);
+				return result != null || fountainFrames.isEmpty() ? result : checkFountain(firstFrame, null);
 			}
 		}
 		
-		ParsedRegularFrame regularFrame = ParsedRegularFrame.create(payloadBytes);
+		if (ParsedFountainFrame.isFountainFrame(payloadBytes)) {
+			return processFountainFrame(ParsedFountainFrame.create(payloadBytes, decodingInfo));
+		}
+		
+		ParsedRegularFrame regularFrame = ParsedRegularFrame.create(payloadBytes, decodingInfo);
+		if (regularFrame == null) {
+			return null;
+		}
+		
 		synchronized (this) {
+			//once the movie is known, frames of other movies (e.g. a previously displayed one) are dropped,
+			//but only if the reference was received multiple times: a miscorrected frame mustn't lock the parser
+			ParsedFrame reference = getReferenceFrame();
+			if (reference != null && reference.getEqualCount() > 1 && !isOfMovie(regularFrame, reference)) {
+				return null;
+			}
+			
 			List<ParsedRegularFrame> storage = regularFrames.get(regularFrame.getSequenceId());
 			//noinspection Java8MapApi
 			if (storage == null) {
 				storage = new ArrayList<>(EXPECTED_DUPLICATE_FRAMES_COUNT);
 				regularFrames.put(regularFrame.getSequenceId(), storage);
 			}
-			storeFrame(storage, regularFrame);
-			
-			//TODO sort first frames based on equalCount
-			// and possibly based on the equality of their other fields
-			// problem: probably a waste of CPU time
+			if (storeFrame(storage, regularFrame)) {
+				candidateRankingVersion++;
+			}
+			receivedSequenceIds.set(regularFrame.getSequenceId());
 			
+			//the first frames are sorted, the most often received ones are tried first
 			//noinspection Convert2streamapi
 			for (ParsedFirstFrame firstFrame : firstFrames) {
 				byte[] result = checkCombinations(firstFrame, regularFrame);
@@ -144,18 +589,200 @@ public class MovieParser {
 		}
 	}
 	
-	private <E extends ParsedFrame> void storeFrame(@NotNull List<E> list, E frame) {
+	@Nullable
+	private byte[] processFountainFrame(@Nullable ParsedFountainFrame fountainFrame) {
+		if (fountainFrame == null) {
+			return null;
+		}
+		
+		synchronized (this) {
+			List<ParsedFountainFrame> storage = fountainFrames.get(fountainFrame.getSymbolId());
+			//noinspection Java8MapApi
+			if (storage == null) {
+				storage = new ArrayList<>(EXPECTED_DUPLICATE_FRAMES_COUNT);
+				fountainFrames.put(fountainFrame.getSymbolId(), storage);
+			}
+			storeFrame(storage, fountainFrame);
+			
+			//noinspection Convert2streamapi
+			for (ParsedFirstFrame firstFrame : firstFrames) {
+				byte[] result = checkFountain(firstFrame, fountainFrame);
+				if (result != null) {
+					return result;
+				}
+			}
+			return null;
+		}
+	}
+	
+	/**
+	 * Feeds the fountain frames into the decoder belonging to the specified first frame.
+	 * The decoder is created and fed all stored fountain frames when it does not exist yet,
+	 * otherwise only the newly received frame is added.
+	 * Only the fountain frames decoded using the same error correction code as the first frame are used.
+	 * If the recovered payload does not match the CRC of any first frame, then a corrupted frame was used:
+	 * the decoder is discarded and the suspected frames are rejected, see {@link #rejectFountainFrames(Collection)}.
+	 *
+	 * @param firstFrame the first frame containing the properties of the movie
+	 * @param fountainFrame the newly received fountain frame or null
+	 * @return the complete decoded payload, if decoding was successful
+	 */
+	@Nullable
+	private byte[] checkFountain(@NotNull ParsedFirstFrame firstFrame, @Nullable ParsedFountainFrame fountainFrame) {
+		int payloadLength = firstFrame.getTotalPayloadLength();
+		FrameInfo.Redundancy redundancy = firstFrame.getRedundancy();
+		FrameInfo movieInfo = getFrameInfo(redundancy);
+		int blockCount = movieInfo.getFountainBlockCount(payloadLength);
+		if (blockCount <= 0) {
+			return null;
+		}
+		
+		int decoderKey = payloadLength << 2 | redundancy.getId(); //the payload length is at most 23 bits long
+		FountainDecoder decoder = fountainDecoders.get(decoderKey);
+		Map<Integer, ParsedFountainFrame> inputs;
+		if (decoder == null) {
+			decoder = new FountainDecoder(blockCount, movieInfo.getFountainBlockLength());
+			fountainDecoders.put(decoderKey, decoder);
+			inputs = new HashMap<>();
+			fountainInputs.put(decoderKey, inputs);
+			for (List<ParsedFountainFrame> versions : fountainFrames.values()) {
+				//the most often received version that is not rejected
+				//noinspection Convert2streamapi
+				for (ParsedFountainFrame version : versions) {
+					if (version.isSameCode(firstFrame) && !version.isRejected()) {
+						feedFountainDecoder(decoder, inputs, version);
+						break;
+					}
+				}
+			}
+		} else if (fountainFrame != null && fountainFrame.isSameCode(firstFrame)) {
+			feedFountainDecoder(decoder, fountainInputs.get(decoderKey), fountainFrame);
+		}
+		
+		if (!decoder.isComplete()) {
+			return null;
+		}
+		
+		//noinspection Convert2streamapi
+		for (ParsedFirstFrame candidate : firstFrames) {
+			if (candidate.getTotalPayloadLength() == payloadLength && candidate.isSameCode(firstFrame)) {
+				byte[] result = compileFountainPayload(candidate, decoder.getBlocks());
+				CRC32 crc = new CRC32();
+				crc.update(result, 0, result.length);
+				int value = (int) crc.getValue();
+				if (candidate.getTotalPayloadCrc() == value) {
+					return result;
+				} else if (candidate.getTotalPayloadCrc() == (value ^ PayloadCodec.COMPRESSED_CRC_MASK)) {
+					result = PayloadCodec.decompress(result);
+					if (result != null) {
+						return result;
+					}
+				}
+			}
+		}
+		
+		fountainDecoders.remove(decoderKey);
+		rejectFountainFrames(fountainInputs.remove(decoderKey).values());
+		return null;
+	}
+	
+	/**
+	 * Adds the specified version of a fountain frame to the decoder,
+	 * unless a version of the same symbol has already been added.
+	 * The versions the decoder was fed are recorded in the specified map.
+	 */
+	private static void feedFountainDecoder(@NotNull FountainDecoder decoder,
+			@NotNull Map<Integer, ParsedFountainFrame> inputs, @NotNull ParsedFountainFrame version) {
+		if (inputs.putIfAbsent(version.getSymbolId(), version) == null) {
+			decoder.add(version.getSymbolId(), version.getPayload());
+		}
+	}
+	
+	/**
+	 * Rejects the fountain frames that may have caused a fountain decoder to recover an invalid payload.
+	 * If some of the used frames have other versions that are not rejected, then only those frames are suspected,
+	 * so that the next decoder uses the other versions instead, without losing any other frames.
+	 * Otherwise the used frames that have only been received once are rejected
+	 * and if there are no such frames either, then all used frames are.
+	 * Rejected frames are not discarded: receiving them again makes them usable again.
+	 *
+	 * @param usedFrames the frames the failed decoder was fed
+	 */
+	private void rejectFountainFrames(@NotNull Collection<ParsedFountainFrame> usedFrames) {
+		List<ParsedFountainFrame> suspects = new ArrayList<>();
+		//noinspection Convert2streamapi
+		for (ParsedFountainFrame frame : usedFrames) {
+			if (hasAlternativeVersion(frame)) {
+				suspects.add(frame);
+			}
+		}
+		
+		if (suspects.isEmpty()) {
+			//noinspection Convert2streamapi
+			for (ParsedFountainFrame frame : usedFrames) {
+				if (frame.getEqualCount() == 0) {
+					suspects.add(frame);
+				}
+			}
+		}
+		
+		//noinspection Convert2streamapi
+		for (ParsedFountainFrame frame : suspects.isEmpty() ? usedFrames : suspects) {
+			frame.reject();
+		}
+	}
+	
+	@Contract(pure = true)
+	private boolean hasAlternativeVersion(@NotNull ParsedFountainFrame frame) {
+		//noinspection Convert2streamapi
+		for (ParsedFountainFrame version : fountainFrames.get(frame.getSymbolId())) {
+			if (!version.equals(frame) && version.isSameCode(frame) && !version.isRejected()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	@NotNull
+	@Contract(pure = true)
+	private static byte[] compileFountainPayload(@NotNull ParsedFirstFrame firstFrame, @NotNull byte[][] blocks) {
+		byte[] result = new byte[firstFrame.getTotalPayloadLength()];
+		byte[] firstPayload = firstFrame.getPayload();
+		int offset = Math.min(firstPayload.length, result.length);
+		System.arraycopy(firstPayload, 0, result, 0, offset);
+		for (byte[] block : blocks) {
+			int length = Math.min(block.length, result.length - offset);
+			System.arraycopy(block, 0, result, offset, length);
+			offset += length;
+		}
+		return result;
+	}
+	
+	/**
+	 * Stores the specified frame in the list of the different versions of the same frame.
+	 * The list is kept sorted by {@link ParsedFrame#getEqualCount()} in descending order,
+	 * therefore the most often received versions are always tried first.
+	 * Returns whether the order of the versions changed, that is whether the frame was added or moved forward.
+	 */
+	private <E extends ParsedFrame> boolean storeFrame(@NotNull List<E> list, E frame) {
 		for (int i = 0; i < list.size(); i++) {
 			ParsedFrame current = list.get(i);
 			if (current.equals(frame)) {
 				frame.setEqualCount(current.getEqualCount() + 1);
-				list.set(i, frame); //overwrite it, mitigates hash collision
-				return;
+				//overwrite it (mitigates hash collision), then move it forward to keep the order
+				int index = i;
+				while (index > 0 && list.get(index - 1).getEqualCount() < frame.getEqualCount()) {
+					list.set(index, list.get(index - 1));
+					index--;
+				}
+				list.set(index, frame);
+				return index != i;
 			}
 		}
 		
 		frame.setEqualCount(0);
 		list.add(frame);
+		return true;
 		
 		//TODO should I try to eliminate frames which have very low equal count compared to this new frame? eg. 1/10
 		// when to do this?
@@ -163,91 +790,119 @@ public class MovieParser {
 		// problem: if misread once, I will probably misread it again -> the minority can still be correct
 	}
 	
+	/**
+	 * Searches for the combination of the received versions of the frames that results in the correct payload.
+	 * The combinations are visited best-first: the versions of each frame are ranked by how often they were received
+	 * and combinations are tried in increasing order of how many fewer times their versions were received
+	 * than the most often received versions.
+	 * At most {@link #MAX_COMBINATION_CHECKS} combinations are visited in a single call. The search of each first frame
+	 * is kept between calls, later calls continue it until the ranking of the candidates changes
+	 * (a new version was received or a version overtook another one), in which case it is started again.
+	 */
 	@Nullable
-	@Contract(pure = true)
 	private byte[] checkCombinations(@NotNull ParsedFirstFrame firstFrame, @Nullable ParsedRegularFrame regularFrame) {
-		if (regularFrame != null && regularFrame.getSequenceId() + 2 > firstFrame.getFrameCount()) {
+		if (regularFrame != null && (regularFrame.getSequenceId() + 2 > firstFrame.getFrameCount()
+				|| !regularFrame.belongsTo(firstFrame))) {
 			return null;
 		}
 		
-		int excessFrames = regularFrames.size() + 1 - firstFrame.getFrameCount();
-		if (excessFrames < 0) {
+		//the completion bitmap: the search only starts once every sequence ID was received
+		int maxId = firstFrame.getFrameCount() - 2;
+		if (receivedSequenceIds.nextClearBit(0) <= maxId) {
 			return null;
 		}
 		
-		int maxId = firstFrame.getFrameCount() - 2;
-		for (int key : regularFrames.keySet()) {
-			if (key > maxId) {
-				excessFrames--;
-				if (excessFrames < 0) {
-					return null;
-				}
-			}
+		if (combinationSearchesVersion != candidateRankingVersion) {
+			combinationSearches.clear(); //the ranking of the candidates changed, the searches are outdated
+			combinationSearchesVersion = candidateRankingVersion;
 		}
 		
-		//noinspection unchecked
-		List<? extends ParsedFrame>[] frames = new List[firstFrame.getFrameCount()];
-		frames[0] = Collections.singletonList(firstFrame);
-		for (Map.Entry<Integer, List<ParsedRegularFrame>> entry : regularFrames.entrySet()) {
-			if (entry.getKey() <= maxId) {
-				frames[entry.getKey() + 1] = entry.getValue();
+		CombinationSearch search = combinationSearches.get(firstFrame);
+		//noinspection Java8MapApi
+		if (search == null) {
+			//noinspection unchecked
+			List<? extends ParsedFrame>[] frames = new List[firstFrame.getFrameCount()];
+			frames[0] = Collections.singletonList(firstFrame);
+			for (int id = 0; id <= maxId; id++) {
+				frames[id + 1] = getCandidates(firstFrame, regularFrames.get(id));
 			}
-		}
-		if (regularFrame != null) {
-			frames[regularFrame.getSequenceId() + 1] = Collections.singletonList(regularFrame);
+			search = new CombinationSearch(frames);
+			combinationSearches.put(firstFrame, search);
 		}
 		
-		//noinspection Convert2streamapi
-		for (ParsedFrame[] array : getPermutations(frames)) {
-			if (crcMatches(firstFrame, array)) {
-				return compilePayload(firstFrame, array);
+		for (int visits = 0; visits < MAX_COMBINATION_CHECKS; visits++) {
+			ParsedFrame[] combination = search.next();
+			if (combination == null) {
+				return null;
+			}
+			
+			int crc = calculateCrc(firstFrame, combination);
+			if (crc == firstFrame.getTotalPayloadCrc()) {
+				return compilePayload(firstFrame, combination);
+			} else if ((crc ^ PayloadCodec.COMPRESSED_CRC_MASK) == firstFrame.getTotalPayloadCrc()) {
+				byte[] result = PayloadCodec.decompress(compilePayload(firstFrame, combination));
+				if (result != null) {
+					return result;
+				}
 			}
 		}
 		return null;
 	}
 	
-	//[(1,2), (3,4), 5] -> [(1,3,5), (1,4,5), (2,3,5), (2,4,5)]
 	@NotNull
 	@Contract(pure = true)
-	private ParsedFrame[][] getPermutations(@NotNull List<? extends ParsedFrame>[] input) {
-		int size = 1;
+	private static List<ParsedRegularFrame> getCandidates(@NotNull ParsedFirstFrame firstFrame,
+			@NotNull List<ParsedRegularFrame> frames) {
+		boolean allBelong = true;
 		//noinspection Convert2streamapi
-		for (List<? extends ParsedFrame> list : input) {
-			size *= list.size();
+		for (ParsedRegularFrame frame : frames) {
+			if (!frame.belongsTo(firstFrame)) {
+				allBelong = false;
+				break;
+			}
+		}
+		if (allBelong) {
+			return frames;
 		}
-		ParsedFrame[][] output = new ParsedFrame[size][];
-		int[] indexes = new int[input.length];
 		
-		for (int outer = 0; outer < output.length; outer++) {
-			ParsedFrame[] array = new ParsedFrame[input.length];
-			//noinspection Convert2streamapi
-			for (int i = 0; i < array.length; i++) {
-				array[i] = input[i].get(indexes[i]);
-			}
-			output[outer] = array;
-			
-			for (int i = input.length - 1; i >= 0; i--) {
-				if (indexes[i] + 1 < input[i].size()) {
-					indexes[i]++;
-					break;
-				}
-				indexes[i] = 0;
+		List<ParsedRegularFrame> candidates = new ArrayList<>(frames.size());
+		//noinspection Convert2streamapi
+		for (ParsedRegularFrame frame : frames) {
+			if (frame.belongsTo(firstFrame)) {
+				candidates.add(frame);
 			}
 		}
-		return output;
+		return candidates;
 	}
 	
+	/**
+	 * Calculates the CRC of the payload the specified frames form, using the CRCs the frames already store,
+	 * see {@link CrcCombiner}. Only the payload of the frame containing the end of the payload is read,
+	 * since only a part of it belongs to the payload.
+	 */
 	@Contract(pure = true)
-	private static boolean crcMatches(@NotNull ParsedFirstFrame firstFrame, @NotNull ParsedFrame[] allFrames) {
-		CRC32 crc = new CRC32();
+	private static int calculateCrc(@NotNull ParsedFirstFrame firstFrame, @NotNull ParsedFrame[] allFrames) {
+		int crc = 0; //the CRC of an empty message
 		int remaining = firstFrame.getTotalPayloadLength();
 		for (ParsedFrame frame : allFrames) {
 			byte[] payload = frame.getPayload();
 			int length = Math.min(payload.length, remaining);
-			crc.update(payload, 0, length);
+			if (length == 0) {
+				break;
+			}
+			
+			int frameCrc;
+			if (length == payload.length) {
+				frameCrc = frame.getPayloadCrc();
+			} else {
+				CRC32 partial = new CRC32();
+				partial.update(payload, 0, length);
+				frameCrc = (int) partial.getValue();
+			}
+			crc = CrcCombiner.combine(crc, frameCrc, length);
 			remaining -= length;
 		}
-		return firstFrame.getTotalPayloadCrc() == (int) crc.getValue();
+		return crc;
 	}
 	
 	@NotNull
@@ -263,4 +918,190 @@ public class MovieParser {
 		}
 		return result;
 	}
+	
+	
+	
+	/**
+	 * The buffers and decoders of a single thread adding frames.
+	 * The decoders of the different redundancies are only created when they are first needed.
+	 */
+	private static final class Workspace {
+		private final RedundancyDecoder[] decoders = new RedundancyDecoder[FrameInfo.Redundancy.values().length];
+		private final int[] contentChunks;
+		private final int[] receivedChunks;
+		private Color[] mergedFrame;
+		private int[] alternativeChunks;
+		private int[] uncertainPositions;
+		private int[] uncertainAlternatives;
+		
+		Workspace(int contentChunksLength) {
+			contentChunks = new int[contentChunksLength];
+			receivedChunks = new int[contentChunksLength];
+		}
+	}
+	
+	
+	
+	/**
+	 * The error correction decoder and buffers belonging to a single redundancy, used by a single thread.
+	 */
+	private static final class RedundancyDecoder {
+		private final FrameInfo frameInfo;
+		private final InterleavedDecoder decoder;
+		private final ProductLayout productLayout;
+		private final ProductDecoder productDecoder;
+		private final int[] productDataChunks;
+		private final byte[] payloadBytes;
+		
+		RedundancyDecoder(@NotNull FrameInfo frameInfo, int softDecisionBudget, @Nullable Executor executor) {
+			this.frameInfo = frameInfo;
+			if (frameInfo.getLayout() == FrameInfo.Layout.PRODUCT) {
+				decoder = null;
+				productLayout = new ProductLayout(frameInfo);
+				productDecoder = productLayout.createDecoder();
+				productDataChunks = new int[frameInfo.getDataChunks()];
+			} else {
+				decoder = new InterleavedDecoder(frameInfo.getDataChunks(), frameInfo.getCorrectionChunks(),
+						frameInfo.getCodewordCount(), softDecisionBudget, executor);
+				productLayout = null;
+				productDecoder = null;
+				productDataChunks = null;
+			}
+			payloadBytes = new byte[ChunkConverter.getByteCount(frameInfo.getDataChunks())];
+		}
+		
+		@NotNull
+		@Contract(pure = true)
+		FrameInfo getFrameInfo() {
+			return frameInfo;
+		}
+		
+		/**
+		 * Corrects the errors in the specified content chunks in place.
+		 * Soft-decision decoding is used if the uncertain chunks are specified.
+		 *
+		 * @return true if decoding was successful
+		 */
+		boolean decode(@NotNull int[] contentChunks, @Nullable boolean[] unreliableChunks,
+				@Nullable int[] uncertainPositions, @Nullable int[] uncertainAlternatives, int uncertainCount) {
+			if (productDecoder != null) {
+				return productDecoder.decode(contentChunks, unreliableChunks);
+			}
+			
+			if (uncertainPositions != null && uncertainAlternatives != null) {
+				return decoder.decode(contentChunks, uncertainPositions, uncertainAlternatives, uncertainCount);
+			}
+			return unreliableChunks == null
+					? decoder.decode(contentChunks) : decoder.decode(contentChunks, unreliableChunks);
+		}
+		
+		/**
+		 * Converts the decoded content chunks to the data bytes of the frame.
+		 * The returned array is reused by subsequent calls.
+		 */
+		@NotNull
+		byte[] readDataBytes(@NotNull int[] contentChunks) {
+			if (productLayout != null) {
+				productLayout.readDataChunks(contentChunks, productDataChunks);
+				contentChunks = productDataChunks;
+			}
+			ChunkConverter.chunksToBytes(contentChunks, payloadBytes);
+			//noinspection AssignmentOrReturnOfFieldWithMutableType
+			return payloadBytes;
+		}
+	}
+	
+	
+	
+	/**
+	 * The state of the best-first search of {@link #checkCombinations(ParsedFirstFrame, ParsedRegularFrame)}
+	 * belonging to a single first frame: the candidates of each slot and the frontier of the search.
+	 * Only the slots with multiple candidates are searched, the rest always contain the same frame.
+	 */
+	private static final class CombinationSearch {
+		private final PriorityQueue<RankedCombination> frontier = new PriorityQueue<>();
+		private final List<? extends ParsedFrame>[] frames;
+		private final int[] ambiguousSlots;
+		private final ParsedFrame[] combination;
+		
+		CombinationSearch(@NotNull List<? extends ParsedFrame>[] frames) {
+			this.frames = frames;
+			combination = new ParsedFrame[frames.length];
+			int ambiguousCount = 0;
+			int[] slots = new int[frames.length];
+			boolean complete = true;
+			for (int i = 0; i < frames.length; i++) {
+				if (frames[i].isEmpty()) {
+					complete = false; //only frames of other movies were received, there are no combinations
+				} else if (frames[i].size() == 1) {
+					combination[i] = frames[i].get(0);
+				} else {
+					slots[ambiguousCount++] = i;
+				}
+			}
+			ambiguousSlots = Arrays.copyOf(slots, ambiguousCount);
+			if (complete) {
+				frontier.add(new RankedCombination(new int[ambiguousCount], 0, 0, 0));
+			}
+		}
+		
+		/**
+		 * Gets the next best combination, expanding the frontier with its successors.
+		 * Returns null if all combinations have been visited.
+		 * The returned array is reused by subsequent calls.
+		 */
+		@Nullable
+		ParsedFrame[] next() {
+			RankedCombination current = frontier.poll();
+			if (current == null) {
+				return null;
+			}
+			
+			for (int j = 0; j < ambiguousSlots.length; j++) {
+				combination[ambiguousSlots[j]] = frames[ambiguousSlots[j]].get(current.ranks[j]);
+			}
+			
+			//each combination is only reached from a single parent: the one with its last increased rank decreased
+			for (int j = current.lastIncremented; j < ambiguousSlots.length; j++) {
+				List<? extends ParsedFrame> candidates = frames[ambiguousSlots[j]];
+				int rank = current.ranks[j];
+				if (rank + 1 < candidates.size()) {
+					int[] ranks = current.ranks.clone();
+					ranks[j]++;
+					frontier.add(new RankedCombination(ranks, j, current.deficit + candidates.get(rank).getEqualCount()
+							- candidates.get(rank + 1).getEqualCount(), current.rankSum + 1));
+				}
+			}
+			//noinspection AssignmentOrReturnOfFieldWithMutableType
+			return combination;
+		}
+	}
+	
+	
+	
+	/**
+	 * A combination of the candidates visited by {@link #checkCombinations(ParsedFirstFrame, ParsedRegularFrame)}:
+	 * the ranks of the chosen versions in the slots with multiple candidates.
+	 * Combinations are ordered by how many fewer times their versions were received than the top versions,
+	 * then by the sum of their ranks.
+	 */
+	private static final class RankedCombination implements Comparable<RankedCombination> {
+		private final int[] ranks;
+		private final int lastIncremented;
+		private final int deficit;
+		private final int rankSum;
+		
+		RankedCombination(@NotNull int[] ranks, int lastIncremented, int deficit, int rankSum) {
+			this.ranks = ranks;
+			this.lastIncremented = lastIncremented;
+			this.deficit = deficit;
+			this.rankSum = rankSum;
+		}
+		
+		@Override
+		public int compareTo(@NotNull RankedCombination other) {
+			return deficit != other.deficit ? Integer.compare(deficit, other.deficit)
+					: Integer.compare(rankSum, other.rankSum);
+		}
+	}
 }
@@ -14,8 +14,9 @@ final class ParsedFirstFrame extends ParsedFrame {
 	private final int frameCount;
 	
 	@Contract(pure = true)
-	private ParsedFirstFrame(@NotNull byte[] dataBytes, int totalPayloadLength, int totalPayloadCrc, int frameCount) {
-		super(dataBytes, 7);
+	private ParsedFirstFrame(@NotNull byte[] dataBytes, int headerLength, @NotNull FrameInfo frameInfo,
+			int totalPayloadLength, int totalPayloadCrc, int frameCount) {
+		super(dataBytes, headerLength, frameInfo);
 		this.totalPayloadLength = totalPayloadLength;
 		this.totalPayloadCrc = totalPayloadCrc;
 		this.frameCount = frameCount;
@@ -26,12 +27,17 @@ final class ParsedFirstFrame extends ParsedFrame {
 	 * Null is returned in case it is clear that the data is corrupted, invalid.
 	 *
 	 * @param dataBytes all the data stored in this frame, in raw form
-	 * @param frameInfo the properties of this frame
+	 * @param frameInfo the properties of this frame, including the redundancy it was decoded with
 	 * @return the newly created instance or null
 	 */
 	@Nullable
 	@Contract(pure = true)
 	public static ParsedFirstFrame create(@NotNull byte[] dataBytes, @NotNull FrameInfo frameInfo) {
+		int headerLength = frameInfo.getFirstHeaderLength();
+		if (!isIntact(dataBytes, frameInfo, headerLength)) {
+			return null;
+		}
+		
 		int totalPayloadLength = readBytes(dataBytes, 0, 3) & 0x7fffff;
 		int frameCount = frameInfo.getFrameCount(totalPayloadLength);
 		if (frameCount == -1) {
@@ -39,7 +45,8 @@ final class ParsedFirstFrame extends ParsedFrame {
 		}
 		
 		int totalPayloadCrc = readBytes(dataBytes, 3, 4);
-		return new ParsedFirstFrame(dataBytes, totalPayloadLength, totalPayloadCrc, frameCount);
+		return new ParsedFirstFrame(dataBytes, headerLength, frameInfo,
+				totalPayloadLength, totalPayloadCrc, frameCount);
 	}
 	
 	/**
@@ -0,0 +1,101 @@
+package hu.trigary.cmcm.library.parser;
+
+import hu.trigary.cmcm.library.utilities.FrameInfo;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A "fountain-frame" type frame, containing the XOR of some of the fountain blocks.
+ *
+ * @see hu.trigary.cmcm.library.utilities.FountainCode
+ */
+final class ParsedFountainFrame extends ParsedFrame {
+	private final int symbolId;
+	private boolean rejected;
+	
+	@Contract(pure = true)
+	private ParsedFountainFrame(@NotNull byte[] dataBytes, int headerLength,
+			@NotNull FrameInfo frameInfo, int symbolId) {
+		super(dataBytes, headerLength, frameInfo);
+		this.symbolId = symbolId;
+	}
+	
+	/**
+	 * Checks whether the specified data belongs to a fountain frame.
+	 *
+	 * @param dataBytes all the data stored in a non-first frame, in raw form
+	 * @return true if the fountain flag is set in the header
+	 */
+	@Contract(pure = true)
+	public static boolean isFountainFrame(@NotNull byte[] dataBytes) {
+		return (dataBytes[1] & 0x8) != 0;
+	}
+	
+	/**
+	 * Attempts to create a new instance.
+	 * Null is returned in case it is clear that the data is corrupted, invalid
+	 * or was encoded with a different redundancy or layout.
+	 *
+	 * @param dataBytes all the data stored in this frame, in raw form
+	 * @param frameInfo the properties of this frame
+	 * @return the newly created instance or null
+	 */
+	@Nullable
+	@Contract(pure = true)
+	public static ParsedFountainFrame create(@NotNull byte[] dataBytes, @NotNull FrameInfo frameInfo) {
+		int raw = readBytes(dataBytes, 0, 2);
+		if ((raw & 0x3) != frameInfo.getRedundancy().getId()
+				|| ((raw >> 2) & 0x1) != frameInfo.getLayout().getId()) {
+			return null;
+		}
+		
+		int headerLength = frameInfo.getFountainHeaderLength();
+		if (!isIntact(dataBytes, frameInfo, headerLength)) {
+			return null;
+		}
+		return new ParsedFountainFrame(dataBytes, headerLength, frameInfo,
+				(raw >> 5) << 16 | readBytes(dataBytes, 2, 2));
+	}
+	
+	/**
+	 * Gets the symbol ID of this frame, which determines the fountain blocks it contains.
+	 *
+	 * @return this frame's symbol ID
+	 */
+	@Contract(pure = true)
+	public int getSymbolId() {
+		return symbolId;
+	}
+	
+	/**
+	 * Marks this version of the frame as likely corrupted, fountain decoders do not use rejected versions.
+	 * Receiving the same version again creates a new instance, which is not rejected.
+	 */
+	public void reject() {
+		rejected = true;
+	}
+	
+	/**
+	 * Gets whether this version of the frame was found to be likely corrupted.
+	 *
+	 * @return true if this version must not be used
+	 */
+	@Contract(pure = true)
+	public boolean isRejected() {
+		return rejected;
+	}
+	
+	@Override
+	@Contract(pure = true)
+	public boolean equals(Object object) {
+		return object instanceof ParsedFountainFrame && super.equals(object)
+				&& ((ParsedFountainFrame) object).symbolId == symbolId;
+	}
+	
+	@Override
+	@Contract(pure = true)
+	public int hashCode() {
+		return super.hashCode() ^ symbolId;
+	}
+}
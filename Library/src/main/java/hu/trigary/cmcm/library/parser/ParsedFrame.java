@@ -1,5 +1,7 @@
 package hu.trigary.cmcm.library.parser;
 
+import hu.trigary.cmcm.library.utilities.FrameDigest;
+import hu.trigary.cmcm.library.utilities.FrameInfo;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
@@ -11,10 +13,14 @@ import java.util.zip.CRC32;
 class ParsedFrame {
 	private final byte[] payload;
 	private final int payloadCrc;
+	private final FrameInfo.Redundancy redundancy;
+	private final int dataChunks;
 	private int equalCount = -1;
 	
 	@Contract(pure = true)
-	protected ParsedFrame(@NotNull byte[] dataBytes, int payloadStartIndex) {
+	protected ParsedFrame(@NotNull byte[] dataBytes, int payloadStartIndex, @NotNull FrameInfo frameInfo) {
+		redundancy = frameInfo.getRedundancy();
+		dataChunks = frameInfo.getDataChunks();
 		payload = new byte[dataBytes.length - payloadStartIndex];
 		System.arraycopy(dataBytes, payloadStartIndex, payload, 0, payload.length);
 		CRC32 crc = new CRC32();
@@ -32,6 +38,21 @@ class ParsedFrame {
 		return value;
 	}
 	
+	/**
+	 * Checks whether the digest of the specified data bytes matches their content.
+	 * Always returns true if the properties do not specify {@link FrameInfo.Integrity#FRAME_DIGEST}.
+	 *
+	 * @param dataBytes all the data stored in the frame, in raw form
+	 * @param frameInfo the properties of the frame
+	 * @param headerLength the length of the header of the frame, including the digest
+	 * @return true if the frame is not known to be corrupted
+	 */
+	@Contract(pure = true)
+	protected static boolean isIntact(@NotNull byte[] dataBytes, @NotNull FrameInfo frameInfo, int headerLength) {
+		return frameInfo.getIntegrity() != FrameInfo.Integrity.FRAME_DIGEST
+				|| FrameDigest.verify(dataBytes, headerLength);
+	}
+	
 	/**
 	 * Gets the actual payload this frame contains.
 	 * The returned value is not cloned, therefore must not be mutated.
@@ -45,6 +66,42 @@ class ParsedFrame {
 		return payload;
 	}
 	
+	/**
+	 * Gets the CRC32 value of the whole payload this frame contains.
+	 *
+	 * @return this frame's payload's CRC
+	 */
+	@Contract(pure = true)
+	public int getPayloadCrc() {
+		return payloadCrc;
+	}
+	
+	/**
+	 * Gets the redundancy this frame was decoded with.
+	 * Different redundancies may result in the same error correction code,
+	 * in which case first frames may be decoded with a different one than they were encoded with,
+	 * see {@link #isSameCode(ParsedFrame)}.
+	 *
+	 * @return this frame's redundancy
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public FrameInfo.Redundancy getRedundancy() {
+		return redundancy;
+	}
+	
+	/**
+	 * Gets whether this frame and the specified frame were decoded using the same error correction code,
+	 * aka whether their payloads are laid out the same way.
+	 *
+	 * @param other the other frame
+	 * @return whether the frames were decoded using the same code
+	 */
+	@Contract(pure = true)
+	public boolean isSameCode(@NotNull ParsedFrame other) {
+		return other.dataChunks == dataChunks;
+	}
+	
 	/**
 	 * Sets the amount of frames that are seemingly identical to this one.
 	 * Must be called exactly once for each instance.
@@ -73,7 +130,8 @@ class ParsedFrame {
 		}
 		
 		ParsedFrame other = (ParsedFrame) object;
-		return other.payload.length == payload.length && other.payloadCrc == payloadCrc;
+		return other.payload.length == payload.length && other.payloadCrc == payloadCrc
+				&& other.dataChunks == dataChunks;
 	}
 	
 	@Override
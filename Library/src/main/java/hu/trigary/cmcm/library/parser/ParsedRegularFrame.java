@@ -1,33 +1,65 @@
 package hu.trigary.cmcm.library.parser;
 
+import hu.trigary.cmcm.library.utilities.FrameInfo;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * A "regular-frame" type frame.
+ * If the frame contains the compact movie header (see {@link FrameInfo.MovieHeader#EVERY_FRAME}),
+ * then it is also known which movie it belongs to.
  */
 final class ParsedRegularFrame extends ParsedFrame {
+	private static final int MAX_FRAME_COUNT = 1025;
 	private final int sequenceId;
+	private final int frameCount;
+	private final int movieId;
 	
 	@Contract(pure = true)
-	private ParsedRegularFrame(@NotNull byte[] dataBytes, int sequenceId) {
-		super(dataBytes, 2);
+	private ParsedRegularFrame(@NotNull byte[] dataBytes, int headerLength, @NotNull FrameInfo frameInfo,
+			int sequenceId, int frameCount, int movieId) {
+		super(dataBytes, headerLength, frameInfo);
 		this.sequenceId = sequenceId;
+		this.frameCount = frameCount;
+		this.movieId = movieId;
 	}
 	
 	/**
-	 * Creates a new instance.
+	 * Attempts to create a new instance.
+	 * Null is returned in case it is clear that the data is corrupted, invalid
+	 * or was encoded with a different redundancy, layout or movie header mode.
 	 *
 	 * @param dataBytes all the data stored in this frame, in raw form
-	 * @return the newly created instance
+	 * @param frameInfo the properties of this frame
+	 * @return the newly created instance or null
 	 */
-	@NotNull
+	@Nullable
 	@Contract(pure = true)
-	public static ParsedRegularFrame create(@NotNull byte[] dataBytes) {
+	public static ParsedRegularFrame create(@NotNull byte[] dataBytes, @NotNull FrameInfo frameInfo) {
 		int raw = readBytes(dataBytes, 0, 2);
 		int sequenceId = raw >> 5;
-		//int reserved = raw & 0x1f;
-		return new ParsedRegularFrame(dataBytes, sequenceId);
+		if ((raw & 0x8) != 0) {
+			return null; //fountain frame
+		} else if ((raw & 0x3) != frameInfo.getRedundancy().getId()
+				|| ((raw >> 2) & 0x1) != frameInfo.getLayout().getId()
+				|| ((raw >> 4) & 0x1) != frameInfo.getMovieHeader().getId()) {
+			return null;
+		}
+		
+		int headerLength = frameInfo.getRegularHeaderLength();
+		if (!isIntact(dataBytes, frameInfo, headerLength)) {
+			return null;
+		} else if (frameInfo.getMovieHeader() == FrameInfo.MovieHeader.FIRST_FRAME) {
+			return new ParsedRegularFrame(dataBytes, headerLength, frameInfo, sequenceId, -1, -1);
+		}
+		
+		int frameCount = readBytes(dataBytes, 2, 2);
+		if (sequenceId + 2 > frameCount || frameCount > MAX_FRAME_COUNT) {
+			return null;
+		}
+		return new ParsedRegularFrame(dataBytes, headerLength, frameInfo,
+				sequenceId, frameCount, readBytes(dataBytes, 4, 2));
 	}
 	
 	/**
@@ -40,16 +72,59 @@ final class ParsedRegularFrame extends ParsedFrame {
 		return sequenceId;
 	}
 	
+	/**
+	 * Gets the count of frames in the movie this frame belongs to.
+	 * Returns -1 if this frame does not contain the movie header.
+	 *
+	 * @return the amount of frames in the movie or -1
+	 */
+	@Contract(pure = true)
+	public int getFrameCount() {
+		return frameCount;
+	}
+	
+	/**
+	 * Gets whether this frame may belong to the movie of the specified first frame.
+	 * Only frames decoded using the same error correction code may belong to the same movie,
+	 * apart from that it always returns true if this frame does not contain the movie header.
+	 *
+	 * @param firstFrame the first frame of the movie
+	 * @return whether this frame may belong to the movie
+	 */
+	@Contract(pure = true)
+	public boolean belongsTo(@NotNull ParsedFirstFrame firstFrame) {
+		return isSameCode(firstFrame) && (frameCount == -1
+				|| frameCount == firstFrame.getFrameCount() && movieId == (firstFrame.getTotalPayloadCrc() & 0xffff));
+	}
+	
+	/**
+	 * Gets whether this frame and the specified frame may belong to the same movie.
+	 * Only frames decoded using the same error correction code may belong to the same movie,
+	 * apart from that it always returns true if either frame does not contain the movie header.
+	 *
+	 * @param other the other regular frame
+	 * @return whether the frames may belong to the same movie
+	 */
+	@Contract(pure = true)
+	public boolean isSameMovie(@NotNull ParsedRegularFrame other) {
+		return isSameCode(other) && (frameCount == -1 || other.frameCount == -1
+				|| frameCount == other.frameCount && movieId == other.movieId);
+	}
+	
 	@Override
 	@Contract(pure = true)
 	public boolean equals(Object object) {
-		return object instanceof ParsedRegularFrame && super.equals(object)
-				&& ((ParsedRegularFrame) object).sequenceId == sequenceId;
+		if (!(object instanceof ParsedRegularFrame) || !super.equals(object)) {
+			return false;
+		}
+		
+		ParsedRegularFrame other = (ParsedRegularFrame) object;
+		return other.sequenceId == sequenceId && other.frameCount == frameCount && other.movieId == movieId;
 	}
 	
 	@Override
 	@Contract(pure = true)
 	public int hashCode() {
-		return super.hashCode() ^ sequenceId;
+		return super.hashCode() ^ sequenceId ^ frameCount << 16 ^ movieId;
 	}
 }
@@ -0,0 +1,93 @@
+package hu.trigary.cmcm.library.utilities;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.zip.CRC32;
+
+/**
+ * Utility class that calculates {@link CRC32} values of messages from the CRC values of their parts,
+ * without reading the whole messages.
+ * CRC is linear over GF(2): appending zero bytes to a message is a multiplication by a power of x
+ * modulo the CRC polynomial, which is calculated in logarithmic time using the precomputed x^(2^n) powers.
+ * This is the same algebra as the one behind zlib's {@code crc32_combine}.
+ */
+public final class CrcCombiner {
+	private static final int POLYNOMIAL = 0xedb88320; //reflected
+	private static final int X_POWERS = 32;
+	private static final int[] X_POWER_TABLE = new int[X_POWERS];
+	
+	static {
+		int power = 1 << 30; //x^1
+		X_POWER_TABLE[0] = power;
+		for (int n = 1; n < X_POWERS; n++) {
+			power = multiplyModP(power, power);
+			X_POWER_TABLE[n] = power;
+		}
+	}
+	
+	private CrcCombiner() { }
+	
+	/**
+	 * Calculates the CRC of the concatenation of two messages.
+	 *
+	 * @param firstCrc the CRC of the first message
+	 * @param secondCrc the CRC of the second message
+	 * @param secondLength the length of the second message in bytes
+	 * @return the CRC of the first message followed by the second message
+	 */
+	@Contract(pure = true)
+	public static int combine(int firstCrc, int secondCrc, long secondLength) {
+		return shift(firstCrc, secondLength) ^ secondCrc;
+	}
+	
+	/**
+	 * Calculates the CRC of a message after some of its bytes were changed.
+	 * The changed bytes are specified as their difference: the old values XOR the new values.
+	 * Only the difference is read, the rest of the message is only known by its length.
+	 *
+	 * @param crc the CRC of the message before the change
+	 * @param difference the array containing the difference of the changed bytes
+	 * @param offset the index of the first byte of the difference in the array
+	 * @param length the count of changed bytes
+	 * @param trailingLength the count of bytes following the changed bytes in the message
+	 * @return the CRC of the message after the change
+	 */
+	@Contract(pure = true)
+	public static int applyDifference(int crc, @NotNull byte[] difference, int offset, int length,
+			long trailingLength) {
+		CRC32 differenceCrc = new CRC32();
+		differenceCrc.update(difference, offset, length);
+		//the initial and final XOR values of CRC32 cancel out, since both messages have the same length
+		int raw = (int) differenceCrc.getValue() ^ ~0 ^ shift(~0, length);
+		return crc ^ shift(raw, trailingLength);
+	}
+	
+	/**
+	 * Multiplies the specified raw CRC register value by x^(8 * byteCount),
+	 * which is the effect of appending the specified count of zero bytes.
+	 */
+	@Contract(pure = true)
+	private static int shift(int value, long byteCount) {
+		int power = 1 << 31; //x^0
+		int n = 3; //a byte is 2^3 bits
+		for (long count = byteCount; count != 0; count >>>= 1, n++) {
+			if ((count & 1) != 0) {
+				power = multiplyModP(X_POWER_TABLE[n % X_POWERS], power);
+			}
+		}
+		return multiplyModP(power, value);
+	}
+	
+	@Contract(pure = true)
+	private static int multiplyModP(int a, int b) {
+		int product = 0;
+		for (int mask = 1 << 31; mask != 0; mask >>>= 1) {
+			if ((a & mask) != 0) {
+				product ^= b;
+			}
+			b = (b & 1) != 0 ? (b >>> 1) ^ POLYNOMIAL : b >>> 1;
+		}
+		return product;
+	}
+}
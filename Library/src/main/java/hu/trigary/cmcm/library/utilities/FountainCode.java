@@ -0,0 +1,79 @@
+package hu.trigary.cmcm.library.utilities;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Defines the systematic, LT-like (Luby transform) fountain code used by fountain movies.
+ * The payload (except for the part stored in the first frame) is split into blocks of equal length,
+ * each fountain frame contains the XOR of some of these blocks: its neighbors.
+ * The neighbors are derived from the symbol ID of the frame:
+ * the first symbols each contain a single block in order, the rest contain a random selection.
+ * Instead of the soliton distribution, each block is selected independently with a probability
+ * giving an expected degree of {@code ln(blockCount) + 8} (at most half of the blocks):
+ * block counts are small enough for Gaussian elimination,
+ * which then only needs a couple more symbols than blocks, unlike peeling alone.
+ */
+public final class FountainCode {
+	/**
+	 * The maximum count of blocks a payload may be split into.
+	 */
+	public static final int MAX_BLOCK_COUNT = 1024;
+	
+	/**
+	 * The maximum (exclusive) value a symbol ID may have.
+	 */
+	public static final int SYMBOL_ID_BOUND = 1 << 26;
+	
+	private static final double EXTRA_EXPECTED_DEGREE = 8;
+	
+	private FountainCode() { }
+	
+	/**
+	 * Gets the indexes of the blocks whose XOR the specified symbol contains.
+	 * The result is deterministic: the generator and the parser get the same neighbors.
+	 *
+	 * @param blockCount the count of blocks the payload is split into
+	 * @param symbolId the ID of the symbol
+	 * @return the distinct indexes of the neighboring blocks
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static int[] getNeighbors(int blockCount, int symbolId) {
+		if (blockCount <= 0 || blockCount > MAX_BLOCK_COUNT) {
+			throw new IllegalArgumentException("block count must be positive and mustn't exceed the maximum");
+		} else if (symbolId < 0 || symbolId >= SYMBOL_ID_BOUND) {
+			throw new IllegalArgumentException("symbol ID mustn't be negative and must be less than the bound");
+		}
+		
+		if (symbolId < blockCount) {
+			return new int[]{symbolId};
+		}
+		
+		//java.util.Random's algorithm is specified, therefore it is the same on all platforms,
+		//but its first outputs are correlated for similar seeds, therefore the seed is scrambled first
+		Random random = new Random(scramble(((long) blockCount << 32) | symbolId));
+		double probability = Math.min(0.5, (Math.log(blockCount) + EXTRA_EXPECTED_DEGREE) / blockCount);
+		int[] neighbors = new int[blockCount];
+		int degree = 0;
+		while (degree == 0) {
+			for (int i = 0; i < blockCount; i++) {
+				if (random.nextDouble() < probability) {
+					neighbors[degree++] = i;
+				}
+			}
+		}
+		return Arrays.copyOf(neighbors, degree);
+	}
+	
+	@Contract(pure = true)
+	private static long scramble(long value) {
+		//the finalizer of SplitMix64
+		value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+		value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+		return value ^ (value >>> 31);
+	}
+}
@@ -0,0 +1,55 @@
+package hu.trigary.cmcm.library.utilities;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.zip.CRC32;
+
+/**
+ * Utility class that handles the digests frames contain when using {@link FrameInfo.Integrity#FRAME_DIGEST}.
+ * The digest is the lower 16 bits of the CRC32 value of all data bytes of the frame, except for the digest itself,
+ * which is stored in the last two bytes of the header.
+ * A frame whose error correction succeeded, but produced the wrong data (miscorrection)
+ * only passes the check with a probability of 1 in 65536.
+ */
+public final class FrameDigest {
+	/**
+	 * The length of the digest in bytes.
+	 */
+	public static final int LENGTH = 2;
+	
+	private FrameDigest() { }
+	
+	/**
+	 * Writes the digest of the specified data bytes into the end of its header.
+	 *
+	 * @param dataBytes the data bytes of the frame, including its complete header
+	 * @param headerLength the length of the header of the frame, including the digest
+	 */
+	public static void write(@NotNull byte[] dataBytes, int headerLength) {
+		int digest = calculate(dataBytes, headerLength);
+		dataBytes[headerLength - 2] = (byte) (digest >>> 8);
+		dataBytes[headerLength - 1] = (byte) digest;
+	}
+	
+	/**
+	 * Checks whether the digest stored in the header of the specified data bytes matches its content.
+	 *
+	 * @param dataBytes the data bytes of the frame, including its complete header
+	 * @param headerLength the length of the header of the frame, including the digest
+	 * @return true if the frame is intact
+	 */
+	@Contract(pure = true)
+	public static boolean verify(@NotNull byte[] dataBytes, int headerLength) {
+		int stored = (dataBytes[headerLength - 2] & 0xff) << 8 | (dataBytes[headerLength - 1] & 0xff);
+		return stored == calculate(dataBytes, headerLength);
+	}
+	
+	@Contract(pure = true)
+	private static int calculate(@NotNull byte[] dataBytes, int headerLength) {
+		CRC32 crc = new CRC32();
+		crc.update(dataBytes, 0, headerLength - LENGTH);
+		crc.update(dataBytes, headerLength, dataBytes.length - headerLength);
+		return (int) crc.getValue() & 0xffff;
+	}
+}
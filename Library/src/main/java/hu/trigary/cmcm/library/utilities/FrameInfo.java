@@ -8,16 +8,82 @@ import org.jetbrains.annotations.Nullable;
  * Container of all properties a resolution has.
  */
 public class FrameInfo {
-	private static final double CORRECTION_RATIO_CONSTANT = 3.333;
+	private static final int MAX_CODEWORD_CHUNKS = 4095;
+	private static final int MAX_PAYLOAD_LENGTH = 0x7fffff;
+	private static final int MIN_PRODUCT_RESOLUTION = 12;
 	private final int contentResolution;
+	private final Redundancy redundancy;
+	private final Layout layout;
+	private final MovieHeader movieHeader;
+	private final Integrity integrity;
 	
 	/**
-	 * Creates a new instance.
+	 * Creates a new instance with {@link Redundancy#STANDARD} redundancy.
 	 *
 	 * @param resolution the resolution to use
 	 */
 	public FrameInfo(@NotNull ContentResolution resolution) {
+		this(resolution, Redundancy.STANDARD);
+	}
+	
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param resolution the resolution to use
+	 * @param redundancy the amount of error correction to use
+	 */
+	public FrameInfo(@NotNull ContentResolution resolution, @NotNull Redundancy redundancy) {
+		this(resolution, redundancy, Layout.INTERLEAVED);
+	}
+	
+	/**
+	 * Creates a new instance.
+	 * The {@link Layout#PRODUCT} layout requires a content resolution of at least 12.
+	 *
+	 * @param resolution the resolution to use
+	 * @param redundancy the amount of error correction to use
+	 * @param layout the way the content chunks are protected by error correction codes
+	 */
+	public FrameInfo(@NotNull ContentResolution resolution, @NotNull Redundancy redundancy, @NotNull Layout layout) {
+		this(resolution, redundancy, layout, MovieHeader.FIRST_FRAME);
+	}
+	
+	/**
+	 * Creates a new instance.
+	 * The {@link Layout#PRODUCT} layout requires a content resolution of at least 12.
+	 *
+	 * @param resolution the resolution to use
+	 * @param redundancy the amount of error correction to use
+	 * @param layout the way the content chunks are protected by error correction codes
+	 * @param movieHeader the frames the properties of the movie are stored in
+	 */
+	public FrameInfo(@NotNull ContentResolution resolution, @NotNull Redundancy redundancy, @NotNull Layout layout,
+			@NotNull MovieHeader movieHeader) {
+		this(resolution, redundancy, layout, movieHeader, Integrity.PAYLOAD_CRC);
+	}
+	
+	/**
+	 * Creates a new instance.
+	 * The {@link Layout#PRODUCT} layout requires a content resolution of at least 12.
+	 *
+	 * @param resolution the resolution to use
+	 * @param redundancy the amount of error correction to use
+	 * @param layout the way the content chunks are protected by error correction codes
+	 * @param movieHeader the frames the properties of the movie are stored in
+	 * @param integrity the way the integrity of the received data is verified
+	 */
+	public FrameInfo(@NotNull ContentResolution resolution, @NotNull Redundancy redundancy, @NotNull Layout layout,
+			@NotNull MovieHeader movieHeader, @NotNull Integrity integrity) {
+		if (layout == Layout.PRODUCT && resolution.getValue() < MIN_PRODUCT_RESOLUTION) {
+			throw new IllegalArgumentException("product layout requires a content resolution of at least "
+					+ MIN_PRODUCT_RESOLUTION);
+		}
+		
 		contentResolution = resolution.getValue();
+		this.redundancy = redundancy;
+		this.layout = layout;
+		this.movieHeader = movieHeader;
+		this.integrity = integrity;
 	}
 	
 	/**
@@ -30,6 +96,86 @@ public class FrameInfo {
 		return contentResolution;
 	}
 	
+	/**
+	 * Gets the amount of error correction used.
+	 *
+	 * @return the redundancy
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public Redundancy getRedundancy() {
+		return redundancy;
+	}
+	
+	/**
+	 * Gets the way the content chunks are protected by error correction codes.
+	 *
+	 * @return the layout
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public Layout getLayout() {
+		return layout;
+	}
+	
+	/**
+	 * Gets the frames the properties of the movie are stored in.
+	 *
+	 * @return the movie header mode
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public MovieHeader getMovieHeader() {
+		return movieHeader;
+	}
+	
+	/**
+	 * Gets the way the integrity of the received data is verified.
+	 *
+	 * @return the integrity mode
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public Integrity getIntegrity() {
+		return integrity;
+	}
+	
+	/**
+	 * Gets the length of the header of first frames in bytes, which depends on the integrity mode.
+	 *
+	 * @return the length of the first header
+	 */
+	@Contract(pure = true)
+	public int getFirstHeaderLength() {
+		return 7 + getDigestLength();
+	}
+	
+	/**
+	 * Gets the length of the header of regular frames in bytes,
+	 * which depends on the movie header mode and on the integrity mode.
+	 *
+	 * @return the length of the regular header
+	 */
+	@Contract(pure = true)
+	public int getRegularHeaderLength() {
+		return (movieHeader == MovieHeader.EVERY_FRAME ? 6 : 2) + getDigestLength();
+	}
+	
+	/**
+	 * Gets the length of the header of fountain frames in bytes, which depends on the integrity mode.
+	 *
+	 * @return the length of the fountain header
+	 */
+	@Contract(pure = true)
+	public int getFountainHeaderLength() {
+		return 4 + getDigestLength();
+	}
+	
+	@Contract(pure = true)
+	private int getDigestLength() {
+		return integrity == Integrity.FRAME_DIGEST ? FrameDigest.LENGTH : 0;
+	}
+	
 	/**
 	 * Gets the count of content chunks in a frame.
 	 * A content chunk is either a correction or a data chunk.
@@ -48,8 +194,12 @@ public class FrameInfo {
 	 */
 	@Contract(pure = true)
 	public int getCorrectionChunks() {
+		if (layout == Layout.PRODUCT) {
+			return getContentChunks() - getDataChunks();
+		}
+		
 		int content = getContentChunks();
-		int correction = (int) (content / CORRECTION_RATIO_CONSTANT);
+		int correction = (int) (content / redundancy.getRatioConstant());
 		return (content - correction) % 2 == 0 ? correction : correction + 1;
 	}
 	
@@ -60,27 +210,130 @@ public class FrameInfo {
 	 */
 	@Contract(pure = true)
 	public int getDataChunks() {
+		if (layout == Layout.PRODUCT) {
+			return getProductDataColumns() * getProductDataRows() - 2;
+		}
+		
 		int content = getContentChunks();
-		int data = content - (int) (content / CORRECTION_RATIO_CONSTANT);
+		int data = content - (int) (content / redundancy.getRatioConstant());
 		return data % 2 == 0 ? data : data - 1;
 	}
 	
+	/**
+	 * Gets the length of the blocks the payload is split into in fountain movies,
+	 * which is the payload capacity of a fountain frame.
+	 *
+	 * @return the length of a fountain block
+	 * @see FountainCode
+	 */
+	@Contract(pure = true)
+	public int getFountainBlockLength() {
+		return ChunkConverter.getByteCount(getDataChunks()) - getFountainHeaderLength();
+	}
+	
+	/**
+	 * Calculates the count of fountain blocks the part of the payload not stored in the first frame is split into.
+	 * Returns 0 if the movie consists of a single frame, see {@link #getFrameCount(int)},
+	 * and -1 if the payload length is invalid or is too large.
+	 *
+	 * @param payloadLength the length of the payload
+	 * @return the count of fountain blocks or -1
+	 * @see FountainCode
+	 */
+	@Contract(pure = true)
+	public int getFountainBlockCount(int payloadLength) {
+		if (payloadLength <= 0 || payloadLength > MAX_PAYLOAD_LENGTH) {
+			return -1;
+		}
+		
+		//the first frame must signal the same frame count as in regular movies
+		if (getFrameCount(payloadLength) == 1) {
+			return 0;
+		}
+		
+		int firstSegmentLength = ChunkConverter.getByteCount(getDataChunks()) - getFirstHeaderLength();
+		int remaining = Math.max(1, payloadLength - firstSegmentLength);
+		int blockLength = getFountainBlockLength();
+		int count = (remaining + blockLength - 1) / blockLength;
+		return count > FountainCode.MAX_BLOCK_COUNT ? -1 : count;
+	}
+	
+	/**
+	 * Gets the count of correction chunks in each row codeword when using the {@link Layout#PRODUCT} layout.
+	 * The rows of the product code are the rows of chunks in the frame.
+	 *
+	 * @return the count of correction chunks in a row
+	 */
+	@Contract(pure = true)
+	public int getProductRowCorrections() {
+		return getProductSize() - getProductDataColumns();
+	}
+	
+	/**
+	 * Gets the count of correction chunks in each column codeword when using the {@link Layout#PRODUCT} layout.
+	 *
+	 * @return the count of correction chunks in a column
+	 */
+	@Contract(pure = true)
+	public int getProductColumnCorrections() {
+		return getProductSize() - getProductDataRows();
+	}
+	
+	/**
+	 * Gets the count of rows and columns in the product code, which is the count of chunk rows in a frame.
+	 *
+	 * @return the size of the product code
+	 */
+	@Contract(pure = true)
+	public int getProductSize() {
+		return contentResolution / 2;
+	}
+	
+	@Contract(pure = true)
+	private int getProductDataRows() {
+		//each dimension gets the square root of the code rate
+		int size = getProductSize();
+		int corrections = size - (int) Math.round(size * Math.sqrt(1 - 1 / redundancy.getRatioConstant()));
+		return size - Math.max(2, corrections);
+	}
+	
+	@Contract(pure = true)
+	private int getProductDataColumns() {
+		int rows = getProductDataRows();
+		return rows % 2 == 0 ? rows : rows - 1;
+	}
+	
+	/**
+	 * Gets the count of Reed-Solomon codewords the content chunks of a frame are split into.
+	 * A single codeword can contain at most 4095 chunks, larger frames use multiple interleaved codewords:
+	 * consecutive data chunks belong to consecutive codewords and the same applies to the correction chunks.
+	 * Only used by the {@link Layout#INTERLEAVED} layout.
+	 *
+	 * @return the count of codewords in a frame
+	 */
+	@Contract(pure = true)
+	public int getCodewordCount() {
+		return (getContentChunks() + MAX_CODEWORD_CHUNKS - 1) / MAX_CODEWORD_CHUNKS;
+	}
+	
 	/**
 	 * Calculates the amount of frames necessary to contain a payload of the specified length.
-	 * Returns -1 if the payload length is invalid or is too large.
+	 * Returns -1 if the payload length is invalid or is too large:
+	 * it must fit into the 23 bit length field of the first frame and into 1025 frames.
 	 *
 	 * @param payloadLength the length of the payload
 	 * @return the amount of frames necessary or -1
 	 */
 	@Contract(pure = true)
 	public int getFrameCount(int payloadLength) {
-		if (payloadLength <= 0) {
+		if (payloadLength <= 0 || payloadLength > MAX_PAYLOAD_LENGTH) {
 			return -1;
 		}
 		
 		int dataBits = getDataChunks() * 12;
-		int payloadBitsRegular = dataBits - 16;
-		int count = (payloadLength * 8 - dataBits + 63 + payloadBitsRegular) / payloadBitsRegular;
+		int payloadBitsRegular = dataBits - getRegularHeaderLength() * 8;
+		int count = (payloadLength * 8 - dataBits + getFirstHeaderLength() * 8 + 7 + payloadBitsRegular)
+				/ payloadBitsRegular;
 		return count > 1024 ? -1 : count + 1;
 	}
 	
@@ -100,7 +353,10 @@ public class FrameInfo {
 		_64,
 		_80,
 		_100,
-		_128;
+		_128,
+		_160,
+		_200,
+		_256;
 		
 		private final int value;
 		
@@ -136,4 +392,175 @@ public class FrameInfo {
 			return null;
 		}
 	}
+	
+	
+	
+	/**
+	 * The different amounts of error correction frames can have.
+	 * The count of content chunks divided by the ratio constant is the count of correction chunks.
+	 * The redundancy is stored in the header of regular frames using its ID.
+	 */
+	public enum Redundancy {
+		/**
+		 * About 15% of the content chunks are correction chunks, meant for clean, indoor displays.
+		 */
+		LOW(1, 6.666),
+		
+		/**
+		 * About 30% of the content chunks are correction chunks.
+		 */
+		STANDARD(0, 3.333),
+		
+		/**
+		 * About 40% of the content chunks are correction chunks, meant for harsh conditions.
+		 */
+		HIGH(2, 2.5);
+		
+		private final int id;
+		private final double ratioConstant;
+		
+		Redundancy(int id, double ratioConstant) {
+			this.id = id;
+			this.ratioConstant = ratioConstant;
+		}
+		
+		/**
+		 * Gets the value this redundancy is represented by in frame headers.
+		 *
+		 * @return the ID of this redundancy
+		 */
+		@Contract(pure = true)
+		public int getId() {
+			return id;
+		}
+		
+		/**
+		 * Gets the value the count of content chunks is divided by to get the count of correction chunks.
+		 *
+		 * @return the ratio constant
+		 */
+		@Contract(pure = true)
+		public double getRatioConstant() {
+			return ratioConstant;
+		}
+		
+		/**
+		 * Gets the instance associated with the specified ID.
+		 * Returns null if no instances are associated with the specified value.
+		 *
+		 * @param id the ID to search for
+		 * @return the instance associated with the specified ID or null
+		 */
+		@Nullable
+		public static Redundancy fromId(int id) {
+			//noinspection Convert2streamapi
+			for (Redundancy value : values()) {
+				if (value.getId() == id) {
+					return value;
+				}
+			}
+			return null;
+		}
+	}
+	
+	
+	
+	/**
+	 * The different ways the content chunks of a frame can be protected by error correction codes.
+	 * The layout is stored in the header of regular frames using its ID.
+	 */
+	public enum Layout {
+		/**
+		 * The data chunks are followed by the correction chunks,
+		 * forming one or more (see {@link FrameInfo#getCodewordCount()}) interleaved Reed-Solomon codewords.
+		 */
+		INTERLEAVED(0),
+		
+		/**
+		 * Each row of chunks is a short Reed-Solomon codeword and so is each column of chunks.
+		 * Decoding alternates between the rows and the columns, the rows that could not be corrected
+		 * are erasures for the columns, therefore whole corrupted rows are also correctable.
+		 * The count of correction chunks only approximates the redundancy, since both dimensions are rounded.
+		 */
+		PRODUCT(1);
+		
+		private final int id;
+		
+		Layout(int id) {
+			this.id = id;
+		}
+		
+		/**
+		 * Gets the value this layout is represented by in frame headers.
+		 *
+		 * @return the ID of this layout
+		 */
+		@Contract(pure = true)
+		public int getId() {
+			return id;
+		}
+	}
+	
+	
+	
+	/**
+	 * The different frames the properties of a movie (its frame count, payload length and CRC) can be stored in.
+	 * The movie header mode is stored in the header of regular frames using its ID.
+	 */
+	public enum MovieHeader {
+		/**
+		 * Only the first frame contains the properties of the movie,
+		 * therefore parsers only know how many frames to wait for once the first frame was received.
+		 */
+		FIRST_FRAME(0),
+		
+		/**
+		 * Each regular frame also contains a compact movie header: the frame count
+		 * and a fragment of the payload CRC (its lower 16 bits), which identifies the movie.
+		 * Parsers know the length of the movie from any frame and can tell frames of different movies apart,
+		 * at the cost of 4 bytes of payload in each regular frame.
+		 * There is no separate movie ID: the CRC fragment is the movie ID,
+		 * therefore movies with the same frame count and CRC fragment can't be told apart.
+		 */
+		EVERY_FRAME(1);
+		
+		private final int id;
+		
+		MovieHeader(int id) {
+			this.id = id;
+		}
+		
+		/**
+		 * Gets the value this movie header mode is represented by in frame headers.
+		 *
+		 * @return the ID of this movie header mode
+		 */
+		@Contract(pure = true)
+		public int getId() {
+			return id;
+		}
+	}
+	
+	
+	
+	/**
+	 * The different ways the integrity of the received data can be verified.
+	 * Unlike the other properties, the integrity mode is not stored in the frames:
+	 * parsers must use the same mode as the generator.
+	 */
+	public enum Integrity {
+		/**
+		 * Only the CRC of the whole payload (stored in the first frame) is checked.
+		 * If error correction produced wrong data for a frame, then parsers have to try
+		 * the combinations of the different versions of the frames received.
+		 */
+		PAYLOAD_CRC,
+		
+		/**
+		 * Each frame also contains the digest of its own data, see {@link FrameDigest},
+		 * therefore parsers discard corrupted frames on arrival and only a single combination has to be checked,
+		 * at the cost of 2 bytes of payload in each frame.
+		 */
+		FRAME_DIGEST
+	}
 }
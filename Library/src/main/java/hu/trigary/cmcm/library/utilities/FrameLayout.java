@@ -0,0 +1,268 @@
+package hu.trigary.cmcm.library.utilities;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The precomputed geometry of a frame: where each cell of each content chunk is located,
+ * which mask value it uses and what the padding and template pixels look like.
+ * Frames are converted to and from chunks using these tables, therefore
+ * neither the traversal order, nor the mask has to be recalculated for each frame.
+ * Instances are immutable, cached and shared, they can be retrieved using {@link #get(int, int)}.
+ */
+public final class FrameLayout {
+	private static final Map<Integer, FrameLayout> CACHED_LAYOUTS = new ConcurrentHashMap<>();
+	private final int contentResolution;
+	private final int paddingWidth;
+	private final int imageResolution;
+	private final int[] cellIndexes;
+	private final byte[] cellMasks;
+	private final Color[] templateColors;
+	private final PackedFrame[] templateFrames;
+	
+	private FrameLayout(int contentResolution, int paddingWidth) {
+		this.contentResolution = contentResolution;
+		this.paddingWidth = paddingWidth;
+		imageResolution = contentResolution + 2 * paddingWidth;
+		int chunkCount = contentResolution * contentResolution / 4 - 2;
+		cellIndexes = new int[chunkCount * 4];
+		cellMasks = new byte[chunkCount * 4];
+		
+		//the first chunk is the one around the upper template bits
+		int offset = paddingWidth;
+		int row = (offset + 1) * imageResolution;
+		setCell(0, offset + row, 0, 0);
+		setCell(1, offset + 1 + row, 1, 0);
+		setCell(2, imageResolution - offset - 1 + row, 0, 1);
+		setCell(3, imageResolution - offset - 2 + row, 1, 1);
+		
+		int chunkIndex = 1;
+		int rowChunks = contentResolution / 2;
+		chunkIndex = setChunksInRow(chunkIndex, 2, 0, rowChunks - 2);
+		int y = 2;
+		for (int i = 2; i < rowChunks; i++) {
+			chunkIndex = setChunksInRow(chunkIndex, 0, y, rowChunks);
+			y += 2;
+		}
+		setChunksInRow(chunkIndex, 1, y, rowChunks - 1);
+		
+		templateColors = createTemplate();
+		templateFrames = new PackedFrame[PackedFrame.Format.values().length];
+		for (PackedFrame.Format format : PackedFrame.Format.values()) {
+			templateFrames[format.ordinal()] = PackedFrame.fromColors(templateColors, format, false);
+		}
+	}
+	
+	/**
+	 * Gets the layout of the specified frame type.
+	 * A padding width of 1 means a black border, a width of 2 means an additional white border around it.
+	 *
+	 * @param contentResolution the content resolution of the frame, see {@link FrameInfo#getContentResolution()}
+	 * @param paddingWidth the width of the padding on each side of the frame, between 0 and 2 (inclusive)
+	 * @return the cached layout of the specified frame type
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static FrameLayout get(int contentResolution, int paddingWidth) {
+		if (contentResolution < 4 || contentResolution % 2 != 0) {
+			throw new IllegalArgumentException("content resolution must be an even number, at least 4");
+		}
+		if (paddingWidth < 0 || paddingWidth > 2) {
+			throw new IllegalArgumentException("padding width must be between 0 and 2");
+		}
+		
+		return CACHED_LAYOUTS.computeIfAbsent(contentResolution << 2 | paddingWidth,
+				key -> new FrameLayout(contentResolution, paddingWidth));
+	}
+	
+	/**
+	 * Gets the resolution of the content of the frame.
+	 *
+	 * @return the content resolution
+	 */
+	@Contract(pure = true)
+	public int getContentResolution() {
+		return contentResolution;
+	}
+	
+	/**
+	 * Gets the width of the padding on each side of the frame.
+	 *
+	 * @return the padding width
+	 */
+	@Contract(pure = true)
+	public int getPaddingWidth() {
+		return paddingWidth;
+	}
+	
+	/**
+	 * Gets the resolution of the whole frame, including the padding.
+	 *
+	 * @return the image resolution
+	 */
+	@Contract(pure = true)
+	public int getImageResolution() {
+		return imageResolution;
+	}
+	
+	/**
+	 * Gets the count of content chunks in the frame.
+	 *
+	 * @return the count of content chunks
+	 */
+	@Contract(pure = true)
+	public int getContentChunks() {
+		return cellIndexes.length / 4;
+	}
+	
+	/**
+	 * Creates a new frame that only contains the padding and the template pixels,
+	 * the cells of the content chunks being {@link Color#BLACK}.
+	 *
+	 * @return a new, partially filled color matrix
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public Color[] createTemplateFrame() {
+		return templateColors.clone();
+	}
+	
+	/**
+	 * Creates a new frame that only contains the padding and the template pixels,
+	 * the cells of the content chunks being {@link Color#BLACK}.
+	 *
+	 * @param format the way the cells are stored
+	 * @param direct whether a direct buffer should be allocated instead of a heap buffer
+	 * @return a new, partially filled packed frame
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public PackedFrame createTemplateFrame(@NotNull PackedFrame.Format format, boolean direct) {
+		return templateFrames[format.ordinal()].copy(direct);
+	}
+	
+	/**
+	 * Writes the specified content chunks into their cells, applying the mask.
+	 *
+	 * @param chunks the content chunks to write
+	 * @param firstChunk the index of the first specified chunk among all content chunks of the frame
+	 * @param frame the frame to write into, its resolution must equal the image resolution
+	 */
+	public void writeChunks(@NotNull int[] chunks, int firstChunk, @NotNull Color[] frame) {
+		int cell = firstChunk * 4;
+		for (int chunk : chunks) {
+			for (int shift = 9; shift >= 0; shift -= 3, cell++) {
+				frame[cellIndexes[cell]] = Color.fromBits(((chunk >>> shift) + cellMasks[cell]) & 7);
+			}
+		}
+	}
+	
+	/**
+	 * Writes the specified content chunks into their cells, applying the mask.
+	 *
+	 * @param chunks the content chunks to write
+	 * @param firstChunk the index of the first specified chunk among all content chunks of the frame
+	 * @param frame the frame to write into, its resolution must equal the image resolution
+	 */
+	public void writeChunks(@NotNull int[] chunks, int firstChunk, @NotNull PackedFrame frame) {
+		int cell = firstChunk * 4;
+		for (int chunk : chunks) {
+			for (int shift = 9; shift >= 0; shift -= 3, cell++) {
+				frame.setBits(cellIndexes[cell], ((chunk >>> shift) + cellMasks[cell]) & 7);
+			}
+		}
+	}
+	
+	/**
+	 * Reads all content chunks of the specified frame, removing the mask.
+	 *
+	 * @param frame the frame to read from, its resolution must equal the image resolution
+	 * @param target the array to write the content chunks into
+	 */
+	public void readChunks(@NotNull Color[] frame, @NotNull int[] target) {
+		int cell = 0;
+		for (int i = 0; i < target.length; i++) {
+			int value = 0;
+			for (int j = 0; j < 4; j++, cell++) {
+				value = value << 3 | ((frame[cellIndexes[cell]].getBits() - cellMasks[cell]) & 7);
+			}
+			target[i] = value;
+		}
+	}
+	
+	/**
+	 * Reads all content chunks of the specified frame, removing the mask.
+	 *
+	 * @param frame the frame to read from, its resolution must equal the image resolution
+	 * @param target the array to write the content chunks into
+	 */
+	public void readChunks(@NotNull PackedFrame frame, @NotNull int[] target) {
+		int cell = 0;
+		for (int i = 0; i < target.length; i++) {
+			int value = 0;
+			for (int j = 0; j < 4; j++, cell++) {
+				value = value << 3 | ((frame.getBits(cellIndexes[cell]) - cellMasks[cell]) & 7);
+			}
+			target[i] = value;
+		}
+	}
+	
+	private void setCell(int cell, int pixelIndex, int x, int y) {
+		cellIndexes[cell] = pixelIndex;
+		cellMasks[cell] = (byte) Color.getMask(x, y);
+	}
+	
+	private int setChunksInRow(int chunkIndex, int startX, int y, int chunkCount) {
+		for (int i = 0; i < chunkCount; i++) {
+			int pixelIndex = startX + paddingWidth + (y + paddingWidth) * imageResolution;
+			int cell = chunkIndex++ * 4;
+			setCell(cell, pixelIndex, startX, y);
+			setCell(cell + 1, pixelIndex + 1, startX + 1, y);
+			setCell(cell + 2, pixelIndex + imageResolution, startX, y + 1);
+			setCell(cell + 3, pixelIndex + 1 + imageResolution, startX + 1, y + 1);
+			startX += 2;
+		}
+		return chunkIndex;
+	}
+	
+	@NotNull
+	@Contract(pure = true)
+	private Color[] createTemplate() {
+		Color[] pixels = new Color[imageResolution * imageResolution];
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = Color.BLACK;
+		}
+		
+		if (paddingWidth == 2) {
+			drawRectangle(pixels, 0, Color.WHITE);
+		}
+		
+		int offset = paddingWidth;
+		int bound = imageResolution - offset - 1;
+		pixels[offset + offset * imageResolution] = Color.WHITE;
+		pixels[offset + 1 + offset * imageResolution] = Color.BLACK;
+		pixels[bound + offset * imageResolution] = Color.GREEN;
+		pixels[bound - 1 + offset * imageResolution] = Color.MAGENTA;
+		pixels[offset + bound * imageResolution] = Color.AQUA;
+		pixels[offset + (bound - 1) * imageResolution] = Color.RED;
+		pixels[bound + bound * imageResolution] = Color.YELLOW;
+		pixels[bound + (bound - 1) * imageResolution] = Color.BLUE;
+		return pixels;
+	}
+	
+	private void drawRectangle(@NotNull Color[] pixels, int offset, @NotNull Color color) {
+		int max = imageResolution - offset;
+		for (int x = offset; x < max; x++) {
+			pixels[x + offset * imageResolution] = color;
+			pixels[x + (max - 1) * imageResolution] = color;
+		}
+		max--;
+		for (int y = offset + 1; y < max; y++) {
+			pixels[offset + y * imageResolution] = color;
+			pixels[max + y * imageResolution] = color;
+		}
+	}
+}
@@ -0,0 +1,297 @@
+package hu.trigary.cmcm.library.utilities;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * A class that is capable of converting frames into images: square pixel buffers
+ * in which each cell is a square of pixels, surrounded by a black border.
+ * The images are either in ARGB format (see {@link Color#getArgb()})
+ * or indexed, each pixel storing the non-masked bits of its color (see {@link Color#getBits()}).
+ * Each pixel row of a cell row is only calculated once, the rest are bulk copies.
+ * The destination buffers can be supplied by the caller, so that they can be reused.
+ * Instances contain workspaces and therefore are not thread-safe.
+ */
+public final class FrameRasterizer {
+	private static final int[] PALETTE = new int[8];
+	private final int frameResolution;
+	private final int cellSize;
+	private final int padding;
+	private final int imageSize;
+	private final int[] cellBits;
+	private int[] rowPixels;
+	
+	static {
+		for (int i = 0; i < PALETTE.length; i++) {
+			PALETTE[i] = Color.fromBits(i).getArgb();
+		}
+	}
+	
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param frameResolution the width and height of the frames in cells
+	 * @param cellSize the width and height of a single cell in pixels
+	 * @param padding the width of the black border on each side of the image in pixels
+	 */
+	public FrameRasterizer(int frameResolution, int cellSize, int padding) {
+		if (frameResolution <= 0 || cellSize <= 0) {
+			throw new IllegalArgumentException("frame resolution and cell size must be positive");
+		}
+		if (padding < 0) {
+			throw new IllegalArgumentException("padding must not be negative");
+		}
+		
+		this.frameResolution = frameResolution;
+		this.cellSize = cellSize;
+		this.padding = padding;
+		imageSize = frameResolution * cellSize + 2 * padding;
+		cellBits = new int[frameResolution];
+	}
+	
+	/**
+	 * Gets the ARGB value of the color the specified index represents in indexed images.
+	 *
+	 * @param index the index of the color, the non-masked bits of the color
+	 * @return the color in ARGB format
+	 */
+	@Contract(pure = true)
+	public static int getPaletteArgb(int index) {
+		return PALETTE[index];
+	}
+	
+	/**
+	 * Gets the width and height of the created images in pixels.
+	 *
+	 * @return the size of the images
+	 */
+	@Contract(pure = true)
+	public int getImageSize() {
+		return imageSize;
+	}
+	
+	/**
+	 * Converts the specified frame into an ARGB image.
+	 *
+	 * @param frame the frame to convert
+	 * @param target the array to write the pixels into, row by row, or null;
+	 * a new array is created if it is null or too small
+	 * @return the array containing the image
+	 */
+	@NotNull
+	public int[] rasterize(@NotNull Color[] frame, @Nullable int[] target) {
+		checkResolution(frame.length);
+		int[] pixels = createTarget(target);
+		fillBorder(pixels);
+		for (int y = 0; y < frameResolution; y++) {
+			readRow(frame, y);
+			writeRow(pixels, y);
+		}
+		return pixels;
+	}
+	
+	/**
+	 * Converts the specified frame into an ARGB image.
+	 *
+	 * @param frame the frame to convert
+	 * @param target the array to write the pixels into, row by row, or null;
+	 * a new array is created if it is null or too small
+	 * @return the array containing the image
+	 */
+	@NotNull
+	public int[] rasterize(@NotNull PackedFrame frame, @Nullable int[] target) {
+		checkResolution(frame.getResolution() * frame.getResolution());
+		int[] pixels = createTarget(target);
+		fillBorder(pixels);
+		for (int y = 0; y < frameResolution; y++) {
+			readRow(frame, y);
+			writeRow(pixels, y);
+		}
+		return pixels;
+	}
+	
+	/**
+	 * Converts the specified frame into an ARGB image, writing it into the specified buffer
+	 * row by row, starting at its current position.
+	 * The position of the buffer is advanced by the pixel count of the image.
+	 *
+	 * @param frame the frame to convert
+	 * @param target the buffer to write the pixels into, it must have enough remaining space
+	 */
+	public void rasterizeInto(@NotNull Color[] frame, @NotNull IntBuffer target) {
+		checkResolution(frame.length);
+		putBorderRows(target);
+		for (int y = 0; y < frameResolution; y++) {
+			readRow(frame, y);
+			putRow(target);
+		}
+		putBorderRows(target);
+	}
+	
+	/**
+	 * Converts the specified frame into an ARGB image, writing it into the specified buffer
+	 * row by row, starting at its current position.
+	 * The position of the buffer is advanced by the pixel count of the image.
+	 *
+	 * @param frame the frame to convert
+	 * @param target the buffer to write the pixels into, it must have enough remaining space
+	 */
+	public void rasterizeInto(@NotNull PackedFrame frame, @NotNull IntBuffer target) {
+		checkResolution(frame.getResolution() * frame.getResolution());
+		putBorderRows(target);
+		for (int y = 0; y < frameResolution; y++) {
+			readRow(frame, y);
+			putRow(target);
+		}
+		putBorderRows(target);
+	}
+	
+	/**
+	 * Converts the specified frame into an indexed image:
+	 * each pixel contains the non-masked bits of its color, see {@link #getPaletteArgb(int)}.
+	 *
+	 * @param frame the frame to convert
+	 * @param target the array to write the pixels into, row by row, or null;
+	 * a new array is created if it is null or too small
+	 * @return the array containing the image
+	 */
+	@NotNull
+	public byte[] rasterizeIndexed(@NotNull Color[] frame, @Nullable byte[] target) {
+		checkResolution(frame.length);
+		byte[] pixels = createIndexedTarget(target);
+		for (int y = 0; y < frameResolution; y++) {
+			readRow(frame, y);
+			writeIndexedRow(pixels, y);
+		}
+		return pixels;
+	}
+	
+	/**
+	 * Converts the specified frame into an indexed image:
+	 * each pixel contains the non-masked bits of its color, see {@link #getPaletteArgb(int)}.
+	 *
+	 * @param frame the frame to convert
+	 * @param target the array to write the pixels into, row by row, or null;
+	 * a new array is created if it is null or too small
+	 * @return the array containing the image
+	 */
+	@NotNull
+	public byte[] rasterizeIndexed(@NotNull PackedFrame frame, @Nullable byte[] target) {
+		checkResolution(frame.getResolution() * frame.getResolution());
+		byte[] pixels = createIndexedTarget(target);
+		for (int y = 0; y < frameResolution; y++) {
+			readRow(frame, y);
+			writeIndexedRow(pixels, y);
+		}
+		return pixels;
+	}
+	
+	private void checkResolution(int cellCount) {
+		if (cellCount != frameResolution * frameResolution) {
+			throw new IllegalArgumentException("frame resolution must equal the resolution of the rasterizer");
+		}
+	}
+	
+	private void readRow(@NotNull Color[] frame, int y) {
+		int offset = y * frameResolution;
+		for (int x = 0; x < frameResolution; x++) {
+			cellBits[x] = frame[offset + x].getBits();
+		}
+	}
+	
+	private void readRow(@NotNull PackedFrame frame, int y) {
+		int offset = y * frameResolution;
+		for (int x = 0; x < frameResolution; x++) {
+			cellBits[x] = frame.getBits(offset + x);
+		}
+	}
+	
+	@NotNull
+	private int[] createTarget(@Nullable int[] target) {
+		return target != null && target.length >= imageSize * imageSize ? target : new int[imageSize * imageSize];
+	}
+	
+	@NotNull
+	private byte[] createIndexedTarget(@Nullable byte[] target) {
+		if (target == null || target.length < imageSize * imageSize) {
+			return new byte[imageSize * imageSize];
+		}
+		
+		//the border is black, whose index is 0
+		Arrays.fill(target, 0, padding * imageSize, (byte) 0);
+		Arrays.fill(target, (imageSize - padding) * imageSize, imageSize * imageSize, (byte) 0);
+		return target;
+	}
+	
+	private void fillBorder(@NotNull int[] pixels) {
+		int black = Color.BLACK.getArgb();
+		Arrays.fill(pixels, 0, padding * imageSize, black);
+		Arrays.fill(pixels, (imageSize - padding) * imageSize, imageSize * imageSize, black);
+	}
+	
+	/**
+	 * Writes the pixel rows of the cell row stored in {@link #cellBits}:
+	 * the first pixel row is calculated, the rest are copied.
+	 */
+	private void writeRow(@NotNull int[] pixels, int y) {
+		int start = (padding + y * cellSize) * imageSize;
+		writePixelRow(pixels, start);
+		for (int i = 1; i < cellSize; i++) {
+			System.arraycopy(pixels, start, pixels, start + i * imageSize, imageSize);
+		}
+	}
+	
+	private void writePixelRow(@NotNull int[] pixels, int start) {
+		int black = Color.BLACK.getArgb();
+		Arrays.fill(pixels, start, start + padding, black);
+		int index = start + padding;
+		for (int x = 0; x < frameResolution; x++) {
+			Arrays.fill(pixels, index, index + cellSize, PALETTE[cellBits[x]]);
+			index += cellSize;
+		}
+		Arrays.fill(pixels, index, index + padding, black);
+	}
+	
+	private void writeIndexedRow(@NotNull byte[] pixels, int y) {
+		int start = (padding + y * cellSize) * imageSize;
+		Arrays.fill(pixels, start, start + padding, (byte) 0);
+		int index = start + padding;
+		for (int x = 0; x < frameResolution; x++) {
+			Arrays.fill(pixels, index, index + cellSize, (byte) cellBits[x]);
+			index += cellSize;
+		}
+		Arrays.fill(pixels, index, index + padding, (byte) 0);
+		
+		for (int i = 1; i < cellSize; i++) {
+			System.arraycopy(pixels, start, pixels, start + i * imageSize, imageSize);
+		}
+	}
+	
+	private void putRow(@NotNull IntBuffer target) {
+		if (rowPixels == null) {
+			rowPixels = new int[imageSize];
+		}
+		writePixelRow(rowPixels, 0);
+		for (int i = 0; i < cellSize; i++) {
+			target.put(rowPixels);
+		}
+	}
+	
+	private void putBorderRows(@NotNull IntBuffer target) {
+		if (padding == 0) {
+			return;
+		}
+		
+		if (rowPixels == null) {
+			rowPixels = new int[imageSize];
+		}
+		Arrays.fill(rowPixels, Color.BLACK.getArgb());
+		for (int i = 0; i < padding; i++) {
+			target.put(rowPixels);
+		}
+	}
+}
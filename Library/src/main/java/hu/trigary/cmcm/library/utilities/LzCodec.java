@@ -0,0 +1,190 @@
+package hu.trigary.cmcm.library.utilities;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A fast LZ77 style compressor, in the spirit of LZ4, tuned for small structured payloads.
+ * The compressed data is a sequence of tokens: each token contains the count of literal bytes
+ * that follow it, then a 2 byte offset and the length of the match that is copied from the already decompressed data.
+ * Lengths not fitting into the 4 bits of the token are continued in bytes of 255 and a terminating byte.
+ * The last token only contains literals. Matches are found using a single hash table lookup,
+ * the table is small, since it is cleared for each payload.
+ */
+final class LzCodec {
+	private static final int MIN_MATCH = 4;
+	private static final int MAX_OFFSET = 0xffff;
+	private static final int HASH_BITS = 12;
+	private static final int NIBBLE_MAX = 15;
+	
+	private LzCodec() { }
+	
+	/**
+	 * Compresses the specified data.
+	 *
+	 * @param input the data to compress
+	 * @return the compressed data
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static byte[] compress(@NotNull byte[] input) {
+		byte[] output = new byte[input.length + input.length / 255 + 16];
+		int[] table = new int[1 << HASH_BITS];
+		Arrays.fill(table, -1);
+		int outputIndex = 0;
+		int anchor = 0;
+		int index = 0;
+		while (index + MIN_MATCH <= input.length) {
+			int hash = hash(input, index);
+			int candidate = table[hash];
+			table[hash] = index;
+			if (candidate < 0 || index - candidate > MAX_OFFSET || !startsEqual(input, candidate, index)) {
+				index++;
+				continue;
+			}
+			
+			int length = MIN_MATCH;
+			while (index + length < input.length && input[candidate + length] == input[index + length]) {
+				length++;
+			}
+			outputIndex = writeSequence(output, outputIndex, input, anchor, index - anchor, index - candidate, length);
+			index += length;
+			anchor = index;
+		}
+		outputIndex = writeSequence(output, outputIndex, input, anchor, input.length - anchor, 0, 0);
+		return Arrays.copyOf(output, outputIndex);
+	}
+	
+	/**
+	 * Decompresses the specified data.
+	 *
+	 * @param input the array containing the compressed data
+	 * @param offset the index of the first compressed byte in the array
+	 * @param length the count of compressed bytes
+	 * @param decompressedLength the length of the data before compression
+	 * @return the decompressed data
+	 * @throws IllegalArgumentException if the data is malformed
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static byte[] decompress(@NotNull byte[] input, int offset, int length, int decompressedLength) {
+		byte[] output = new byte[decompressedLength];
+		int index = offset;
+		int end = offset + length;
+		int outputIndex = 0;
+		while (index < end) {
+			int token = input[index++] & 0xff;
+			int literals = token >>> 4;
+			if (literals == NIBBLE_MAX) {
+				int[] result = readLength(input, index, end, literals);
+				literals = result[0];
+				index = result[1];
+			}
+			if (literals > end - index || literals > output.length - outputIndex) {
+				throw new IllegalArgumentException("malformed data: literals out of bounds");
+			}
+			System.arraycopy(input, index, output, outputIndex, literals);
+			index += literals;
+			outputIndex += literals;
+			if (index == end) {
+				break;
+			}
+			
+			if (end - index < 2) {
+				throw new IllegalArgumentException("malformed data: truncated offset");
+			}
+			int matchOffset = (input[index] & 0xff) | (input[index + 1] & 0xff) << 8;
+			index += 2;
+			int matchLength = token & NIBBLE_MAX;
+			if (matchLength == NIBBLE_MAX) {
+				int[] result = readLength(input, index, end, matchLength);
+				matchLength = result[0];
+				index = result[1];
+			}
+			matchLength += MIN_MATCH;
+			if (matchOffset == 0 || matchOffset > outputIndex || matchLength > output.length - outputIndex) {
+				throw new IllegalArgumentException("malformed data: match out of bounds");
+			}
+			
+			//the source and the destination may overlap, therefore the bytes are copied one by one
+			for (int i = 0; i < matchLength; i++, outputIndex++) {
+				output[outputIndex] = output[outputIndex - matchOffset];
+			}
+		}
+		
+		if (outputIndex != output.length) {
+			throw new IllegalArgumentException("malformed data: decompressed length mismatch");
+		}
+		return output;
+	}
+	
+	@Contract(pure = true)
+	private static int hash(@NotNull byte[] input, int index) {
+		int value = (input[index] & 0xff) | (input[index + 1] & 0xff) << 8
+				| (input[index + 2] & 0xff) << 16 | input[index + 3] << 24;
+		return (value * 0x9e3779b1) >>> (32 - HASH_BITS);
+	}
+	
+	@Contract(pure = true)
+	private static boolean startsEqual(@NotNull byte[] input, int first, int second) {
+		for (int i = 0; i < MIN_MATCH; i++) {
+			if (input[first + i] != input[second + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Writes a token, its literals and its match; a match length of 0 signals that there is no match.
+	 */
+	private static int writeSequence(@NotNull byte[] output, int outputIndex, @NotNull byte[] input,
+			int literalStart, int literalCount, int matchOffset, int matchLength) {
+		int storedMatch = matchLength == 0 ? 0 : matchLength - MIN_MATCH;
+		int token = outputIndex++;
+		output[token] = (byte) (Math.min(literalCount, NIBBLE_MAX) << 4 | Math.min(storedMatch, NIBBLE_MAX));
+		outputIndex = writeLength(output, outputIndex, literalCount);
+		System.arraycopy(input, literalStart, output, outputIndex, literalCount);
+		outputIndex += literalCount;
+		if (matchLength == 0) {
+			return outputIndex;
+		}
+		
+		output[outputIndex++] = (byte) matchOffset;
+		output[outputIndex++] = (byte) (matchOffset >>> 8);
+		return writeLength(output, outputIndex, storedMatch);
+	}
+	
+	private static int writeLength(@NotNull byte[] output, int outputIndex, int length) {
+		if (length < NIBBLE_MAX) {
+			return outputIndex;
+		}
+		
+		int remaining = length - NIBBLE_MAX;
+		while (remaining >= 255) {
+			output[outputIndex++] = (byte) 255;
+			remaining -= 255;
+		}
+		output[outputIndex++] = (byte) remaining;
+		return outputIndex;
+	}
+	
+	/**
+	 * Reads the continuation of a length, returning the length and the index after it.
+	 */
+	@NotNull
+	@Contract(pure = true)
+	private static int[] readLength(@NotNull byte[] input, int index, int end, int length) {
+		int value;
+		do {
+			if (index == end) {
+				throw new IllegalArgumentException("malformed data: truncated length");
+			}
+			value = input[index++] & 0xff;
+			length += value;
+		} while (value == 255);
+		return new int[]{length, index};
+	}
+}
@@ -0,0 +1,232 @@
+package hu.trigary.cmcm.library.utilities;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * A compact alternative to {@link Color} arrays: a square matrix of cells,
+ * each cell storing the non-masked bits of its color (see {@link Color#getBits()}).
+ * The cells are stored row by row, either using one byte or only three bits per cell,
+ * in a heap or a direct {@link ByteBuffer}.
+ * When three bits are used, cell {@code i} starts at bit {@code 3 * i},
+ * counting from the least significant bit of the first byte.
+ * Instances are not thread-safe.
+ */
+public final class PackedFrame {
+	private final ByteBuffer buffer;
+	private final int offset;
+	private final int resolution;
+	private final Format format;
+	
+	private PackedFrame(@NotNull ByteBuffer buffer, int offset, int resolution, @NotNull Format format) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.resolution = resolution;
+		this.format = format;
+	}
+	
+	/**
+	 * Creates a new instance, all cells initially being {@link Color#BLACK}.
+	 *
+	 * @param resolution the width and height of the frame
+	 * @param format the way the cells are stored
+	 * @param direct whether a direct buffer should be allocated instead of a heap buffer
+	 * @return the newly created instance
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static PackedFrame allocate(int resolution, @NotNull Format format, boolean direct) {
+		int byteCount = getByteCount(resolution, format);
+		return new PackedFrame(direct ? ByteBuffer.allocateDirect(byteCount) : ByteBuffer.allocate(byteCount),
+				0, resolution, format);
+	}
+	
+	/**
+	 * Creates a new instance backed by the specified buffer, starting at its current position.
+	 * The buffer is not copied: changes in either of them are visible in the other.
+	 *
+	 * @param buffer the buffer containing the cells
+	 * @param resolution the width and height of the frame
+	 * @param format the way the cells are stored
+	 * @return the newly created instance
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static PackedFrame wrap(@NotNull ByteBuffer buffer, int resolution, @NotNull Format format) {
+		if (buffer.remaining() < getByteCount(resolution, format)) {
+			throw new IllegalArgumentException("buffer must have enough remaining bytes to store the frame");
+		}
+		return new PackedFrame(buffer.duplicate(), buffer.position(), resolution, format);
+	}
+	
+	/**
+	 * Creates a new instance containing the specified colors.
+	 *
+	 * @param frame the color matrix to convert, its length must be a square number
+	 * @param format the way the cells are stored
+	 * @param direct whether a direct buffer should be allocated instead of a heap buffer
+	 * @return the newly created instance
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public static PackedFrame fromColors(@NotNull Color[] frame, @NotNull Format format, boolean direct) {
+		int resolution = (int) Math.sqrt(frame.length);
+		if (resolution * resolution != frame.length) {
+			throw new IllegalArgumentException("frame array length must be a square number");
+		}
+		
+		PackedFrame packed = allocate(resolution, format, direct);
+		for (int i = 0; i < frame.length; i++) {
+			packed.setBits(i, frame[i].getBits());
+		}
+		return packed;
+	}
+	
+	/**
+	 * Calculates the count of bytes a frame takes up.
+	 *
+	 * @param resolution the width and height of the frame
+	 * @param format the way the cells are stored
+	 * @return the size of a frame in bytes
+	 */
+	@Contract(pure = true)
+	public static int getByteCount(int resolution, @NotNull Format format) {
+		if (resolution <= 0) {
+			throw new IllegalArgumentException("resolution must be positive");
+		}
+		
+		int cells = resolution * resolution;
+		return format == Format.BYTE_PER_CELL ? cells : (cells * 3 + 7) / 8;
+	}
+	
+	/**
+	 * Gets the width and height of this frame.
+	 *
+	 * @return the resolution of this frame
+	 */
+	@Contract(pure = true)
+	public int getResolution() {
+		return resolution;
+	}
+	
+	/**
+	 * Gets the way the cells of this frame are stored.
+	 *
+	 * @return the format of this frame
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public Format getFormat() {
+		return format;
+	}
+	
+	/**
+	 * Gets a view of the bytes of this frame: the returned buffer's position is at the first byte
+	 * and its remaining byte count equals {@link #getByteCount(int, Format)}.
+	 *
+	 * @return a new buffer sharing the content of this frame
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public ByteBuffer getBuffer() {
+		ByteBuffer view = buffer.duplicate();
+		//casts keep the calls binary compatible with Java 8, where these methods are not covariant
+		((Buffer) view).limit(offset + getByteCount(resolution, format));
+		((Buffer) view).position(offset);
+		return view.slice();
+	}
+	
+	/**
+	 * Gets the non-masked bits of the color of the specified cell.
+	 *
+	 * @param index the index of the cell: {@code x + y * resolution}
+	 * @return the non-masked data represented by the cell's color
+	 * @see Color#getBits()
+	 */
+	@Contract(pure = true)
+	public int getBits(int index) {
+		if (format == Format.BYTE_PER_CELL) {
+			return buffer.get(offset + index) & 7;
+		}
+		
+		int bit = index * 3;
+		int byteIndex = offset + (bit >>> 3);
+		int value = buffer.get(byteIndex) & 0xff;
+		if ((bit & 7) > 5) {
+			value |= (buffer.get(byteIndex + 1) & 0xff) << 8;
+		}
+		return (value >>> (bit & 7)) & 7;
+	}
+	
+	/**
+	 * Sets the non-masked bits of the color of the specified cell.
+	 *
+	 * @param index the index of the cell: {@code x + y * resolution}
+	 * @param bits the non-masked data represented by the cell's color
+	 * @see Color#fromBits(int)
+	 */
+	public void setBits(int index, int bits) {
+		if (format == Format.BYTE_PER_CELL) {
+			buffer.put(offset + index, (byte) bits);
+			return;
+		}
+		
+		int bit = index * 3;
+		int byteIndex = offset + (bit >>> 3);
+		int shift = bit & 7;
+		buffer.put(byteIndex, (byte) ((buffer.get(byteIndex) & ~(7 << shift)) | (bits << shift)));
+		if (shift > 5) {
+			int next = buffer.get(byteIndex + 1);
+			buffer.put(byteIndex + 1, (byte) ((next & ~(7 >>> (8 - shift))) | (bits >>> (8 - shift))));
+		}
+	}
+	
+	/**
+	 * Creates a copy of this frame, using the same format.
+	 *
+	 * @param direct whether a direct buffer should be allocated instead of a heap buffer
+	 * @return the newly created instance
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public PackedFrame copy(boolean direct) {
+		PackedFrame copy = allocate(resolution, format, direct);
+		copy.buffer.duplicate().put(getBuffer());
+		return copy;
+	}
+	
+	/**
+	 * Converts this frame into a color matrix.
+	 *
+	 * @return the newly created color matrix
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public Color[] toColors() {
+		Color[] colors = new Color[resolution * resolution];
+		for (int i = 0; i < colors.length; i++) {
+			colors[i] = Color.fromBits(getBits(i));
+		}
+		return colors;
+	}
+	
+	
+	
+	/**
+	 * The ways the cells of a frame can be stored.
+	 */
+	public enum Format {
+		/**
+		 * Each cell takes up a whole byte, only its lowest three bits are used.
+		 */
+		BYTE_PER_CELL,
+		
+		/**
+		 * Each cell takes up three bits, the cells are tightly packed.
+		 */
+		THREE_BITS_PER_CELL
+	}
+}
@@ -0,0 +1,161 @@
+package hu.trigary.cmcm.library.utilities;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The different ways a payload can be compressed before being split into frames.
+ * Compressed payloads are stored with a small header: the ID of the codec
+ * followed by the 3 byte length of the original payload.
+ * Movies of compressed payloads are signalled in the header of the first frame:
+ * its payload CRC field contains the CRC of the compressed payload XOR {@link #COMPRESSED_CRC_MASK}.
+ * Since the parser checks the CRC anyway, it can tell the two kinds of movies apart without any additional bits
+ * and the payload is only decompressed after its integrity has been verified.
+ */
+public enum PayloadCodec {
+	/**
+	 * The payload is not compressed.
+	 */
+	NONE(0),
+	
+	/**
+	 * The payload is compressed using the Deflate algorithm ({@link Deflater}), at its best compression level.
+	 * Slower than {@link #LZ}, but usually achieves a better ratio.
+	 */
+	DEFLATE(1),
+	
+	/**
+	 * The payload is compressed using a fast LZ77 style algorithm tuned for small structured payloads.
+	 */
+	LZ(2);
+	
+	/**
+	 * The value the payload CRC of the first frame is XOR-ed with when the payload is compressed.
+	 */
+	public static final int COMPRESSED_CRC_MASK = 0x434d434d;
+	private static final int HEADER_LENGTH = 4;
+	private static final int MAX_PAYLOAD_LENGTH = 0xffffff;
+	private final int id;
+	
+	PayloadCodec(int id) {
+		this.id = id;
+	}
+	
+	/**
+	 * Gets the value this codec is represented by in the header of compressed payloads.
+	 *
+	 * @return the ID of this codec
+	 */
+	@Contract(pure = true)
+	public int getId() {
+		return id;
+	}
+	
+	/**
+	 * Compresses the specified payload, including the header of compressed payloads.
+	 * Returns null if compression would not make the payload shorter or if this codec is {@link #NONE}.
+	 *
+	 * @param payload the payload to compress
+	 * @return the compressed payload or null
+	 */
+	@Nullable
+	@Contract(pure = true)
+	public byte[] compress(@NotNull byte[] payload) {
+		if (this == NONE || payload.length > MAX_PAYLOAD_LENGTH) {
+			return null;
+		}
+		
+		byte[] data = this == DEFLATE ? deflate(payload) : LzCodec.compress(payload);
+		if (HEADER_LENGTH + data.length >= payload.length) {
+			return null;
+		}
+		
+		byte[] result = new byte[HEADER_LENGTH + data.length];
+		result[0] = (byte) id;
+		result[1] = (byte) (payload.length >>> 16);
+		result[2] = (byte) (payload.length >>> 8);
+		result[3] = (byte) payload.length;
+		System.arraycopy(data, 0, result, HEADER_LENGTH, data.length);
+		return result;
+	}
+	
+	/**
+	 * Decompresses the specified compressed payload, which includes the header of compressed payloads.
+	 * Returns null if the data is malformed.
+	 *
+	 * @param compressed the compressed payload
+	 * @return the original payload or null
+	 */
+	@Nullable
+	@Contract(pure = true)
+	public static byte[] decompress(@NotNull byte[] compressed) {
+		if (compressed.length < HEADER_LENGTH) {
+			return null;
+		}
+		
+		int length = (compressed[1] & 0xff) << 16 | (compressed[2] & 0xff) << 8 | (compressed[3] & 0xff);
+		int dataLength = compressed.length - HEADER_LENGTH;
+		try {
+			if (compressed[0] == DEFLATE.id) {
+				return inflate(compressed, HEADER_LENGTH, dataLength, length);
+			} else if (compressed[0] == LZ.id) {
+				return LzCodec.decompress(compressed, HEADER_LENGTH, dataLength, length);
+			}
+		} catch (IllegalArgumentException | DataFormatException ignored) {
+			//malformed data
+		}
+		return null;
+	}
+	
+	@NotNull
+	@Contract(pure = true)
+	private static byte[] deflate(@NotNull byte[] payload) {
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+		try {
+			deflater.setInput(payload);
+			deflater.finish();
+			ByteArrayOutputStream output = new ByteArrayOutputStream(payload.length);
+			byte[] buffer = new byte[Math.min(payload.length + 64, 1 << 16)];
+			while (!deflater.finished()) {
+				output.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return output.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+	
+	@NotNull
+	@Contract(pure = true)
+	private static byte[] inflate(@NotNull byte[] input, int offset, int length, int inflatedLength)
+			throws DataFormatException {
+		//the headerless format requires an extra dummy byte at the end of the input
+		byte[] data = new byte[length + 1];
+		System.arraycopy(input, offset, data, 0, length);
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(data);
+			byte[] result = new byte[inflatedLength];
+			int index = 0;
+			while (index < result.length) {
+				int read = inflater.inflate(result, index, result.length - index);
+				if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					throw new DataFormatException("decompressed length mismatch");
+				}
+				index += read;
+			}
+			if (!inflater.finished() && inflater.inflate(new byte[1]) != 0) {
+				throw new DataFormatException("decompressed length mismatch");
+			}
+			return result;
+		} finally {
+			inflater.end();
+		}
+	}
+}
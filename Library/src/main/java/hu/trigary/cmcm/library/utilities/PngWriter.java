@@ -0,0 +1,294 @@
+package hu.trigary.cmcm.library.utilities;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A class that is capable of encoding frames as indexed PNG images or as a single animated PNG (APNG).
+ * The images are drawn the same way as by {@link FrameRasterizer}, but they are stored with a palette
+ * of the 8 colors and with 4 bits per pixel, which is the smallest depth PNG supports that can hold 3 bits.
+ * The palette index of a pixel is the non-masked bits of its color, see {@link FrameRasterizer#getPaletteArgb(int)}.
+ * Only the first pixel row of each cell row is stored as is, the rest use the "Up" filter:
+ * they are all zeroes, which the compression reduces to almost nothing.
+ * The frames of animations are encoded in parallel.
+ * Channels can be written to by wrapping them using {@link java.nio.channels.Channels#newOutputStream}.
+ * Instances are immutable and therefore can be shared between threads.
+ */
+public final class PngWriter {
+	private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+	private static final int BIT_DEPTH = 4;
+	private static final int COLOR_TYPE_PALETTE = 3;
+	private static final int FILTER_NONE = 0;
+	private static final int FILTER_UP = 2;
+	private static final int MAX_FRAME_DELAY = 0xffff;
+	private final int frameResolution;
+	private final int cellSize;
+	private final int padding;
+	private final int imageSize;
+	private final int rowLength;
+	
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param frameResolution the width and height of the frames in cells
+	 * @param cellSize the width and height of a single cell in pixels
+	 * @param padding the width of the black border on each side of the image in pixels
+	 */
+	public PngWriter(int frameResolution, int cellSize, int padding) {
+		imageSize = new FrameRasterizer(frameResolution, cellSize, padding).getImageSize();
+		this.frameResolution = frameResolution;
+		this.cellSize = cellSize;
+		this.padding = padding;
+		rowLength = (imageSize + 1) / 2;
+	}
+	
+	/**
+	 * Gets the width and height of the created images in pixels.
+	 *
+	 * @return the size of the images
+	 */
+	@Contract(pure = true)
+	public int getImageSize() {
+		return imageSize;
+	}
+	
+	/**
+	 * Encodes the specified frame as a PNG image and writes it into the specified stream.
+	 * The stream is not closed.
+	 *
+	 * @param frame the frame to encode
+	 * @param output the stream to write the image into
+	 * @throws IOException if the stream could not be written to
+	 */
+	public void writePng(@NotNull Color[] frame, @NotNull OutputStream output) throws IOException {
+		FrameRasterizer rasterizer = createRasterizer();
+		writePng(compress(rasterizer.rasterizeIndexed(frame, null)), output);
+	}
+	
+	/**
+	 * Encodes the specified frame as a PNG image and writes it into the specified stream.
+	 * The stream is not closed.
+	 *
+	 * @param frame the frame to encode
+	 * @param output the stream to write the image into
+	 * @throws IOException if the stream could not be written to
+	 */
+	public void writePng(@NotNull PackedFrame frame, @NotNull OutputStream output) throws IOException {
+		FrameRasterizer rasterizer = createRasterizer();
+		writePng(compress(rasterizer.rasterizeIndexed(frame, null)), output);
+	}
+	
+	/**
+	 * Encodes the specified frames as an infinitely looping animated PNG image
+	 * and writes it into the specified stream.
+	 * Image viewers that don't support animations display the first frame.
+	 * The stream is not closed.
+	 *
+	 * @param frames the frames to encode, in order
+	 * @param frameDelay the time each frame is displayed for in milliseconds, at most 65535
+	 * @param output the stream to write the image into
+	 * @throws IOException if the stream could not be written to
+	 */
+	public void writeApng(@NotNull List<Color[]> frames, int frameDelay, @NotNull OutputStream output)
+			throws IOException {
+		writeApng(frames, (rasterizer, frame) -> rasterizer.rasterizeIndexed(frame, null), frameDelay, output);
+	}
+	
+	/**
+	 * Encodes the specified frames as an infinitely looping animated PNG image
+	 * and writes it into the specified stream.
+	 * Image viewers that don't support animations display the first frame.
+	 * The stream is not closed.
+	 *
+	 * @param frames the frames to encode, in order
+	 * @param frameDelay the time each frame is displayed for in milliseconds, at most 65535
+	 * @param output the stream to write the image into
+	 * @throws IOException if the stream could not be written to
+	 */
+	public void writePackedApng(@NotNull List<PackedFrame> frames, int frameDelay, @NotNull OutputStream output)
+			throws IOException {
+		writeApng(frames, (rasterizer, frame) -> rasterizer.rasterizeIndexed(frame, null), frameDelay, output);
+	}
+	
+	private <T> void writeApng(@NotNull List<T> frames, @NotNull Rasterization<T> rasterization,
+			int frameDelay, @NotNull OutputStream output) throws IOException {
+		if (frames.isEmpty()) {
+			throw new IllegalArgumentException("frames must not be empty");
+		}
+		if (frameDelay < 0 || frameDelay > MAX_FRAME_DELAY) {
+			throw new IllegalArgumentException("frame delay must be between 0 and " + MAX_FRAME_DELAY);
+		}
+		
+		//a rasterizer is created for each frame, since they are not thread-safe
+		byte[][] compressed = IntStream.range(0, frames.size())
+				.parallel()
+				.mapToObj(i -> compress(rasterization.rasterize(createRasterizer(), frames.get(i))))
+				.toArray(byte[][]::new);
+		
+		output.write(SIGNATURE);
+		writeHeaderChunks(output);
+		ChunkBuilder control = new ChunkBuilder("acTL", 8);
+		control.putInt(compressed.length).putInt(0);
+		control.writeTo(output);
+		
+		int sequence = 0;
+		for (int i = 0; i < compressed.length; i++) {
+			ChunkBuilder frameControl = new ChunkBuilder("fcTL", 26);
+			frameControl.putInt(sequence++).putInt(imageSize).putInt(imageSize).putInt(0).putInt(0)
+					.putShort(frameDelay).putShort(1000).putByte(0).putByte(0);
+			frameControl.writeTo(output);
+			
+			if (i == 0) {
+				ChunkBuilder data = new ChunkBuilder("IDAT", compressed[i].length);
+				data.putBytes(compressed[i]);
+				data.writeTo(output);
+			} else {
+				ChunkBuilder data = new ChunkBuilder("fdAT", 4 + compressed[i].length);
+				data.putInt(sequence++).putBytes(compressed[i]);
+				data.writeTo(output);
+			}
+		}
+		new ChunkBuilder("IEND", 0).writeTo(output);
+	}
+	
+	private void writePng(@NotNull byte[] compressed, @NotNull OutputStream output) throws IOException {
+		output.write(SIGNATURE);
+		writeHeaderChunks(output);
+		ChunkBuilder data = new ChunkBuilder("IDAT", compressed.length);
+		data.putBytes(compressed);
+		data.writeTo(output);
+		new ChunkBuilder("IEND", 0).writeTo(output);
+	}
+	
+	private void writeHeaderChunks(@NotNull OutputStream output) throws IOException {
+		ChunkBuilder header = new ChunkBuilder("IHDR", 13);
+		header.putInt(imageSize).putInt(imageSize).putByte(BIT_DEPTH).putByte(COLOR_TYPE_PALETTE)
+				.putByte(0).putByte(0).putByte(0);
+		header.writeTo(output);
+		
+		ChunkBuilder palette = new ChunkBuilder("PLTE", 8 * 3);
+		for (int i = 0; i < 8; i++) {
+			int argb = FrameRasterizer.getPaletteArgb(i);
+			palette.putByte(argb >> 16).putByte(argb >> 8).putByte(argb);
+		}
+		palette.writeTo(output);
+	}
+	
+	@NotNull
+	@Contract(pure = true)
+	private FrameRasterizer createRasterizer() {
+		return new FrameRasterizer(frameResolution, cellSize, padding);
+	}
+	
+	/**
+	 * Filters and compresses the specified indexed image, creating the contents of its data chunks.
+	 * Rows equal to the previous row are stored using the "Up" filter, the rest aren't filtered.
+	 */
+	@NotNull
+	@Contract(pure = true)
+	private byte[] compress(@NotNull byte[] pixels) {
+		byte[] filtered = new byte[imageSize * (rowLength + 1)];
+		for (int y = 0; y < imageSize; y++) {
+			int start = y * imageSize;
+			int target = y * (rowLength + 1);
+			if (y != 0 && isRowRepeated(pixels, start)) {
+				filtered[target] = FILTER_UP;
+				continue;
+			}
+			
+			filtered[target++] = FILTER_NONE;
+			for (int x = 0; x < imageSize; x += 2) {
+				int high = pixels[start + x] << 4;
+				filtered[target++] = (byte) (x + 1 < imageSize ? high | pixels[start + x + 1] : high);
+			}
+		}
+		
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(filtered);
+			deflater.finish();
+			ByteArrayOutputStream output = new ByteArrayOutputStream(filtered.length / 16 + 64);
+			byte[] buffer = new byte[Math.min(filtered.length + 64, 1 << 16)];
+			while (!deflater.finished()) {
+				output.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return output.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+	
+	@Contract(pure = true)
+	private boolean isRowRepeated(@NotNull byte[] pixels, int start) {
+		for (int i = start; i < start + imageSize; i++) {
+			if (pixels[i] != pixels[i - imageSize]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	
+	
+	private interface Rasterization<T> {
+		@NotNull
+		byte[] rasterize(@NotNull FrameRasterizer rasterizer, @NotNull T frame);
+	}
+	
+	
+	
+	/**
+	 * A fixed size PNG chunk: its data is filled in order, then its type, data and CRC are written at once.
+	 */
+	private static class ChunkBuilder {
+		private final byte[] bytes;
+		private int index;
+		
+		ChunkBuilder(@NotNull String type, int length) {
+			bytes = new byte[length + 12];
+			putInt(length);
+			System.arraycopy(type.getBytes(StandardCharsets.US_ASCII), 0, bytes, 4, 4);
+			index = 8;
+		}
+		
+		@NotNull
+		ChunkBuilder putByte(int value) {
+			bytes[index++] = (byte) value;
+			return this;
+		}
+		
+		@NotNull
+		ChunkBuilder putShort(int value) {
+			return putByte(value >> 8).putByte(value);
+		}
+		
+		@NotNull
+		ChunkBuilder putInt(int value) {
+			return putShort(value >> 16).putShort(value);
+		}
+		
+		@NotNull
+		ChunkBuilder putBytes(@NotNull byte[] value) {
+			System.arraycopy(value, 0, bytes, index, value.length);
+			index += value.length;
+			return this;
+		}
+		
+		void writeTo(@NotNull OutputStream output) throws IOException {
+			CRC32 crc = new CRC32();
+			crc.update(bytes, 4, index - 4);
+			int value = (int) crc.getValue();
+			putInt(value);
+			output.write(bytes, 0, index);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package hu.trigary.cmcm.library.utilities;
+
+import hu.trigary.cmcm.library.utilities.reedsolomon.ProductDecoder;
+import hu.trigary.cmcm.library.utilities.reedsolomon.ProductEncoder;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Maps the content chunks of a frame using the {@link FrameInfo.Layout#PRODUCT} layout to the product code's grid.
+ * Each row of the grid is a row of chunks in the frame, in the order they are written into the frame.
+ * The first and the last rows of the frame contain one less chunk than the others,
+ * their first grid cell is not transmitted and is always zero.
+ * In order for these cells to be payload cells, the last row of the frame is the second row of the grid,
+ * the column correction chunks are therefore stored in the rows right above the last row of the frame.
+ * Instances are immutable and thread-safe.
+ */
+public final class ProductLayout {
+	private final FrameInfo frameInfo;
+	private final int[] cellIndexes;
+	private final int[] dataCells;
+	
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param frameInfo the properties of the frames, its layout must be {@link FrameInfo.Layout#PRODUCT}
+	 */
+	public ProductLayout(@NotNull FrameInfo frameInfo) {
+		if (frameInfo.getLayout() != FrameInfo.Layout.PRODUCT) {
+			throw new IllegalArgumentException("frame info must use the product layout");
+		}
+		
+		this.frameInfo = frameInfo;
+		int size = frameInfo.getProductSize();
+		cellIndexes = new int[size * size];
+		for (int gridRow = 0; gridRow < size; gridRow++) {
+			int frameRow = gridRow == 0 ? 0 : gridRow == 1 ? size - 1 : gridRow - 1;
+			int start = frameRow == 0 ? -1 : frameRow == size - 1 ? size * size - size - 2 : frameRow * size - 1;
+			for (int column = 0; column < size; column++) {
+				boolean virtual = column == 0 && (frameRow == 0 || frameRow == size - 1);
+				cellIndexes[gridRow * size + column] = virtual ? -1 : start + column;
+			}
+		}
+		
+		dataCells = new int[frameInfo.getDataChunks()];
+		int dataColumns = size - frameInfo.getProductRowCorrections();
+		int dataRows = size - frameInfo.getProductColumnCorrections();
+		int index = 0;
+		for (int gridRow = 0; gridRow < dataRows; gridRow++) {
+			for (int column = 0; column < dataColumns; column++) {
+				int cell = gridRow * size + column;
+				if (cellIndexes[cell] != -1) {
+					dataCells[index++] = cell;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Creates the content chunks of a frame, in the order they are written into the frame.
+	 *
+	 * @param dataChunks the data chunks of the frame, its length must equal {@link FrameInfo#getDataChunks()}
+	 * @return the newly created content chunks
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public int[] encode(@NotNull int[] dataChunks) {
+		int size = frameInfo.getProductSize();
+		int[] grid = new int[cellIndexes.length];
+		for (int i = 0; i < dataCells.length; i++) {
+			grid[dataCells[i]] = dataChunks[i];
+		}
+		ProductEncoder.encode(grid, size, frameInfo.getProductRowCorrections(),
+				frameInfo.getProductColumnCorrections());
+		
+		int[] contentChunks = new int[frameInfo.getContentChunks()];
+		for (int cell = 0; cell < grid.length; cell++) {
+			if (cellIndexes[cell] != -1) {
+				contentChunks[cellIndexes[cell]] = grid[cell];
+			}
+		}
+		return contentChunks;
+	}
+	
+	/**
+	 * Creates a new decoder that operates directly on the content chunks of frames.
+	 * Decoders are not thread-safe, each thread should create its own.
+	 *
+	 * @return a new decoder instance
+	 */
+	@NotNull
+	@Contract(pure = true)
+	public ProductDecoder createDecoder() {
+		return new ProductDecoder(frameInfo.getProductSize(), frameInfo.getProductRowCorrections(),
+				frameInfo.getProductColumnCorrections(), cellIndexes);
+	}
+	
+	/**
+	 * Copies the data chunks out of the (decoded) content chunks of a frame.
+	 *
+	 * @param contentChunks the content chunks of a frame
+	 * @param target the array to copy into, its length must equal {@link FrameInfo#getDataChunks()}
+	 */
+	public void readDataChunks(@NotNull int[] contentChunks, @NotNull int[] target) {
+		for (int i = 0; i < dataCells.length; i++) {
+			target[i] = contentChunks[cellIndexes[dataCells[i]]];
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package hu.trigary.cmcm.library.utilities.reedsolomon;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Implements Reed-Solomon decoding of many blocks of the same size at once.
+ * The blocks are stored in a struct-of-arrays layout: chunk i of block f is at index {@code i * blockCount + f}.
+ * The syndromes of all blocks are calculated in a single sweep over this array,
+ * only the blocks that contain errors are copied out and decoded one by one.
+ * Instances contain all the workspaces the decoding needs, therefore
+ * {@link #decode(int[], int, long[])} makes no allocations.
+ * Instances are not thread-safe: each thread should have its own.
+ */
+public final class BatchReedSolomonDecoder {
+	private final int totalChunks;
+	private final int corrections;
+	private final int maxBlockCount;
+	private final ReedSolomonDecoder decoder;
+	private final int[] syndromes;
+	private final int[] exponents;
+	private final int[] rowLogs;
+	private final int[] block;
+	
+	/**
+	 * Creates a new instance that is able to decode batches of blocks of the specified size.
+	 *
+	 * @param totalChunks the count of payload and error correction chunks combined in each block
+	 * @param corrections the count of error correction chunks in each block
+	 * @param maxBlockCount the maximum count of blocks a single batch can contain
+	 */
+	public BatchReedSolomonDecoder(int totalChunks, int corrections, int maxBlockCount) {
+		if (maxBlockCount < 1) {
+			throw new IllegalArgumentException("batches must be able to contain at least one block");
+		}
+		
+		decoder = new ReedSolomonDecoder(totalChunks, corrections);
+		this.totalChunks = totalChunks;
+		this.corrections = corrections;
+		this.maxBlockCount = maxBlockCount;
+		syndromes = new int[corrections * maxBlockCount];
+		exponents = new int[corrections];
+		rowLogs = new int[maxBlockCount];
+		block = new int[totalChunks];
+	}
+	
+	/**
+	 * Attempts to detect and correct all errors in all blocks of the batch.
+	 * The correct values are written back into the array.
+	 * A block is only modified if its decoding was successful.
+	 *
+	 * @param chunks the array containing the blocks in the struct-of-arrays layout
+	 * @param blockCount the count of blocks in the batch
+	 * @param successes the bitmap to set the bits of the successfully decoded blocks in,
+	 * at least {@code (blockCount + 63) / 64} long; bit f is at {@code successes[f / 64] & (1L << f)}
+	 * @return the count of successfully decoded blocks
+	 */
+	public int decode(@NotNull int[] chunks, int blockCount, @NotNull long[] successes) {
+		if (blockCount < 1 || blockCount > maxBlockCount) {
+			throw new IllegalArgumentException("block count must be positive and must not exceed the maximum");
+		} else if (chunks.length < totalChunks * blockCount) {
+			throw new IllegalArgumentException("chunks array must contain all blocks");
+		} else if (successes.length * 64 < blockCount) {
+			throw new IllegalArgumentException("success bitmap must contain a bit for all blocks");
+		}
+		
+		calculateSyndromes(chunks, blockCount);
+		for (int i = 0; i < (blockCount + 63) / 64; i++) {
+			successes[i] = 0;
+		}
+		
+		int successCount = 0;
+		for (int f = 0; f < blockCount; f++) {
+			if (isCorrect(f, blockCount) || decodeBlock(chunks, f, blockCount)) {
+				successes[f >>> 6] |= 1L << f;
+				successCount++;
+			}
+		}
+		return successCount;
+	}
+	
+	/**
+	 * Calculates the syndromes of all blocks, see {@link SyndromeKernel}.
+	 * Exponents only depend on the chunk index and the root, therefore they are shared by all blocks.
+	 * Syndrome j of block f is stored at index {@code j * blockCount + f}.
+	 */
+	private void calculateSyndromes(@NotNull int[] chunks, int blockCount) {
+		for (int j = 0; j < corrections; j++) {
+			exponents[j] = (int) ((long) (j + 1) * totalChunks % (GaloisField.SIZE - 1));
+		}
+		int syndromeCount = corrections * blockCount;
+		for (int i = 0; i < syndromeCount; i++) {
+			syndromes[i] = 0;
+		}
+		
+		for (int i = 0; i < totalChunks; i++) {
+			int rowStart = i * blockCount;
+			boolean rowEmpty = true;
+			for (int f = 0; f < blockCount; f++) {
+				int chunk = chunks[rowStart + f];
+				rowLogs[f] = chunk == 0 ? -1 : GaloisField.log(chunk);
+				rowEmpty &= chunk == 0;
+			}
+			
+			for (int j = 0; j < corrections; j++) {
+				int exponent = exponents[j] - j - 1;
+				exponent = exponent < 0 ? exponent + GaloisField.SIZE - 1 : exponent;
+				exponents[j] = exponent;
+				if (rowEmpty) {
+					continue;
+				}
+				
+				int syndromeStart = j * blockCount;
+				for (int f = 0; f < blockCount; f++) {
+					int chunkLog = rowLogs[f];
+					if (chunkLog != -1) {
+						syndromes[syndromeStart + f] ^= GaloisField.exp(exponent + chunkLog);
+					}
+				}
+			}
+		}
+	}
+	
+	private boolean isCorrect(int blockIndex, int blockCount) {
+		for (int j = 0; j < corrections; j++) {
+			if (syndromes[j * blockCount + blockIndex] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private boolean decodeBlock(@NotNull int[] chunks, int blockIndex, int blockCount) {
+		for (int i = 0; i < totalChunks; i++) {
+			block[i] = chunks[i * blockCount + blockIndex];
+		}
+		
+		if (!decoder.decode(block, syndromes, blockIndex, blockCount)) {
+			return false;
+		}
+		
+		for (int i = 0; i < totalChunks; i++) {
+			chunks[i * blockCount + blockIndex] = block[i];
+		}
+		return true;
+	}
+}
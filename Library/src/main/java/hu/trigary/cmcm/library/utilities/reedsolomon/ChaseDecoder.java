@@ -0,0 +1,96 @@
+package hu.trigary.cmcm.library.utilities.reedsolomon;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Implements Chase-style soft-decision Reed-Solomon decoding:
+ * when regular decoding fails, a bounded amount of test patterns are tried,
+ * each of which substitutes the second most likely values of some of the least reliable chunks.
+ * Instances are bound to a specific block size and contain all the workspaces the decoding needs,
+ * therefore {@link #decode(int[], int[], int[], int)} makes no allocations.
+ * Instances are not thread-safe: each thread should have its own.
+ */
+public final class ChaseDecoder {
+	private static final int MAX_FLIPPED_POSITIONS = 30;
+	private final ReedSolomonDecoder decoder;
+	private final int corrections;
+	private final int maxTestPatterns;
+	private final int[] workChunks;
+	
+	/**
+	 * Creates a new instance that is able to decode blocks of the specified size.
+	 * Each test pattern costs about as much as a regular decode attempt,
+	 * therefore the maximum count of test patterns limits the CPU time a single decode can take.
+	 *
+	 * @param totalChunks the count of payload and error correction chunks combined
+	 * @param corrections the count of error correction chunks
+	 * @param maxTestPatterns the maximum count of decode attempts, including the regular, hard-decision attempt
+	 */
+	public ChaseDecoder(int totalChunks, int corrections, int maxTestPatterns) {
+		if (maxTestPatterns < 1) {
+			throw new IllegalArgumentException("must allow at least one test pattern");
+		}
+		
+		decoder = new ReedSolomonDecoder(totalChunks, corrections);
+		this.corrections = corrections;
+		this.maxTestPatterns = maxTestPatterns;
+		workChunks = new int[totalChunks];
+	}
+	
+	/**
+	 * Attempts to correct all errors in the payload chunks using the error correction chunks
+	 * and the specified alternative values of the unreliable chunks.
+	 * The following test patterns are tried in order, until one succeeds or the budget is exhausted:
+	 * <ol>
+	 * <li>the chunks as they are, without using the alternatives</li>
+	 * <li>the least reliable chunks treated as erasures: at most half as many as the count of correction chunks,
+	 * so that the remaining redundancy can still detect miscorrections</li>
+	 * <li>the least reliable chunks replaced by their alternative values, in all combinations,
+	 * the combinations that replace the least reliable chunks coming first</li>
+	 * </ol>
+	 * The correct values are written back into the array.
+	 * The array is only modified if the decoding was successful.
+	 *
+	 * @param chunks the array containing both the payload and the error correction chunks,
+	 * its length must equal the total chunk count specified in the constructor
+	 * @param positions the indexes of the unreliable chunks, the least reliable one first
+	 * @param alternatives the second most likely values of the unreliable chunks, in the same order as the positions
+	 * @param count the count of unreliable chunks to read from the position and alternative arrays
+	 * @return true if the decoding was successful, false if not all errors could be corrected
+	 */
+	public boolean decode(@NotNull int[] chunks, @NotNull int[] positions, @NotNull int[] alternatives, int count) {
+		if (chunks.length != workChunks.length) {
+			throw new IllegalArgumentException("chunks array length must equal the block size of this decoder");
+		}
+		
+		System.arraycopy(chunks, 0, workChunks, 0, chunks.length);
+		if (decoder.decode(workChunks)) {
+			return copyResult(chunks);
+		} else if (count == 0 || maxTestPatterns == 1) {
+			return false;
+		}
+		
+		if (decoder.decode(workChunks, positions, Math.min(count, corrections / 2))) {
+			return copyResult(chunks);
+		}
+		
+		int flipped = Math.min(count, MAX_FLIPPED_POSITIONS);
+		int patternBound = 1 << flipped;
+		int attempts = 2;
+		for (int pattern = 1; pattern < patternBound && attempts++ < maxTestPatterns; pattern++) {
+			for (int i = 0; i < flipped; i++) {
+				int position = positions[i];
+				workChunks[position] = (pattern & (1 << i)) == 0 ? chunks[position] : alternatives[i];
+			}
+			if (decoder.decode(workChunks)) {
+				return copyResult(chunks);
+			}
+		}
+		return false;
+	}
+	
+	private boolean copyResult(@NotNull int[] chunks) {
+		System.arraycopy(workChunks, 0, chunks, 0, chunks.length);
+		return true;
+	}
+}
@@ -36,7 +36,7 @@ final class GaloisField {
 	static final GaloisFieldPoly ZERO = new GaloisFieldPoly(new int[]{0});
 	static final GaloisFieldPoly ONE = new GaloisFieldPoly(new int[]{1});
 	private static final int PRIMITIVE = 0x1069;
-	private static final int[] EXP_TABLE = new int[SIZE];
+	private static final int[] EXP_TABLE = new int[2 * SIZE];
 	private static final int[] LOG_TABLE = new int[SIZE];
 	
 	static {
@@ -53,6 +53,11 @@ final class GaloisField {
 		for (int i = 0; i < SIZE - 1; i++) {
 			LOG_TABLE[EXP_TABLE[i]] = i;
 		}
+		
+		//the table is doubled so that the sum of two logarithms can be used as an index without a modulo
+		for (int i = SIZE; i < EXP_TABLE.length; i++) {
+			EXP_TABLE[i] = EXP_TABLE[i - (SIZE - 1)];
+		}
 	}
 	
 	private GaloisField() { }
@@ -85,6 +90,9 @@ final class GaloisField {
 	}
 	
 	/**
+	 * The parameter may be anything less than 2 * (size - 1),
+	 * therefore the sum of two logarithms can be passed without reducing it first.
+	 *
 	 * @return 2 to the power of a in GF(size)
 	 */
 	@Contract(pure = true)
@@ -92,6 +100,19 @@ final class GaloisField {
 		return EXP_TABLE[a];
 	}
 	
+	/**
+	 * Gets the table backing {@link #exp(int)}, meant to be used by vectorized code.
+	 * The returned value is not cloned, therefore must not be mutated.
+	 *
+	 * @return the table of the powers of 2, containing 2 * size elements
+	 */
+	@NotNull
+	@Contract(pure = true)
+	static int[] getExpTable() {
+		//noinspection AssignmentOrReturnOfFieldWithMutableType
+		return EXP_TABLE;
+	}
+	
 	/**
 	 * @return base 2 log of a in GF(size)
 	 */
@@ -119,6 +140,6 @@ final class GaloisField {
 	 */
 	@Contract(pure = true)
 	static int multiply(int a, int b) {
-		return a == 0 || b == 0 ? 0 : EXP_TABLE[(LOG_TABLE[a] + LOG_TABLE[b]) % (SIZE - 1)];
+		return a == 0 || b == 0 ? 0 : EXP_TABLE[LOG_TABLE[a] + LOG_TABLE[b]];
 	}
 }
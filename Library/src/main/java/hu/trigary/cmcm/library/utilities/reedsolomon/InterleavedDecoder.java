@@ -0,0 +1,263 @@
+package hu.trigary.cmcm.library.utilities.reedsolomon;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Implements Reed-Solomon decoding of frames whose content chunks are split into several interleaved codewords,
+ * as done by {@link InterleavedEncoder}.
+ * The codewords are decoded independently of each other: if there are multiple and an executor was specified,
+ * then they are decoded in parallel, using the calling thread and the executor.
+ * Instances are bound to a specific layout and contain the workspaces of all codewords,
+ * they are not thread-safe: each thread should have its own.
+ */
+public final class InterleavedDecoder {
+	private static final int MODE_ERRORS = 0;
+	private static final int MODE_ERASURES = 1;
+	private static final int MODE_SOFT_DECISION = 2;
+	private final Interleaving interleaving;
+	private final ReedSolomonDecoder[] decoders;
+	private final ChaseDecoder[] chaseDecoders;
+	private final int[][] codewords;
+	private final int maxTestPatterns;
+	private final Executor executor;
+	private final Runnable[] codewordTasks;
+	private final boolean[] results;
+	private final Phaser codewordsDecoded;
+	private int mode;
+	private boolean[][] erasureMasks;
+	private int[] erasureCounts;
+	private int[][] positions;
+	private int[][] alternatives;
+	private int[] counts;
+	
+	/**
+	 * Creates a new instance that is able to decode content chunks of the specified layout.
+	 * All codewords are decoded on the calling thread.
+	 *
+	 * @param payloadChunks the count of payload chunks in all codewords combined
+	 * @param corrections the count of error correction chunks in all codewords combined
+	 * @param codewordCount the count of codewords the chunks are split into
+	 * @param maxTestPatterns the maximum count of decode attempts per codeword when soft-decision decoding is used
+	 * @see ChaseDecoder#ChaseDecoder(int, int, int)
+	 */
+	public InterleavedDecoder(int payloadChunks, int corrections, int codewordCount, int maxTestPatterns) {
+		this(payloadChunks, corrections, codewordCount, maxTestPatterns, null);
+	}
+	
+	/**
+	 * Creates a new instance that is able to decode content chunks of the specified layout.
+	 * If the chunks are split into multiple codewords, then all but the first codeword are decoded on the executor,
+	 * while the calling thread decodes the first one and then waits for the others.
+	 * The executor should therefore not be one whose threads call this instance.
+	 *
+	 * @param payloadChunks the count of payload chunks in all codewords combined
+	 * @param corrections the count of error correction chunks in all codewords combined
+	 * @param codewordCount the count of codewords the chunks are split into
+	 * @param maxTestPatterns the maximum count of decode attempts per codeword when soft-decision decoding is used
+	 * @param executor the executor the codewords are decoded on in parallel
+	 * or null, if they should be decoded on the calling thread
+	 * @see ChaseDecoder#ChaseDecoder(int, int, int)
+	 */
+	public InterleavedDecoder(int payloadChunks, int corrections, int codewordCount, int maxTestPatterns,
+			@Nullable Executor executor) {
+		if (maxTestPatterns < 1) {
+			throw new IllegalArgumentException("must allow at least one test pattern");
+		}
+		
+		interleaving = new Interleaving(payloadChunks, corrections, codewordCount);
+		decoders = new ReedSolomonDecoder[codewordCount];
+		chaseDecoders = new ChaseDecoder[codewordCount];
+		codewords = new int[codewordCount][];
+		this.maxTestPatterns = maxTestPatterns;
+		this.executor = codewordCount == 1 ? null : executor;
+		codewordTasks = this.executor == null ? null : new Runnable[codewordCount];
+		results = new boolean[codewordCount];
+		codewordsDecoded = new Phaser(codewordCount);
+		for (int codeword = 0; codeword < codewordCount; codeword++) {
+			int total = interleaving.getTotalChunks(codeword);
+			decoders[codeword] = new ReedSolomonDecoder(total, interleaving.getCorrectionChunks(codeword));
+			codewords[codeword] = new int[total];
+			if (codewordTasks != null) {
+				int index = codeword;
+				codewordTasks[codeword] = () -> {
+					try {
+						results[index] = decodeCodeword(index);
+					} catch (RuntimeException e) {
+						results[index] = false; //the executor would swallow the exception
+					} finally {
+						codewordsDecoded.arrive();
+					}
+				};
+			}
+		}
+	}
+	
+	/**
+	 * Attempts to detect and correct all errors in each codeword.
+	 * The correct values are written back into the array.
+	 * The array is only modified if the decoding of all codewords was successful.
+	 *
+	 * @param chunks the content chunks: the payload chunks followed by the error correction chunks
+	 * @return true if the decoding was successful, false if not all errors could be corrected
+	 */
+	public boolean decode(@NotNull int[] chunks) {
+		return decode(chunks, MODE_ERRORS);
+	}
+	
+	/**
+	 * Attempts to correct all errors and erasures in each codeword.
+	 * The erased chunks are the ones whose value is true in the specified mask.
+	 * If a codeword contains more erased chunks than correction chunks,
+	 * then its mask is ignored and only regular decoding is attempted for it.
+	 * The correct values are written back into the array.
+	 * The array is only modified if the decoding of all codewords was successful.
+	 *
+	 * @param chunks the content chunks: the payload chunks followed by the error correction chunks
+	 * @param erasureMask the array whose element is true at the index of each erased chunk,
+	 * its length must equal the length of the chunk array
+	 * @return true if the decoding was successful, false if not all errors could be corrected
+	 * @see ReedSolomonDecoder#decode(int[], boolean[])
+	 */
+	public boolean decode(@NotNull int[] chunks, @NotNull boolean[] erasureMask) {
+		if (erasureMask.length != chunks.length) {
+			throw new IllegalArgumentException("erasure mask length must equal chunks array length");
+		}
+		
+		if (erasureMasks == null) {
+			erasureMasks = new boolean[codewords.length][];
+			erasureCounts = new int[codewords.length];
+			for (int codeword = 0; codeword < codewords.length; codeword++) {
+				erasureMasks[codeword] = new boolean[codewords[codeword].length];
+			}
+		}
+		
+		for (int codeword = 0; codeword < codewords.length; codeword++) {
+			erasureCounts[codeword] = 0;
+		}
+		for (int i = 0; i < erasureMask.length; i++) {
+			int codeword = interleaving.getCodeword(i);
+			erasureMasks[codeword][interleaving.getIndexInCodeword(i)] = erasureMask[i];
+			if (erasureMask[i]) {
+				erasureCounts[codeword]++;
+			}
+		}
+		
+		return decode(chunks, MODE_ERASURES);
+	}
+	
+	/**
+	 * Attempts to correct all errors in each codeword using soft-decision decoding.
+	 * The unreliable chunks are distributed among the codewords they belong to, keeping their order.
+	 * The correct values are written back into the array.
+	 * The array is only modified if the decoding of all codewords was successful.
+	 *
+	 * @param chunks the content chunks: the payload chunks followed by the error correction chunks
+	 * @param positions the indexes of the unreliable chunks, the least reliable one first
+	 * @param alternatives the second most likely values of the unreliable chunks, in the same order as the positions
+	 * @param count the count of unreliable chunks to read from the position and alternative arrays
+	 * @return true if the decoding was successful, false if not all errors could be corrected
+	 * @see ChaseDecoder#decode(int[], int[], int[], int)
+	 */
+	public boolean decode(@NotNull int[] chunks, @NotNull int[] positions, @NotNull int[] alternatives, int count) {
+		if (this.positions == null) {
+			this.positions = new int[codewords.length][];
+			this.alternatives = new int[codewords.length][];
+			counts = new int[codewords.length];
+			for (int codeword = 0; codeword < codewords.length; codeword++) {
+				int total = codewords[codeword].length;
+				chaseDecoders[codeword] = new ChaseDecoder(total,
+						interleaving.getCorrectionChunks(codeword), maxTestPatterns);
+				this.positions[codeword] = new int[total];
+				this.alternatives[codeword] = new int[total];
+			}
+		}
+		
+		for (int codeword = 0; codeword < codewords.length; codeword++) {
+			counts[codeword] = 0;
+		}
+		for (int i = 0; i < count; i++) {
+			int codeword = interleaving.getCodeword(positions[i]);
+			int index = counts[codeword]++;
+			this.positions[codeword][index] = interleaving.getIndexInCodeword(positions[i]);
+			this.alternatives[codeword][index] = alternatives[i];
+		}
+		
+		return decode(chunks, MODE_SOFT_DECISION);
+	}
+	
+	private boolean decode(@NotNull int[] chunks, int mode) {
+		if (chunks.length != interleaving.getContentChunks()) {
+			throw new IllegalArgumentException("chunks array length must equal the content chunk count of this decoder");
+		}
+		
+		for (int codeword = 0; codeword < codewords.length; codeword++) {
+			interleaving.gather(chunks, codeword, codewords[codeword]);
+		}
+		
+		this.mode = mode;
+		if (!(executor == null ? decodeCodewords() : decodeCodewordsInParallel())) {
+			return false;
+		}
+		
+		for (int codeword = 0; codeword < codewords.length; codeword++) {
+			interleaving.scatter(codewords[codeword], codeword, chunks);
+		}
+		return true;
+	}
+	
+	private boolean decodeCodewords() {
+		for (int codeword = 0; codeword < codewords.length; codeword++) {
+			if (!decodeCodeword(codeword)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Decodes the first codeword on the calling thread and the others on the executor.
+	 * Codewords the executor rejects are decoded on the calling thread as well.
+	 * Codewords whose decoding threw an exception on the executor count as failed,
+	 * the calling thread always waits for all tasks, even if decoding the first codeword throws.
+	 */
+	private boolean decodeCodewordsInParallel() {
+		for (int codeword = 1; codeword < codewords.length; codeword++) {
+			results[codeword] = false;
+			try {
+				executor.execute(codewordTasks[codeword]);
+			} catch (RejectedExecutionException e) {
+				codewordTasks[codeword].run();
+			}
+		}
+		
+		boolean decoded;
+		try {
+			decoded = decodeCodeword(0);
+		} finally {
+			codewordsDecoded.arriveAndAwaitAdvance();
+		}
+		for (int codeword = 1; codeword < codewords.length; codeword++) {
+			decoded &= results[codeword];
+		}
+		return decoded;
+	}
+	
+	private boolean decodeCodeword(int codeword) {
+		switch (mode) {
+			case MODE_ERRORS:
+				return decoders[codeword].decode(codewords[codeword]);
+			case MODE_ERASURES:
+				return erasureCounts[codeword] > interleaving.getCorrectionChunks(codeword)
+						? decoders[codeword].decode(codewords[codeword])
+						: decoders[codeword].decode(codewords[codeword], erasureMasks[codeword]);
+			default:
+				return chaseDecoders[codeword].decode(codewords[codeword],
+						positions[codeword], alternatives[codeword], counts[codeword]);
+		}
+	}
+}
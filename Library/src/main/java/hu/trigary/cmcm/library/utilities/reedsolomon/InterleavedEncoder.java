@@ -0,0 +1,44 @@
+package hu.trigary.cmcm.library.utilities.reedsolomon;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Implements Reed-Solomon encoding of payloads that do not fit into a single codeword:
+ * the payload and correction chunks are split into several interleaved codewords,
+ * consecutive chunks belonging to consecutive codewords.
+ * Each codeword is encoded independently using {@link ReedSolomonEncoder}.
+ */
+public final class InterleavedEncoder {
+	private InterleavedEncoder() { }
+	
+	/**
+	 * Generates error correction values into the specified array based on the specified payload,
+	 * using the specified count of interleaved codewords.
+	 * The payload chunk at index {@code i} belongs to codeword {@code i % codewordCount},
+	 * the same applies to the correction chunks.
+	 * If only a single codeword is used, then this is equivalent to {@link ReedSolomonEncoder#encode(int[], int[])}.
+	 *
+	 * @param payload the chunks to encrypt
+	 * @param corrections the array to fill with the correction chunks (all elements are overwritten internally)
+	 * @param codewordCount the count of codewords to split the chunks into
+	 */
+	public static void encode(@NotNull int[] payload, @NotNull int[] corrections, int codewordCount) {
+		if (codewordCount == 1) {
+			ReedSolomonEncoder.encode(payload, corrections);
+			return;
+		}
+		
+		Interleaving interleaving = new Interleaving(payload.length, corrections.length, codewordCount);
+		for (int codeword = 0; codeword < codewordCount; codeword++) {
+			int[] codewordPayload = new int[interleaving.getDataChunks(codeword)];
+			int[] codewordCorrections = new int[interleaving.getCorrectionChunks(codeword)];
+			for (int i = 0; i < codewordPayload.length; i++) {
+				codewordPayload[i] = payload[codeword + i * codewordCount];
+			}
+			ReedSolomonEncoder.encode(codewordPayload, codewordCorrections);
+			for (int i = 0; i < codewordCorrections.length; i++) {
+				corrections[codeword + i * codewordCount] = codewordCorrections[i];
+			}
+		}
+	}
+}
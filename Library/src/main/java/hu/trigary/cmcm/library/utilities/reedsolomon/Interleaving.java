@@ -0,0 +1,98 @@
+package hu.trigary.cmcm.library.utilities.reedsolomon;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Describes how the content chunks of a frame are split into several Reed-Solomon codewords.
+ * The content chunks are the data chunks followed by the correction chunks.
+ * Data chunk {@code i} belongs to codeword {@code i % codewordCount} and the same applies to the correction chunks,
+ * therefore a localized burst of errors is spread across all codewords instead of exhausting a single one.
+ */
+final class Interleaving {
+	private final int dataChunks;
+	private final int correctionChunks;
+	private final int codewordCount;
+	
+	Interleaving(int dataChunks, int correctionChunks, int codewordCount) {
+		if (codewordCount < 1) {
+			throw new IllegalArgumentException("must be at least one codeword");
+		} else if (dataChunks < codewordCount || correctionChunks < 2 * codewordCount) {
+			throw new IllegalArgumentException("each codeword must have payload and at least two correction chunks");
+		}
+		
+		this.dataChunks = dataChunks;
+		this.correctionChunks = correctionChunks;
+		this.codewordCount = codewordCount;
+	}
+	
+	@Contract(pure = true)
+	int getCodewordCount() {
+		return codewordCount;
+	}
+	
+	@Contract(pure = true)
+	int getContentChunks() {
+		return dataChunks + correctionChunks;
+	}
+	
+	@Contract(pure = true)
+	int getDataChunks(int codeword) {
+		return dataChunks / codewordCount + (codeword < dataChunks % codewordCount ? 1 : 0);
+	}
+	
+	@Contract(pure = true)
+	int getCorrectionChunks(int codeword) {
+		return correctionChunks / codewordCount + (codeword < correctionChunks % codewordCount ? 1 : 0);
+	}
+	
+	@Contract(pure = true)
+	int getTotalChunks(int codeword) {
+		return getDataChunks(codeword) + getCorrectionChunks(codeword);
+	}
+	
+	@Contract(pure = true)
+	int getCodeword(int contentIndex) {
+		return (contentIndex < dataChunks ? contentIndex : contentIndex - dataChunks) % codewordCount;
+	}
+	
+	@Contract(pure = true)
+	int getIndexInCodeword(int contentIndex) {
+		return contentIndex < dataChunks ? contentIndex / codewordCount
+				: getDataChunks(getCodeword(contentIndex)) + (contentIndex - dataChunks) / codewordCount;
+	}
+	
+	/**
+	 * Copies the chunks of the specified codeword from the content chunks into the target array.
+	 *
+	 * @param content the content chunks of the frame
+	 * @param codeword the index of the codeword to copy
+	 * @param target the array to copy into, its length must equal the total chunk count of the codeword
+	 */
+	void gather(@NotNull int[] content, int codeword, @NotNull int[] target) {
+		int data = getDataChunks(codeword);
+		for (int i = 0; i < data; i++) {
+			target[i] = content[codeword + i * codewordCount];
+		}
+		for (int i = data; i < target.length; i++) {
+			target[i] = content[dataChunks + codeword + (i - data) * codewordCount];
+		}
+	}
+	
+	/**
+	 * Copies the chunks of the specified codeword back into the content chunks.
+	 *
+	 * @param source the chunks of the codeword
+	 * @param codeword the index of the codeword to copy
+	 * @param content the content chunks of the frame
+	 */
+	void scatter(@NotNull int[] source, int codeword, @NotNull int[] content) {
+		int data = getDataChunks(codeword);
+		for (int i = 0; i < data; i++) {
+			content[codeword + i * codewordCount] = source[i];
+		}
+		for (int i = data; i < source.length; i++) {
+			content[dataChunks + codeword + (i - data) * codewordCount] = source[i];
+		}
+	}
+}
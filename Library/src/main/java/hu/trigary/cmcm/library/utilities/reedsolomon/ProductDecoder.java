@@ -0,0 +1,193 @@
+package hu.trigary.cmcm.library.utilities.reedsolomon;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Implements iterative decoding of two-dimensional Reed-Solomon product codes, as created by {@link ProductEncoder}.
+ * The rows and the columns are decoded alternately until the grid converges:
+ * the rows that could not be corrected are treated as erasures while decoding the columns and vice versa,
+ * therefore error patterns like whole corrupted rows are correctable as well.
+ * The chunks do not need to be stored in grid order: the constructor receives the index of each grid cell.
+ * Instances are not thread-safe: each thread should have its own.
+ */
+public final class ProductDecoder {
+	private static final int MAX_ITERATIONS = 8;
+	private final int rowLength;
+	private final int rowCount;
+	private final int rowCorrections;
+	private final int columnCorrections;
+	private final int[] cellIndexes;
+	private final ReedSolomonDecoder rowDecoder;
+	private final ReedSolomonDecoder columnDecoder;
+	private final int[] grid;
+	private final int[] row;
+	private final int[] column;
+	private final int[] erasures;
+	private final boolean[] failedRows;
+	private final boolean[] failedColumns;
+	
+	/**
+	 * Creates a new instance that is able to decode the product code with the specified properties.
+	 * The cell indexes array contains the index in the chunk array of each grid cell, row by row.
+	 * A cell index of -1 signals a cell that is not stored in the chunk array, its value is known to be 0:
+	 * such cells must be payload cells.
+	 *
+	 * @param rowLength the count of chunks in a row
+	 * @param rowCorrections the count of correction chunks at the end of each row
+	 * @param columnCorrections the count of correction chunks at the end of each column
+	 * @param cellIndexes the index in the chunk array of each grid cell or -1, the array is not copied
+	 */
+	public ProductDecoder(int rowLength, int rowCorrections, int columnCorrections, @NotNull int[] cellIndexes) {
+		if (rowLength <= 0 || cellIndexes.length % rowLength != 0) {
+			throw new IllegalArgumentException("cell count must be a multiple of the row length");
+		}
+		
+		this.rowLength = rowLength;
+		rowCount = cellIndexes.length / rowLength;
+		this.rowCorrections = rowCorrections;
+		this.columnCorrections = columnCorrections;
+		this.cellIndexes = cellIndexes;
+		rowDecoder = new ReedSolomonDecoder(rowLength, rowCorrections);
+		columnDecoder = new ReedSolomonDecoder(rowCount, columnCorrections);
+		grid = new int[cellIndexes.length];
+		row = new int[rowLength];
+		column = new int[rowCount];
+		erasures = new int[Math.max(rowLength, rowCount)];
+		failedRows = new boolean[rowCount];
+		failedColumns = new boolean[rowLength];
+	}
+	
+	/**
+	 * Attempts to detect and correct all errors in the product code.
+	 * The correct values are written back into the array.
+	 * The array is only modified if the decoding was successful.
+	 *
+	 * @param chunks the array containing the chunks of the grid cells
+	 * @return true if the decoding was successful, false if not all errors could be corrected
+	 */
+	public boolean decode(@NotNull int[] chunks) {
+		return decode(chunks, null);
+	}
+	
+	/**
+	 * Attempts to detect and correct all errors in the product code.
+	 * The chunks marked in the erasure mask are treated as erasures during the first decoding of their rows,
+	 * unless a row contains more marked chunks than correction chunks.
+	 * The correct values are written back into the array.
+	 * The array is only modified if the decoding was successful.
+	 *
+	 * @param chunks the array containing the chunks of the grid cells
+	 * @param erasureMask the array whose element is true at the index of each erased chunk or null
+	 * @return true if the decoding was successful, false if not all errors could be corrected
+	 */
+	public boolean decode(@NotNull int[] chunks, @Nullable boolean[] erasureMask) {
+		if (erasureMask != null && erasureMask.length != chunks.length) {
+			throw new IllegalArgumentException("erasure mask length must equal chunks array length");
+		}
+		
+		for (int cell = 0; cell < grid.length; cell++) {
+			int index = cellIndexes[cell];
+			grid[cell] = index == -1 ? 0 : chunks[index];
+		}
+		
+		for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+			int rowFailures = 0;
+			boolean rowsChanged = false;
+			for (int r = 0; r < rowCount; r++) {
+				int offset = r * rowLength;
+				System.arraycopy(grid, offset, row, 0, rowLength);
+				int erasureCount = iteration == 0 ? collectMaskErasures(erasureMask, offset)
+						: collectErasures(failedColumns, rowCorrections);
+				failedRows[r] = !decode(rowDecoder, row, erasureCount);
+				if (failedRows[r]) {
+					rowFailures++;
+				} else {
+					for (int i = 0; i < rowLength; i++) {
+						if (grid[offset + i] != row[i]) {
+							grid[offset + i] = row[i];
+							rowsChanged = true;
+						}
+					}
+				}
+			}
+			
+			int columnFailures = 0;
+			boolean columnsChanged = false;
+			for (int c = 0; c < rowLength; c++) {
+				for (int i = 0; i < rowCount; i++) {
+					column[i] = grid[c + i * rowLength];
+				}
+				failedColumns[c] = !decode(columnDecoder, column, collectErasures(failedRows, columnCorrections));
+				if (failedColumns[c]) {
+					columnFailures++;
+				} else {
+					for (int i = 0; i < rowCount; i++) {
+						if (grid[c + i * rowLength] != column[i]) {
+							grid[c + i * rowLength] = column[i];
+							columnsChanged = true;
+						}
+					}
+				}
+			}
+			
+			if (rowFailures == 0 && columnFailures == 0 && !columnsChanged) {
+				return copyResult(chunks);
+			} else if (!rowsChanged && !columnsChanged) {
+				return false; //no progress is made anymore
+			}
+		}
+		return false;
+	}
+	
+	private int collectMaskErasures(@Nullable boolean[] erasureMask, int offset) {
+		if (erasureMask == null) {
+			return 0;
+		}
+		
+		int count = 0;
+		for (int i = 0; i < rowLength; i++) {
+			int index = cellIndexes[offset + i];
+			if (index != -1 && erasureMask[index]) {
+				if (count == rowCorrections) {
+					return 0;
+				}
+				erasures[count++] = i;
+			}
+		}
+		return count;
+	}
+	
+	private int collectErasures(@NotNull boolean[] failed, int corrections) {
+		int count = 0;
+		for (int i = 0; i < failed.length; i++) {
+			if (failed[i]) {
+				if (count == corrections) {
+					return 0;
+				}
+				erasures[count++] = i;
+			}
+		}
+		return count;
+	}
+	
+	private boolean decode(@NotNull ReedSolomonDecoder decoder, @NotNull int[] chunks, int erasureCount) {
+		return decoder.decode(chunks, erasures, erasureCount) || erasureCount != 0 && decoder.decode(chunks);
+	}
+	
+	private boolean copyResult(@NotNull int[] chunks) {
+		for (int cell = 0; cell < grid.length; cell++) {
+			if (cellIndexes[cell] == -1 && grid[cell] != 0) {
+				return false; //a cell known to be zero was miscorrected
+			}
+		}
+		
+		for (int cell = 0; cell < grid.length; cell++) {
+			int index = cellIndexes[cell];
+			if (index != -1) {
+				chunks[index] = grid[cell];
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,52 @@
+package hu.trigary.cmcm.library.utilities.reedsolomon;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Implements the encoding of two-dimensional Reed-Solomon product codes:
+ * each row of a grid of chunks is a codeword and so is each column.
+ * The payload chunks are in the top-left corner of the grid, the row correction chunks are at the end of the rows
+ * and the column correction chunks are in the bottom rows.
+ * The bottom-right corner contains checks on checks, which are valid both as row and as column correction chunks.
+ */
+public final class ProductEncoder {
+	private ProductEncoder() { }
+	
+	/**
+	 * Generates the error correction values of the specified grid, whose payload chunks must already be set.
+	 * The grid is stored row by row.
+	 *
+	 * @param grid the grid of chunks, its correction chunks are overwritten
+	 * @param rowLength the count of chunks in a row
+	 * @param rowCorrections the count of correction chunks at the end of each row
+	 * @param columnCorrections the count of correction chunks at the end of each column
+	 */
+	public static void encode(@NotNull int[] grid, int rowLength, int rowCorrections, int columnCorrections) {
+		if (rowLength <= 0 || grid.length % rowLength != 0) {
+			throw new IllegalArgumentException("grid length must be a multiple of the row length");
+		}
+		
+		int rowCount = grid.length / rowLength;
+		int payloadRows = rowCount - columnCorrections;
+		int[] payload = new int[rowLength - rowCorrections];
+		int[] corrections = new int[rowCorrections];
+		for (int row = 0; row < payloadRows; row++) {
+			int offset = row * rowLength;
+			System.arraycopy(grid, offset, payload, 0, payload.length);
+			ReedSolomonEncoder.encode(payload, corrections);
+			System.arraycopy(corrections, 0, grid, offset + payload.length, corrections.length);
+		}
+		
+		payload = new int[payloadRows];
+		corrections = new int[columnCorrections];
+		for (int column = 0; column < rowLength; column++) {
+			for (int row = 0; row < payloadRows; row++) {
+				payload[row] = grid[column + row * rowLength];
+			}
+			ReedSolomonEncoder.encode(payload, corrections);
+			for (int i = 0; i < columnCorrections; i++) {
+				grid[column + (payloadRows + i) * rowLength] = corrections[i];
+			}
+		}
+	}
+}
@@ -20,163 +20,369 @@
 
 package hu.trigary.cmcm.library.utilities.reedsolomon;
 
-import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
 /**
  * Implements Reed-Solomon decoding: given an array containing the payload chunks and the error correction chunks,
  * it tries to decode and error correct these.
+ * Instances are bound to a specific block size and contain all the workspaces the decoding needs,
+ * therefore {@link #decode(int[])} makes no allocations.
+ * Instances are not thread-safe: each thread should have its own.
  */
 public final class ReedSolomonDecoder {
+	private final int totalChunks;
+	private final int corrections;
+	private final int[] syndromes;
+	private final int[] syndromeExponents;
+	private final int[] errorEvaluator;
+	private final int[] termLogs;
+	private final int[] errorPositions;
+	private final int[] errorMagnitudes;
+	private final int[] erasureBuffer;
+	private int[] errorLocator;
+	private int[] previousLocator;
+	private int[] tempLocator;
 	
-	private ReedSolomonDecoder() { }
+	/**
+	 * Creates a new instance that is able to decode blocks of the specified size.
+	 *
+	 * @param totalChunks the count of payload and error correction chunks combined
+	 * @param corrections the count of error correction chunks
+	 */
+	public ReedSolomonDecoder(int totalChunks, int corrections) {
+		if (totalChunks <= corrections) {
+			throw new IllegalArgumentException("must be more total chunks than error correction chunks");
+		} else if (corrections < 2) {
+			throw new IllegalArgumentException("must be at least two error correction chunks");
+		} else if (totalChunks >= GaloisField.SIZE) {
+			throw new IllegalArgumentException("block size limit mustn't be crossed");
+		}
+		
+		this.totalChunks = totalChunks;
+		this.corrections = corrections;
+		syndromes = new int[corrections];
+		syndromeExponents = new int[corrections];
+		errorEvaluator = new int[corrections];
+		termLogs = new int[corrections + 1];
+		errorPositions = new int[corrections];
+		errorMagnitudes = new int[corrections];
+		erasureBuffer = new int[corrections];
+		errorLocator = new int[corrections + 1];
+		previousLocator = new int[corrections + 1];
+		tempLocator = new int[corrections + 1];
+	}
 	
 	/**
 	 * Attempts to detect and correct all errors in the payload chunks using the error correction chunks.
 	 * The correct values are written back into the array.
+	 * This method creates a new decoder instance on each invocation:
+	 * callers decoding many blocks should reuse an instance instead.
 	 *
 	 * @param chunks the array containing both the payload and the error correction chunks
 	 * @param corrections the count of error correction chunks
 	 * @return true if the decoding was successful, false if not all errors could be corrected
 	 */
 	public static boolean decode(@NotNull int[] chunks, int corrections) {
-		if (chunks.length <= corrections) {
-			throw new IllegalArgumentException("must be more total chunks than error correction chunks");
-		} else if (corrections < 2) {
-			throw new IllegalArgumentException("must be at least two error correction chunks");
-		} else if (chunks.length >= GaloisField.SIZE) {
-			throw new IllegalArgumentException("block size limit mustn't be crossed");
+		return new ReedSolomonDecoder(chunks.length, corrections).decode(chunks);
+	}
+	
+	/**
+	 * Attempts to correct all errors and erasures in the payload chunks using the error correction chunks.
+	 * The correct values are written back into the array.
+	 * This method creates a new decoder instance on each invocation:
+	 * callers decoding many blocks should reuse an instance instead.
+	 *
+	 * @param chunks the array containing both the payload and the error correction chunks
+	 * @param corrections the count of error correction chunks
+	 * @param erasures the distinct indexes of the chunks whose values are known to be unreliable
+	 * @return true if the decoding was successful, false if not all errors could be corrected
+	 * @see #decode(int[], int[], int)
+	 */
+	public static boolean decode(@NotNull int[] chunks, int corrections, @NotNull int[] erasures) {
+		return new ReedSolomonDecoder(chunks.length, corrections).decode(chunks, erasures, erasures.length);
+	}
+	
+	/**
+	 * Attempts to detect and correct all errors in the payload chunks using the error correction chunks.
+	 * The correct values are written back into the array.
+	 * The array is only modified if the decoding was successful.
+	 *
+	 * @param chunks the array containing both the payload and the error correction chunks,
+	 * its length must equal the total chunk count specified in the constructor
+	 * @return true if the decoding was successful, false if not all errors could be corrected
+	 */
+	public boolean decode(@NotNull int[] chunks) {
+		return decode(chunks, erasureBuffer, 0);
+	}
+	
+	/**
+	 * Attempts to correct all errors and erasures in the payload chunks using the error correction chunks.
+	 * An erasure is a chunk whose position is known to be unreliable, its value is ignored.
+	 * Correcting an erasure costs one correction chunk while correcting an unknown error costs two,
+	 * therefore decoding succeeds as long as {@code 2 * errors + erasures <= corrections}.
+	 * The correct values are written back into the array.
+	 * The array is only modified if the decoding was successful.
+	 *
+	 * @param chunks the array containing both the payload and the error correction chunks,
+	 * its length must equal the total chunk count specified in the constructor
+	 * @param erasures the array containing the distinct indexes of the erased chunks
+	 * @param erasureCount the count of indexes to read from the erasure array
+	 * @return true if the decoding was successful, false if not all errors could be corrected
+	 */
+	public boolean decode(@NotNull int[] chunks, @NotNull int[] erasures, int erasureCount) {
+		if (chunks.length != totalChunks) {
+			throw new IllegalArgumentException("chunks array length must equal the block size of this decoder");
 		}
 		
-		GaloisFieldPoly poly = new GaloisFieldPoly(chunks);
-		int[] syndromeCoefficients = new int[corrections];
-		
-		boolean noError = true;
-		for (int i = 1; i <= corrections; i++) {
-			int eval = poly.evaluateAt(GaloisField.exp(i));
-			syndromeCoefficients[syndromeCoefficients.length - i] = eval;
-			//noinspection IfStatementMissingBreakInLoop - IntelliJ is being stupid
-			if (eval != 0) {
-				noError = false;
-			}
+		if (erasureCount > corrections) {
+			return false;
 		}
-		if (noError) {
+		
+		if (!SyndromeKernel.calculate(chunks, syndromes, syndromeExponents)) {
 			return true;
 		}
-		
-		GaloisFieldPoly[] sigmaOmega = runEuclideanAlgorithm(GaloisField.buildMonomial(corrections, 1),
-				new GaloisFieldPoly(syndromeCoefficients), corrections);
-		if (sigmaOmega == null) {
+		return correct(chunks, erasures, erasureCount);
+	}
+	
+	/**
+	 * Attempts to correct all errors in the payload chunks, using syndromes that have already been calculated.
+	 * The syndromes are read from a strided array: syndrome j is at index {@code offset + j * stride}.
+	 * At least one of the syndromes must be non-zero.
+	 *
+	 * @param chunks the array containing both the payload and the error correction chunks,
+	 * its length must equal the total chunk count specified in the constructor
+	 * @param stridedSyndromes the array containing the syndromes of the chunks
+	 * @param offset the index of the first syndrome
+	 * @param stride the distance between two consecutive syndromes
+	 * @return true if the decoding was successful, false if not all errors could be corrected
+	 */
+	boolean decode(@NotNull int[] chunks, @NotNull int[] stridedSyndromes, int offset, int stride) {
+		for (int j = 0; j < corrections; j++) {
+			syndromes[j] = stridedSyndromes[offset + j * stride];
+		}
+		return correct(chunks, erasureBuffer, 0);
+	}
+	
+	private boolean correct(@NotNull int[] chunks, @NotNull int[] erasures, int erasureCount) {
+		int errorCount = runBerlekampMassey(erasures, erasureCount);
+		if (errorCount == -1) {
 			return false;
 		}
 		
-		int[] errorLocations = findErrorLocations(sigmaOmega[0]);
-		if (errorLocations == null) {
+		calculateErrorEvaluator(errorCount);
+		if (!findErrors(errorCount, erasureCount != 0)) {
 			return false;
 		}
 		
-		int[] errorMagnitudes = findErrorMagnitudes(sigmaOmega[1], errorLocations);
-		for (int i = 0; i < errorLocations.length; i++) {
-			int position = chunks.length - 1 - GaloisField.log(errorLocations[i]);
-			if (position < 0) {
-				return false;
-			}
-			chunks[position] = GaloisField.addOrSubtract(chunks[position], errorMagnitudes[i]);
+		for (int i = 0; i < errorCount; i++) {
+			chunks[errorPositions[i]] ^= errorMagnitudes[i];
 		}
 		return true;
 	}
 	
-	@Nullable
-	@Contract(pure = true)
-	private static GaloisFieldPoly[] runEuclideanAlgorithm(@NotNull GaloisFieldPoly a, @NotNull GaloisFieldPoly b, int R) {
-		if (a.getDegree() < b.getDegree()) {
-			GaloisFieldPoly temp = a;
-			a = b;
-			b = temp;
+	/**
+	 * Attempts to correct all errors and erasures in the payload chunks using the error correction chunks.
+	 * The erased chunks are the ones whose value is true in the specified mask.
+	 * If more chunks are marked than the count of correction chunks, then decoding fails.
+	 *
+	 * @param chunks the array containing both the payload and the error correction chunks,
+	 * its length must equal the total chunk count specified in the constructor
+	 * @param erasureMask the array whose element is true at the index of each erased chunk,
+	 * its length must equal the length of the chunk array
+	 * @return true if the decoding was successful, false if not all errors could be corrected
+	 * @see #decode(int[], int[], int)
+	 */
+	public boolean decode(@NotNull int[] chunks, @NotNull boolean[] erasureMask) {
+		if (erasureMask.length != totalChunks) {
+			throw new IllegalArgumentException("erasure mask length must equal the block size of this decoder");
 		}
 		
-		GaloisFieldPoly rLast = a;
-		GaloisFieldPoly r = b;
-		GaloisFieldPoly tLast = GaloisField.ZERO;
-		GaloisFieldPoly t = GaloisField.ONE;
-		
-		// Run Euclidean algorithm until r's degree is less than R/2
-		while (r.getDegree() >= R / 2) {
-			GaloisFieldPoly rLastLast = rLast;
-			GaloisFieldPoly tLastLast = tLast;
-			rLast = r;
-			tLast = t;
-			
-			// Divide rLastLast by rLast, with quotient in q and remainder in r
-			if (rLast.isZero()) {
-				throw new IllegalStateException("r_{i-1} was zero, Euclidean algorithm already terminated?");
-				//originally ReedSolomonException, but was never able to reproduce
+		int count = 0;
+		for (int i = 0; i < erasureMask.length; i++) {
+			if (erasureMask[i]) {
+				if (count == corrections) {
+					return false;
+				}
+				erasureBuffer[count++] = i;
+			}
+		}
+		return decode(chunks, erasureBuffer, count);
+	}
+	
+	/**
+	 * Calculates the error locator polynomial (stored lowest degree first) from the syndromes.
+	 * If erasures are specified, then the algorithm is started from the erasure locator polynomial,
+	 * therefore the result locates both the erasures and the errors.
+	 *
+	 * @return the degree of the error locator polynomial (aka the error and erasure count)
+	 * or -1 if too many errors occurred
+	 */
+	private int runBerlekampMassey(@NotNull int[] erasures, int erasureCount) {
+		int[] locator = errorLocator;
+		int[] previous = previousLocator;
+		int[] temp = tempLocator;
+		clear(locator);
+		locator[0] = 1;
+		for (int e = 0; e < erasureCount; e++) {
+			int position = erasures[e];
+			if (position < 0 || position >= totalChunks) {
+				throw new IllegalArgumentException("erasure positions must be valid chunk indexes");
 			}
 			
-			r = rLastLast;
-			GaloisFieldPoly q = GaloisField.ZERO;
-			int dltInverse = GaloisField.inverse(rLast.getCoefficient(rLast.getDegree()));
+			//multiply by (1 + 2^(n-1-p) * x)
+			int locationLog = totalChunks - 1 - position;
+			for (int i = e + 1; i > 0; i--) {
+				if (locator[i - 1] != 0) {
+					locator[i] ^= GaloisField.exp(GaloisField.log(locator[i - 1]) + locationLog);
+				}
+			}
+		}
+		System.arraycopy(locator, 0, previous, 0, locator.length);
+		
+		int length = erasureCount;
+		int shift = 1;
+		int previousDiscrepancy = 1;
+		for (int r = erasureCount; r < corrections; r++) {
+			int discrepancy = syndromes[r];
+			for (int i = 1; i <= length; i++) {
+				discrepancy ^= GaloisField.multiply(locator[i], syndromes[r - i]);
+			}
 			
-			while (r.getDegree() >= rLast.getDegree() && !r.isZero()) {
-				int degreeDiff = r.getDegree() - rLast.getDegree();
-				int scale = GaloisField.multiply(r.getCoefficient(r.getDegree()), dltInverse);
-				q = q.addOrSubtract(GaloisField.buildMonomial(degreeDiff, scale));
-				r = r.addOrSubtract(rLast.multiplyByMonomial(degreeDiff, scale));
+			if (discrepancy == 0) {
+				shift++;
+				continue;
 			}
 			
-			t = q.multiply(tLast).addOrSubtract(tLastLast);
-			if (r.getDegree() >= rLast.getDegree()) {
-				throw new IllegalStateException("Failed to reduce polynomial, is correction chunk count less than two?");
+			int scale = GaloisField.multiply(discrepancy, GaloisField.inverse(previousDiscrepancy));
+			if (2 * length <= r + erasureCount) {
+				System.arraycopy(locator, 0, temp, 0, locator.length);
+				subtractShifted(locator, previous, scale, shift);
+				length = r + 1 + erasureCount - length;
+				int[] swap = previous;
+				previous = temp;
+				temp = swap;
+				previousDiscrepancy = discrepancy;
+				shift = 1;
+			} else {
+				subtractShifted(locator, previous, scale, shift);
+				shift++;
 			}
 		}
 		
-		int sigmaTildeAtZero = t.getCoefficient(0);
-		if (sigmaTildeAtZero == 0) {
-			return null;
+		errorLocator = locator;
+		previousLocator = previous;
+		tempLocator = temp;
+		return 2 * length - erasureCount > corrections || locator[length] == 0 ? -1 : length;
+	}
+	
+	/**
+	 * Sets target to target - scale * x^shift * source.
+	 */
+	private static void subtractShifted(@NotNull int[] target, @NotNull int[] source, int scale, int shift) {
+		int scaleLog = GaloisField.log(scale);
+		for (int i = shift; i < target.length; i++) {
+			int value = source[i - shift];
+			if (value != 0) {
+				target[i] ^= GaloisField.exp(GaloisField.log(value) + scaleLog);
+			}
 		}
-		
-		int inverse = GaloisField.inverse(sigmaTildeAtZero);
-		GaloisFieldPoly sigma = t.multiply(inverse);
-		GaloisFieldPoly omega = r.multiply(inverse);
-		return new GaloisFieldPoly[]{sigma, omega};
 	}
 	
-	@Nullable
-	@Contract(pure = true)
-	private static int[] findErrorLocations(@NotNull GaloisFieldPoly errorLocator) {
-		// This is a direct application of Chien's search
-		if (errorLocator.getDegree() == 1) { // shortcut
-			return new int[]{errorLocator.getCoefficient(1)};
+	/**
+	 * Calculates the error evaluator polynomial (stored lowest degree first):
+	 * the product of the syndrome and the error locator polynomials modulo x^errorCount.
+	 */
+	private void calculateErrorEvaluator(int errorCount) {
+		for (int i = 0; i < errorCount; i++) {
+			int value = 0;
+			for (int j = 0; j <= i; j++) {
+				value ^= GaloisField.multiply(errorLocator[j], syndromes[i - j]);
+			}
+			errorEvaluator[i] = value;
+		}
+	}
+	
+	/**
+	 * Finds the roots of the error locator polynomial using Chien's search,
+	 * limited to the positions that actually exist in the (shortened) block.
+	 * The magnitudes are calculated using Forney's formula.
+	 *
+	 * @param errorCount the degree of the error locator polynomial
+	 * @param allowZeroMagnitudes whether roots with zero error values are valid: erased chunks may be correct
+	 * @return true if the count of roots equals the error count
+	 */
+	private boolean findErrors(int errorCount, boolean allowZeroMagnitudes) {
+		for (int i = 1; i <= errorCount; i++) {
+			termLogs[i] = errorLocator[i] == 0 ? -1 : GaloisField.log(errorLocator[i]);
 		}
 		
-		int[] result = new int[errorLocator.getDegree()];
-		int count = 0;
-		for (int i = 1; count < result.length && i < GaloisField.SIZE; i++) {
-			if (errorLocator.evaluateAt(i) == 0) {
-				result[count++] = GaloisField.inverse(i);
+		int found = 0;
+		//the error locator of the chunk at index p is 2^(n-1-p), its inverse is tested at step k=n-1-p
+		for (int k = 0; k < totalChunks; k++) {
+			int value = 1; //the constant term of the locator is always 1
+			for (int i = 1; i <= errorCount; i++) {
+				int termLog = termLogs[i];
+				if (termLog != -1) {
+					value ^= GaloisField.exp(termLog);
+					termLog -= i;
+					termLogs[i] = termLog < 0 ? termLog + GaloisField.SIZE - 1 : termLog;
+				}
+			}
+			
+			if (value != 0) {
+				continue;
+			}
+			
+			int magnitude = calculateMagnitude(errorCount, k == 0 ? 0 : GaloisField.SIZE - 1 - k);
+			if (magnitude == -1 || magnitude == 0 && !allowZeroMagnitudes) {
+				return false;
+			}
+			errorPositions[found] = totalChunks - 1 - k;
+			errorMagnitudes[found] = magnitude;
+			if (++found == errorCount) {
+				return true;
 			}
 		}
-		return count == result.length ? result : null;
+		return false;
 	}
 	
-	@NotNull
-	@Contract(pure = true)
-	private static int[] findErrorMagnitudes(GaloisFieldPoly errorEvaluator, @NotNull int[] errorLocations) {
-		// This is directly applying Forney's Formula
-		int[] result = new int[errorLocations.length];
-		for (int i = 0; i < result.length; i++) {
-			int xiInverse = GaloisField.inverse(errorLocations[i]);
-			int denominator = 1;
-			for (int j = 0; j < result.length; j++) {
-				if (i != j) {
-					int term = GaloisField.multiply(errorLocations[j], xiInverse);
-					denominator = GaloisField.multiply(denominator, (term & 0x1) == 0 ? term | 1 : term & ~1);
-				}
+	/**
+	 * Applies Forney's formula to calculate the error value at a specific location.
+	 *
+	 * @param errorCount the degree of the error locator polynomial
+	 * @param inverseLocatorLog the logarithm of the inverse of the error location
+	 * @return the error value or -1 if the location is a repeated root
+	 */
+	private int calculateMagnitude(int errorCount, int inverseLocatorLog) {
+		int numerator = 0;
+		int power = 0;
+		for (int i = 0; i < errorCount; i++) {
+			if (errorEvaluator[i] != 0) {
+				numerator ^= GaloisField.exp(GaloisField.log(errorEvaluator[i]) + power);
 			}
-			result[i] = GaloisField.multiply(GaloisField.multiply(errorEvaluator.evaluateAt(xiInverse),
-					GaloisField.inverse(denominator)), xiInverse);
+			power = (power + inverseLocatorLog) % (GaloisField.SIZE - 1);
+		}
+		
+		//the formal derivative only keeps the odd powers in characteristic 2
+		int denominator = 0;
+		int evenPowerStep = (2 * inverseLocatorLog) % (GaloisField.SIZE - 1);
+		power = 0;
+		for (int i = 1; i <= errorCount; i += 2) {
+			if (errorLocator[i] != 0) {
+				denominator ^= GaloisField.exp(GaloisField.log(errorLocator[i]) + power);
+			}
+			power = (power + evenPowerStep) % (GaloisField.SIZE - 1);
+		}
+		
+		if (denominator == 0) {
+			return -1;
+		}
+		return GaloisField.multiply(numerator, GaloisField.inverse(denominator));
+	}
+	
+	private static void clear(@NotNull int[] array) {
+		for (int i = 0; i < array.length; i++) {
+			array[i] = 0;
 		}
-		return result;
 	}
 }
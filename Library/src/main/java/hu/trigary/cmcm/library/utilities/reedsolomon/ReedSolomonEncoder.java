@@ -20,44 +20,27 @@
 
 package hu.trigary.cmcm.library.utilities.reedsolomon;
 
-import hu.trigary.cmcm.library.utilities.FrameInfo;
+import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implements Reed-Solomon encoding: given an array containing the payload chunks,
  * it tries to generate the correction chunks for it.
  */
 public final class ReedSolomonEncoder {
-	private static final Map<Integer, GaloisFieldPoly> CACHED_GENERATORS = new HashMap<>();
-	
-	static {
-		FrameInfo.ContentResolution[] resolutions = FrameInfo.ContentResolution.values();
-		int[] correctionChunkLengths = new int[resolutions.length];
-		//noinspection Convert2streamapi
-		for (int i = 0; i < resolutions.length; i++) {
-			correctionChunkLengths[i] = new FrameInfo(resolutions[i]).getCorrectionChunks();
-		}
-		
-		int index = 0;
-		int degree = 0;
-		GaloisFieldPoly generator = new GaloisFieldPoly(new int[]{1});
-		while (index < correctionChunkLengths.length) {
-			generator = generator.multiply(new GaloisFieldPoly(new int[]{1, GaloisField.exp(++degree)}));
-			if (degree == correctionChunkLengths[index]) {
-				index++;
-				CACHED_GENERATORS.put(degree, generator);
-			}
-		}
-	}
+	private static final Map<Integer, int[]> CACHED_GENERATOR_LOGS = new ConcurrentHashMap<>();
 	
 	private ReedSolomonEncoder() { }
 	
 	/**
 	 * Generates error correction values into the specified array based on the specified payload.
 	 * The elements of both arrays are chunks. Each chunk's value is at least 0 and less than {@link GaloisField#SIZE}.
+	 * No allocations are made: the remainder of the polynomial division is calculated
+	 * in place, inside the correction array, the way a linear feedback shift register would.
 	 *
 	 * @param payload the chunks to encrypt
 	 * @param corrections the array to fill with the correction chunks (all elements are overwritten internally)
@@ -71,16 +54,56 @@ public final class ReedSolomonEncoder {
 			throw new IllegalArgumentException("block size limit mustn't be crossed");
 		}
 		
-		int[] coefficients = new GaloisFieldPoly(payload)
-				.multiplyByMonomial(corrections.length, 1)
-				.divide(CACHED_GENERATORS.get(corrections.length))[1].getCoefficients();
+		int[] generatorLogs = CACHED_GENERATOR_LOGS.computeIfAbsent(corrections.length,
+				ReedSolomonEncoder::buildGeneratorLogs);
+		int last = corrections.length - 1;
+		Arrays.fill(corrections, 0);
 		
-		int zeroCount = corrections.length - coefficients.length;
-		for (int i = 0; i < zeroCount; i++) {
-			corrections[i] = 0; //clear only that part of the array which is not overwritten
+		for (int chunk : payload) {
+			int feedback = chunk ^ corrections[0];
+			if (feedback == 0) {
+				System.arraycopy(corrections, 1, corrections, 0, last);
+				corrections[last] = 0;
+				continue;
+			}
+			
+			int feedbackLog = GaloisField.log(feedback);
+			for (int i = 0; i < last; i++) {
+				int generatorLog = generatorLogs[i];
+				corrections[i] = generatorLog == -1 ? corrections[i + 1]
+						: corrections[i + 1] ^ GaloisField.exp(feedbackLog + generatorLog);
+			}
+			int generatorLog = generatorLogs[last];
+			corrections[last] = generatorLog == -1 ? 0 : GaloisField.exp(feedbackLog + generatorLog);
+		}
+	}
+	
+	/**
+	 * Builds the generator polynomial of the specified degree: the product of (x + 2^i) for i in [1, degree].
+	 * The polynomial is converted into the logarithms of its non-leading coefficients,
+	 * ordered from the highest-power term to the constant term.
+	 * Coefficients equal to zero have no logarithm, they are represented by -1.
+	 * Generators are built on demand (and then cached) instead of eagerly,
+	 * since building the larger ones takes a considerable amount of time.
+	 */
+	@NotNull
+	@Contract(pure = true)
+	private static int[] buildGeneratorLogs(int degree) {
+		int[] coefficients = new int[degree + 1];
+		coefficients[0] = 1;
+		for (int d = 1; d <= degree; d++) {
+			//multiply the current polynomial of degree d-1 by (x + 2^d)
+			coefficients[d] = GaloisField.multiply(coefficients[d - 1], GaloisField.exp(d));
+			for (int i = d - 1; i > 0; i--) {
+				coefficients[i] ^= GaloisField.multiply(coefficients[i - 1], GaloisField.exp(d));
+			}
 		}
 		
-		//
-		System.arraycopy(coefficients, 0, corrections, zeroCount, coefficients.length);
+		int[] logs = new int[degree];
+		for (int i = 0; i < logs.length; i++) {
+			int coefficient = coefficients[i + 1];
+			logs[i] = coefficient == 0 ? -1 : GaloisField.log(coefficient);
+		}
+		return logs;
 	}
 }
@@ -0,0 +1,79 @@
+package hu.trigary.cmcm.library.utilities.reedsolomon;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Utility class that evaluates a received block at the roots of the generator polynomial.
+ * All roots are evaluated in a single pass over the chunks, in the logarithmic domain:
+ * each non-zero chunk is converted to its logarithm once, after which
+ * each term only costs an addition and a table lookup.
+ * If the vectorized implementation is available (see {@link VectorSyndromeKernel}), then that is used instead.
+ */
+final class SyndromeKernel {
+	
+	private SyndromeKernel() { }
+	
+	/**
+	 * Calculates the syndromes of the specified block.
+	 * Syndrome j is the evaluation of the received polynomial at 2^(j+1).
+	 *
+	 * @param chunks the array containing both the payload and the error correction chunks
+	 * @param syndromes the array to fill with the syndromes, its length is the count of correction chunks
+	 * @param exponents a workspace array, at least as long as the syndrome array
+	 * @return true if any syndromes are non-zero, aka the block contains errors
+	 */
+	static boolean calculate(@NotNull int[] chunks, @NotNull int[] syndromes, @NotNull int[] exponents) {
+		initialize(chunks.length, syndromes, exponents);
+		if (VectorSyndromeKernel.isAvailable()) {
+			VectorSyndromeKernel.accumulate(chunks, syndromes, exponents);
+		} else {
+			accumulate(chunks, syndromes, exponents, 0);
+		}
+		
+		for (int syndrome : syndromes) {
+			if (syndrome != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Clears the syndromes and sets exponent j to (j+1)*n, reduced modulo size-1.
+	 * Before a chunk is processed, exponent j is decreased by j+1,
+	 * therefore it always equals the logarithm of 2^((j+1)*(n-1-i)) at chunk i.
+	 */
+	private static void initialize(int totalChunks, @NotNull int[] syndromes, @NotNull int[] exponents) {
+		for (int j = 0; j < syndromes.length; j++) {
+			syndromes[j] = 0;
+			exponents[j] = (int) ((long) (j + 1) * totalChunks % (GaloisField.SIZE - 1));
+		}
+	}
+	
+	/**
+	 * The scalar implementation of the accumulation loop.
+	 * Also used to process the elements that do not fill a whole vector.
+	 *
+	 * @param start the index of the first syndrome to process
+	 */
+	static void accumulate(@NotNull int[] chunks, @NotNull int[] syndromes, @NotNull int[] exponents, int start) {
+		int count = syndromes.length;
+		for (int chunk : chunks) {
+			if (chunk == 0) {
+				for (int j = start; j < count; j++) {
+					int exponent = exponents[j] - j - 1;
+					exponents[j] = exponent < 0 ? exponent + GaloisField.SIZE - 1 : exponent;
+				}
+				continue;
+			}
+			
+			int chunkLog = GaloisField.log(chunk);
+			for (int j = start; j < count; j++) {
+				int exponent = exponents[j] - j - 1;
+				exponent = exponent < 0 ? exponent + GaloisField.SIZE - 1 : exponent;
+				exponents[j] = exponent;
+				syndromes[j] ^= GaloisField.exp(exponent + chunkLog);
+			}
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package hu.trigary.cmcm.library.utilities.reedsolomon;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The vectorized implementation of the {@link SyndromeKernel} accumulation loop.
+ * This version is a placeholder for runtimes older than Java 17:
+ * the multi-release JAR contains the actual implementation, which uses the incubating Vector API.
+ */
+final class VectorSyndromeKernel {
+	
+	private VectorSyndromeKernel() { }
+	
+	/**
+	 * Gets whether the vectorized implementation can be used.
+	 *
+	 * @return true if {@link #accumulate(int[], int[], int[])} can be called
+	 */
+	@Contract(pure = true)
+	static boolean isAvailable() {
+		return false;
+	}
+	
+	/**
+	 * Adds the terms of all chunks to the syndromes, see {@link SyndromeKernel#accumulate(int[], int[], int[], int)}.
+	 * This version simply delegates to the scalar implementation.
+	 *
+	 * @param chunks the array containing both the payload and the error correction chunks
+	 * @param syndromes the cleared syndrome array
+	 * @param exponents the initialized exponent array
+	 */
+	static void accumulate(@NotNull int[] chunks, @NotNull int[] syndromes, @NotNull int[] exponents) {
+		SyndromeKernel.accumulate(chunks, syndromes, exponents, 0);
+	}
+}
@@ -0,0 +1,84 @@
+package hu.trigary.cmcm.library.utilities.reedsolomon;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The vectorized implementation of the {@link SyndromeKernel} accumulation loop.
+ * Each vector lane processes a different syndrome, the table lookups are done using gathers.
+ * The Vector API is an incubating module, it is only used if the runtime was started
+ * with {@code --add-modules jdk.incubator.vector}, otherwise the scalar implementation is used.
+ */
+final class VectorSyndromeKernel {
+	private static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+	
+	private VectorSyndromeKernel() { }
+	
+	/**
+	 * Gets whether the vectorized implementation can be used.
+	 *
+	 * @return true if {@link #accumulate(int[], int[], int[])} can be called
+	 */
+	@Contract(pure = true)
+	static boolean isAvailable() {
+		return AVAILABLE;
+	}
+	
+	/**
+	 * Adds the terms of all chunks to the syndromes, see {@link SyndromeKernel#accumulate(int[], int[], int[], int)}.
+	 *
+	 * @param chunks the array containing both the payload and the error correction chunks
+	 * @param syndromes the cleared syndrome array
+	 * @param exponents the initialized exponent array
+	 */
+	static void accumulate(@NotNull int[] chunks, @NotNull int[] syndromes, @NotNull int[] exponents) {
+		int start = Implementation.accumulate(chunks, syndromes, exponents);
+		SyndromeKernel.accumulate(chunks, syndromes, exponents, start);
+	}
+	
+	/**
+	 * The class referencing the Vector API, only loaded if the module is available.
+	 */
+	private static final class Implementation {
+		private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+		private static final int[] ROOT_LOGS = new int[GaloisField.SIZE];
+		private static final ThreadLocal<int[]> INDEX_BUFFER = ThreadLocal.withInitial(() -> new int[SPECIES.length()]);
+		
+		static {
+			for (int i = 0; i < ROOT_LOGS.length; i++) {
+				ROOT_LOGS[i] = i + 1;
+			}
+		}
+		
+		/**
+		 * @return the index of the first syndrome that was not processed
+		 */
+		static int accumulate(@NotNull int[] chunks, @NotNull int[] syndromes, @NotNull int[] exponents) {
+			int[] expTable = GaloisField.getExpTable();
+			int[] indexes = INDEX_BUFFER.get();
+			int bound = SPECIES.loopBound(syndromes.length);
+			
+			for (int chunk : chunks) {
+				int chunkLog = chunk == 0 ? -1 : GaloisField.log(chunk);
+				for (int j = 0; j < bound; j += SPECIES.length()) {
+					IntVector exponent = IntVector.fromArray(SPECIES, exponents, j)
+							.sub(IntVector.fromArray(SPECIES, ROOT_LOGS, j));
+					exponent = exponent.add(GaloisField.SIZE - 1, exponent.lt(0));
+					exponent.intoArray(exponents, j);
+					if (chunkLog == -1) {
+						continue;
+					}
+					
+					exponent.add(chunkLog).intoArray(indexes, 0);
+					IntVector.fromArray(SPECIES, syndromes, j)
+							.lanewise(VectorOperators.XOR, IntVector.fromArray(SPECIES, expTable, 0, indexes, 0))
+							.intoArray(syndromes, j);
+				}
+			}
+			return bound;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package hu.trigary.cmcm.library;
+
+import hu.trigary.cmcm.library.utilities.PayloadCodec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Unit test that compresses and decompresses payloads using all {@link PayloadCodec} values.
+ */
+@Execution(ExecutionMode.CONCURRENT)
+class CompressionTest {
+	@RepeatedTest(20)
+	void testStructured() {
+		byte[] payload = createStructuredPayload();
+		for (PayloadCodec codec : PayloadCodec.values()) {
+			byte[] compressed = codec.compress(payload);
+			if (codec == PayloadCodec.NONE) {
+				Assertions.assertNull(compressed, "no compression must be performed");
+				continue;
+			}
+			
+			Assertions.assertNotNull(compressed, "structured payloads must be compressible");
+			Assertions.assertTrue(compressed.length < payload.length, "compression must shorten the payload");
+			Assertions.assertArrayEquals(payload, PayloadCodec.decompress(compressed), "decompression must succeed");
+		}
+	}
+	
+	@RepeatedTest(20)
+	void testRandom() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		byte[] payload = new byte[random.nextInt(1, 5000)];
+		random.nextBytes(payload);
+		//make parts of the payload repetitive, so that some, but not all of it can be compressed
+		int repeats = random.nextInt(payload.length);
+		for (int i = 0; i < repeats; i++) {
+			int from = random.nextInt(payload.length);
+			int to = random.nextInt(payload.length);
+			payload[to] = payload[from];
+		}
+		
+		for (PayloadCodec codec : PayloadCodec.values()) {
+			byte[] compressed = codec.compress(payload);
+			if (compressed != null) {
+				Assertions.assertArrayEquals(payload, PayloadCodec.decompress(compressed),
+						"decompression must succeed");
+			}
+		}
+	}
+	
+	@RepeatedTest(20)
+	void testMalformed() {
+		byte[] compressed = PayloadCodec.LZ.compress(createStructuredPayload());
+		Assertions.assertNotNull(compressed, "structured payloads must be compressible");
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		byte[] truncated = Arrays.copyOf(compressed, random.nextInt(compressed.length));
+		Assertions.assertNull(PayloadCodec.decompress(truncated), "truncated data must be rejected");
+		
+		byte[] garbage = new byte[random.nextInt(1, 200)];
+		random.nextBytes(garbage);
+		garbage[0] = (byte) PayloadCodec.values()[random.nextInt(1, PayloadCodec.values().length)].getId();
+		PayloadCodec.decompress(garbage); //must not throw
+	}
+	
+	private static byte[] createStructuredPayload() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		StringBuilder builder = new StringBuilder();
+		int count = random.nextInt(5, 50);
+		for (int i = 0; i < count; i++) {
+			builder.append("{\"ticket\":").append(random.nextInt(1000000))
+					.append(",\"validFrom\":\"2024-0").append(random.nextInt(1, 10))
+					.append("-1").append(random.nextInt(10)).append("\",\"zone\":").append(random.nextInt(5))
+					.append("}\n");
+		}
+		return builder.toString().getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,51 @@
+package hu.trigary.cmcm.library;
+
+import hu.trigary.cmcm.library.utilities.CrcCombiner;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+/**
+ * Unit test that compares the CRC values calculated by {@link CrcCombiner} to directly calculated ones.
+ */
+@Execution(ExecutionMode.CONCURRENT)
+class CrcCombinerTest {
+	@RepeatedTest(100)
+	void testCombine() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		byte[] message = new byte[random.nextInt(0, 5000)];
+		random.nextBytes(message);
+		int split = random.nextInt(message.length + 1);
+		int combined = CrcCombiner.combine(crc(message, 0, split),
+				crc(message, split, message.length - split), message.length - split);
+		Assertions.assertEquals(crc(message, 0, message.length), combined, "combined CRC must match");
+	}
+	
+	@RepeatedTest(100)
+	void testApplyDifference() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		byte[] message = new byte[random.nextInt(1, 5000)];
+		random.nextBytes(message);
+		int oldCrc = crc(message, 0, message.length);
+		int offset = random.nextInt(message.length);
+		int length = random.nextInt(message.length - offset + 1);
+		byte[] difference = new byte[length + 1];
+		for (int i = 0; i < length; i++) {
+			difference[i + 1] = (byte) random.nextInt(256);
+			message[offset + i] ^= difference[i + 1];
+		}
+		
+		int updated = CrcCombiner.applyDifference(oldCrc, difference, 1, length, message.length - offset - length);
+		Assertions.assertEquals(crc(message, 0, message.length), updated, "updated CRC must match");
+	}
+	
+	private static int crc(byte[] bytes, int offset, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, offset, length);
+		return (int) crc.getValue();
+	}
+}
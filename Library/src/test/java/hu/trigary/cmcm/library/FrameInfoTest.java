@@ -1,5 +1,6 @@
 package hu.trigary.cmcm.library;
 
+import hu.trigary.cmcm.library.utilities.ChunkConverter;
 import hu.trigary.cmcm.library.utilities.FrameInfo;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -16,13 +17,60 @@ class FrameInfoTest {
 	@Test
 	void testChunkDistribution() {
 		Arrays.stream(FrameInfo.ContentResolution.values())
-				.map(FrameInfo::new)
+				.flatMap(resolution -> Arrays.stream(FrameInfo.Redundancy.values())
+						.map(redundancy -> new FrameInfo(resolution, redundancy)))
 				.forEach(info -> {
 					int content = info.getContentChunks();
 					int correction = info.getCorrectionChunks();
 					int data = info.getDataChunks();
 					Assertions.assertEquals(content, correction + data, "sum of all chunks must equal content chunks");
 					Assertions.assertEquals(0, data % 2, "count of data chunks must be even");
+					Assertions.assertTrue(correction >= 2, "must be at least two correction chunks");
+					int codewords = info.getCodewordCount();
+					Assertions.assertTrue((content + codewords - 1) / codewords < 4096, "codewords must fit the field");
+					Assertions.assertTrue(correction >= 2 * codewords, "each codeword needs two correction chunks");
 				});
 	}
+	
+	@Test
+	void testProductChunkDistribution() {
+		Arrays.stream(FrameInfo.ContentResolution.values())
+				.filter(resolution -> resolution != FrameInfo.ContentResolution._8)
+				.flatMap(resolution -> Arrays.stream(FrameInfo.Redundancy.values())
+						.map(redundancy -> new FrameInfo(resolution, redundancy, FrameInfo.Layout.PRODUCT)))
+				.forEach(info -> {
+					int size = info.getProductSize();
+					int data = info.getDataChunks();
+					Assertions.assertEquals(info.getContentChunks(), info.getCorrectionChunks() + data,
+							"sum of all chunks must equal content chunks");
+					Assertions.assertEquals(0, data % 2, "count of data chunks must be even");
+					Assertions.assertEquals(size * size - 2, info.getContentChunks(), "rows must fill the frame");
+					Assertions.assertTrue(info.getProductRowCorrections() >= 2, "rows need two correction chunks");
+					Assertions.assertTrue(info.getProductColumnCorrections() >= 2, "columns need two correction chunks");
+					Assertions.assertTrue(info.getFrameCount(1) > 0, "first frame header must fit");
+				});
+	}
+	
+	@Test
+	void testHeaderLengths() {
+		for (FrameInfo.ContentResolution resolution : FrameInfo.ContentResolution.values()) {
+			for (FrameInfo.Redundancy redundancy : FrameInfo.Redundancy.values()) {
+				for (FrameInfo.MovieHeader movieHeader : FrameInfo.MovieHeader.values()) {
+					for (FrameInfo.Integrity integrity : FrameInfo.Integrity.values()) {
+						FrameInfo info = new FrameInfo(resolution, redundancy, FrameInfo.Layout.INTERLEAVED,
+								movieHeader, integrity);
+						int dataBytes = ChunkConverter.getByteCount(info.getDataChunks());
+						Assertions.assertTrue(info.getFirstHeaderLength() < dataBytes, "first header must fit");
+						Assertions.assertTrue(info.getRegularHeaderLength() < dataBytes, "regular header must fit");
+						Assertions.assertTrue(info.getFountainBlockLength() > 0, "fountain header must fit");
+						int firstSegmentLength = dataBytes - info.getFirstHeaderLength();
+						Assertions.assertEquals(1, info.getFrameCount(firstSegmentLength - 1),
+								"short payloads must fit into the first frame");
+						Assertions.assertEquals(2, info.getFrameCount(firstSegmentLength + 1),
+								"longer payloads must need a regular frame");
+					}
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,51 @@
+package hu.trigary.cmcm.library;
+
+import hu.trigary.cmcm.library.utilities.Color;
+import hu.trigary.cmcm.library.utilities.FrameInfo;
+import hu.trigary.cmcm.library.utilities.FrameLayout;
+import hu.trigary.cmcm.library.utilities.PackedFrame;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Unit test that makes sure that the {@link FrameLayout} tables cover each cell of the frames exactly once.
+ */
+@Execution(ExecutionMode.CONCURRENT)
+class FrameLayoutTest {
+	@Test
+	void testRoundTrip() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (FrameInfo.ContentResolution resolution : FrameInfo.ContentResolution.values()) {
+			for (int padding = 0; padding <= 2; padding++) {
+				FrameLayout layout = FrameLayout.get(resolution.getValue(), padding);
+				Assertions.assertSame(layout, FrameLayout.get(resolution.getValue(), padding), "layouts must be cached");
+				int[] chunks = random.ints(layout.getContentChunks(), 0, 4096).toArray();
+				int[] result = new int[chunks.length];
+				
+				Color[] frame = layout.createTemplateFrame();
+				Color[] template = layout.createTemplateFrame();
+				layout.writeChunks(chunks, 0, frame);
+				layout.readChunks(frame, result);
+				Assertions.assertArrayEquals(chunks, result, "chunks must be read the way they were written");
+				
+				int changed = 0;
+				for (int i = 0; i < frame.length; i++) {
+					if (frame[i] != template[i]) {
+						changed++;
+					}
+				}
+				Assertions.assertTrue(changed <= chunks.length * 4, "cells must not overlap");
+				
+				PackedFrame packed = layout.createTemplateFrame(PackedFrame.Format.THREE_BITS_PER_CELL, true);
+				layout.writeChunks(chunks, 0, packed);
+				Assertions.assertArrayEquals(frame, packed.toColors(), "packed frames must equal color matrices");
+				layout.readChunks(packed, result);
+				Assertions.assertArrayEquals(chunks, result, "chunks must be read the way they were written");
+			}
+		}
+	}
+}
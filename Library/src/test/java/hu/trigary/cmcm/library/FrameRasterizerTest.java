@@ -0,0 +1,64 @@
+package hu.trigary.cmcm.library;
+
+import hu.trigary.cmcm.library.utilities.Color;
+import hu.trigary.cmcm.library.utilities.FrameRasterizer;
+import hu.trigary.cmcm.library.utilities.PackedFrame;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Unit test that compares the images created by {@link FrameRasterizer} to naively drawn ones.
+ */
+@Execution(ExecutionMode.CONCURRENT)
+class FrameRasterizerTest {
+	@RepeatedTest(20)
+	void testRasterize() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int resolution = random.nextInt(1, 40);
+		int cellSize = random.nextInt(1, 6);
+		int padding = random.nextInt(0, 10);
+		Color[] frame = new Color[resolution * resolution];
+		for (int i = 0; i < frame.length; i++) {
+			frame[i] = Color.fromBits(random.nextInt(8));
+		}
+		PackedFrame packed = PackedFrame.fromColors(frame, PackedFrame.Format.THREE_BITS_PER_CELL, false);
+		
+		int size = resolution * cellSize + 2 * padding;
+		int[] expected = new int[size * size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				int cellX = (x - padding) / cellSize;
+				int cellY = (y - padding) / cellSize;
+				boolean border = x < padding || y < padding || cellX >= resolution || cellY >= resolution;
+				expected[x + y * size] = border ? Color.BLACK.getArgb() : frame[cellX + cellY * resolution].getArgb();
+			}
+		}
+		
+		FrameRasterizer rasterizer = new FrameRasterizer(resolution, cellSize, padding);
+		Assertions.assertEquals(size, rasterizer.getImageSize(), "image size must include the border");
+		int[] reused = new int[size * size];
+		Assertions.assertSame(reused, rasterizer.rasterize(frame, reused), "large enough targets must be reused");
+		Assertions.assertArrayEquals(expected, reused, "color matrices must be drawn correctly");
+		Assertions.assertArrayEquals(expected, rasterizer.rasterize(packed, null), "packed frames must be drawn");
+		
+		IntBuffer buffer = IntBuffer.allocate(size * size + 1);
+		buffer.put(0);
+		rasterizer.rasterizeInto(packed, buffer);
+		Assertions.assertFalse(buffer.hasRemaining(), "buffer position must be advanced");
+		buffer.position(1);
+		Assertions.assertEquals(IntBuffer.wrap(expected), buffer, "buffers must be filled correctly");
+		
+		byte[] indexed = new byte[size * size];
+		Arrays.fill(indexed, (byte) 7);
+		rasterizer.rasterizeIndexed(frame, indexed);
+		for (int i = 0; i < expected.length; i++) {
+			Assertions.assertEquals(expected[i], FrameRasterizer.getPaletteArgb(indexed[i]), "indexes must match");
+		}
+	}
+}
@@ -2,9 +2,17 @@ package hu.trigary.cmcm.library;
 
 import hu.trigary.cmcm.library.generator.GeneratorSettings;
 import hu.trigary.cmcm.library.generator.MovieGenerator;
+import hu.trigary.cmcm.library.generator.PayloadRange;
+import hu.trigary.cmcm.library.generator.PayloadSource;
+import hu.trigary.cmcm.library.generator.VirtualMovie;
 import hu.trigary.cmcm.library.parser.MovieParser;
+import hu.trigary.cmcm.library.utilities.ChunkConverter;
 import hu.trigary.cmcm.library.utilities.Color;
 import hu.trigary.cmcm.library.utilities.FrameInfo;
+import hu.trigary.cmcm.library.utilities.FrameLayout;
+import hu.trigary.cmcm.library.utilities.PackedFrame;
+import hu.trigary.cmcm.library.utilities.PayloadCodec;
+import hu.trigary.cmcm.library.utilities.reedsolomon.InterleavedEncoder;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Assertions;
@@ -12,9 +20,26 @@ import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.parallel.Execution;
 import org.junit.jupiter.api.parallel.ExecutionMode;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.stream.IntStream;
 
@@ -27,6 +52,10 @@ import java.util.stream.IntStream;
 class GeneratorParserTest {
 	private static final FrameInfo.ContentResolution[] CONTENT_RESOLUTIONS = {FrameInfo.ContentResolution._8,
 			FrameInfo.ContentResolution._12, FrameInfo.ContentResolution._16};
+	private static final FrameInfo.ContentResolution[] INTERLEAVED_RESOLUTIONS = {FrameInfo.ContentResolution._160,
+			FrameInfo.ContentResolution._200, FrameInfo.ContentResolution._256};
+	private static final FrameInfo.ContentResolution[] PRODUCT_RESOLUTIONS = {FrameInfo.ContentResolution._16,
+			FrameInfo.ContentResolution._32, FrameInfo.ContentResolution._64};
 	private static final int MAX_PAYLOAD_LENGTH = 200;
 	
 	@RepeatedTest(20)
@@ -91,6 +120,608 @@ class GeneratorParserTest {
 		});
 	}
 	
+	@RepeatedTest(5)
+	void testRedundancies() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (FrameInfo.ContentResolution resolution : CONTENT_RESOLUTIONS) {
+			for (FrameInfo.Redundancy redundancy : FrameInfo.Redundancy.values()) {
+				GeneratorSettings settings = new GeneratorSettings(resolution, GeneratorSettings.Padding.NONE, redundancy);
+				byte[] payload = new byte[random.nextInt(1, MAX_PAYLOAD_LENGTH)];
+				random.nextBytes(payload);
+				List<Color[]> movie = MovieGenerator.createMovie(settings, payload);
+				MovieParser parser = new MovieParser(settings);
+				
+				byte[] result = null;
+				for (Color[] frame : movie) {
+					Assertions.assertNull(result, "parsing must not complete before all frames are added");
+					frame = removePadding(frame, settings.getPadding());
+					corruptPixels(frame, settings.getCorrectionChunks() / 2);
+					result = parser.tryAddFrame(frame);
+				}
+				
+				Assertions.assertNotNull(result, "parsing must succeed after all frames are added");
+				Assertions.assertArrayEquals(payload, result, "decoded payload must equal encoded payload");
+			}
+		}
+	}
+	
+	@RepeatedTest(5)
+	void testDetectedRedundancy() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (FrameInfo.ContentResolution resolution : CONTENT_RESOLUTIONS) {
+			for (FrameInfo.Redundancy redundancy : FrameInfo.Redundancy.values()) {
+				GeneratorSettings settings = new GeneratorSettings(resolution, GeneratorSettings.Padding.NONE,
+						redundancy);
+				byte[] payload = new byte[random.nextInt(1, MAX_PAYLOAD_LENGTH)];
+				random.nextBytes(payload);
+				List<Color[]> movie = MovieGenerator.createMovie(settings, payload);
+				FrameInfo.Redundancy configured = FrameInfo.Redundancy.values()[(redundancy.ordinal() + 1)
+						% FrameInfo.Redundancy.values().length];
+				MovieParser parser = new MovieParser(new FrameInfo(resolution, configured));
+				
+				byte[] result = null;
+				for (Color[] frame : movie) {
+					Assertions.assertNull(result, "parsing must not complete before all frames are added");
+					frame = removePadding(frame, settings.getPadding());
+					corruptPixels(frame, settings.getCorrectionChunks() / 2);
+					result = parser.tryAddFrame(frame);
+				}
+				
+				Assertions.assertNotNull(result, "frames of a different redundancy must be decoded as well");
+				Assertions.assertArrayEquals(payload, result, "decoded payload must equal encoded payload");
+			}
+		}
+	}
+	
+	@RepeatedTest(2)
+	void testInterleaved() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (FrameInfo.ContentResolution resolution : INTERLEAVED_RESOLUTIONS) {
+			for (FrameInfo.Redundancy redundancy : FrameInfo.Redundancy.values()) {
+				GeneratorSettings settings = new GeneratorSettings(resolution, GeneratorSettings.Padding.NONE, redundancy);
+				Assertions.assertTrue(settings.getCodewordCount() > 1, "large frames must contain multiple codewords");
+				byte[] payload = new byte[random.nextInt(1, settings.getDataChunks() * 4)];
+				random.nextBytes(payload);
+				List<Color[]> movie = MovieGenerator.createMovie(settings, payload);
+				MovieParser parser = new MovieParser(settings);
+				
+				byte[] result = null;
+				for (Color[] frame : movie) {
+					Assertions.assertNull(result, "parsing must not complete before all frames are added");
+					frame = removePadding(frame, settings.getPadding());
+					corruptBurst(frame, settings.getCorrectionChunks());
+					result = parser.tryAddFrame(frame);
+				}
+				
+				Assertions.assertNotNull(result, "parsing must succeed after all frames are added");
+				Assertions.assertArrayEquals(payload, result, "decoded payload must equal encoded payload");
+			}
+		}
+	}
+	
+	@RepeatedTest(5)
+	void testProductLayout() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (FrameInfo.ContentResolution resolution : PRODUCT_RESOLUTIONS) {
+			for (FrameInfo.Redundancy redundancy : FrameInfo.Redundancy.values()) {
+				GeneratorSettings settings = new GeneratorSettings(resolution, GeneratorSettings.Padding.NONE,
+						redundancy, FrameInfo.Layout.PRODUCT);
+				byte[] payload = new byte[random.nextInt(1, settings.getDataChunks() * 4)];
+				random.nextBytes(payload);
+				List<Color[]> movie = MovieGenerator.createMovie(settings, payload);
+				MovieParser parser = new MovieParser(settings);
+				
+				byte[] result = null;
+				for (Color[] frame : movie) {
+					Assertions.assertNull(result, "parsing must not complete before all frames are added");
+					frame = removePadding(frame, settings.getPadding());
+					corruptChunkRows(frame, settings.getProductColumnCorrections() / 2);
+					result = parser.tryAddFrame(frame);
+				}
+				
+				Assertions.assertNotNull(result, "parsing must succeed after all frames are added");
+				Assertions.assertArrayEquals(payload, result, "decoded payload must equal encoded payload");
+			}
+		}
+	}
+	
+	@RepeatedTest(5)
+	void testFountain() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (FrameInfo.ContentResolution resolution : CONTENT_RESOLUTIONS) {
+			GeneratorSettings settings = new GeneratorSettings(resolution, GeneratorSettings.Padding.NONE);
+			byte[] payload = new byte[random.nextInt(1, settings.getDataChunks() * 60)];
+			random.nextBytes(payload);
+			int blockCount = settings.getFountainBlockCount(payload.length);
+			Iterator<Color[]> movie = MovieGenerator.createFountainMovie(settings, payload);
+			MovieParser parser = new MovieParser(settings);
+			
+			//about half of the frames are missed, the parser mustn't have to wait for specific ones
+			byte[] result = null;
+			int addedFrames = 0;
+			int maxFrames = 2 * (blockCount + 10) * MovieGenerator.FOUNTAIN_FIRST_FRAME_INTERVAL;
+			for (int i = 0; i < maxFrames && result == null; i++) {
+				Color[] frame = movie.next();
+				if (random.nextBoolean()) {
+					frame = removePadding(frame, settings.getPadding());
+					corruptPixels(frame, settings.getCorrectionChunks() / 2);
+					result = parser.tryAddFrame(frame);
+					addedFrames++;
+				}
+			}
+			
+			Assertions.assertNotNull(result, "parsing must succeed after enough frames are added");
+			Assertions.assertArrayEquals(payload, result, "decoded payload must equal encoded payload");
+			Assertions.assertTrue(addedFrames <= 2 * (blockCount + 10), "about as many frames as blocks are needed");
+		}
+	}
+	
+	@RepeatedTest(5)
+	void testCorruptedFountainFrame() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (FrameInfo.ContentResolution resolution : CONTENT_RESOLUTIONS) {
+			for (boolean receivedIntact : new boolean[]{true, false}) {
+				GeneratorSettings settings = new GeneratorSettings(resolution, GeneratorSettings.Padding.NONE);
+				byte[] payload = new byte[random.nextInt(settings.getDataChunks() * 20, settings.getDataChunks() * 40)];
+				random.nextBytes(payload);
+				int blockCount = settings.getFountainBlockCount(payload.length);
+				Iterator<Color[]> movie = MovieGenerator.createFountainMovie(settings, payload);
+				MovieParser parser = new MovieParser(settings);
+				
+				//a fountain frame is misread in a way the error correction does not notice
+				byte[] result = null;
+				int fountainFrames = 0;
+				boolean corrupted = false;
+				int maxFrames = 4 * (blockCount + 10) * MovieGenerator.FOUNTAIN_FIRST_FRAME_INTERVAL;
+				for (int i = 0; i < maxFrames && result == null; i++) {
+					int[] chunks = readChunks(settings, movie.next());
+					if (!isFountainFrame(settings, chunks)) {
+						result = parser.tryAddFrame(chunks);
+						continue;
+					}
+					
+					fountainFrames++;
+					if (!corrupted) {
+						corrupted = true;
+						Assertions.assertNull(parser.tryAddFrame(corruptPayload(settings, chunks.clone())),
+								"parsing must not complete using the corrupted frame");
+						if (!receivedIntact) {
+							continue;
+						}
+					}
+					result = parser.tryAddFrame(chunks);
+				}
+				
+				Assertions.assertNotNull(result, "parsing must succeed after enough frames are added");
+				Assertions.assertArrayEquals(payload, result, "decoded payload must equal encoded payload");
+				Assertions.assertTrue(fountainFrames <= (receivedIntact ? blockCount + blockCount / 2 + 10
+						: 3 * (blockCount + 10)), "only the suspected frames must be rejected");
+			}
+		}
+	}
+	
+	@RepeatedTest(5)
+	void testPackedFrames() {
+		test((settings, payload) -> {
+			List<Color[]> expected = MovieGenerator.createMovie(settings, payload);
+			for (PackedFrame.Format format : PackedFrame.Format.values()) {
+				boolean direct = ThreadLocalRandom.current().nextBoolean();
+				List<PackedFrame> movie = MovieGenerator.createPackedMovie(settings, payload, format, direct);
+				MovieParser parser = new MovieParser(settings);
+				
+				byte[] result = null;
+				for (int i = 0; i < movie.size(); i++) {
+					Assertions.assertArrayEquals(expected.get(i), movie.get(i).toColors(),
+							"packed frames must equal color matrix frames");
+					Assertions.assertNull(result, "parsing must not complete before all frames are added");
+					Color[] frame = removePadding(movie.get(i).toColors(), settings.getPadding());
+					corruptPixels(frame, settings.getCorrectionChunks() / 2);
+					result = parser.tryAddFrame(PackedFrame.fromColors(frame, format, direct));
+				}
+				
+				Assertions.assertNotNull(result, "parsing must succeed after all frames are added");
+				Assertions.assertArrayEquals(payload, result, "decoded payload must equal encoded payload");
+			}
+		});
+	}
+	
+	@RepeatedTest(5)
+	void testVirtualMovie() {
+		test((settings, payload) -> {
+			List<Color[]> expected = MovieGenerator.createMovie(settings, payload);
+			VirtualMovie<Color[]> movie = MovieGenerator.createVirtualMovie(settings, payload);
+			Assertions.assertEquals(expected.size(), movie.getFrameCount(), "frame counts must match");
+			for (int i = movie.getFrameCount() - 1; i >= 0; i--) {
+				Assertions.assertArrayEquals(expected.get(i), movie.frameAt(i), "frames must be created in any order");
+			}
+			
+			MovieParser parser = new MovieParser(settings);
+			byte[] result = null;
+			Iterator<Color[]> iterator = movie.iterator(ThreadLocalRandom.current().nextInt(3));
+			while (iterator.hasNext()) {
+				Assertions.assertNull(result, "parsing must not complete before all frames are added");
+				result = parser.tryAddFrame(removePadding(iterator.next(), settings.getPadding()));
+			}
+			
+			Assertions.assertNotNull(result, "parsing must succeed after all frames are added");
+			Assertions.assertArrayEquals(payload, result, "decoded payload must equal encoded payload");
+		});
+	}
+	
+	@RepeatedTest(5)
+	void testStreaming() {
+		test((settings, payload) -> {
+			List<Color[]> expected = MovieGenerator.createMovie(settings, payload);
+			List<Color[]> movie = new ArrayList<>();
+			//a stream that returns less bytes than requested, like network streams tend to
+			InputStream input = new ByteArrayInputStream(payload) {
+				@Override
+				public synchronized int read(byte[] b, int off, int len) {
+					return super.read(b, off, Math.min(len, 5));
+				}
+			};
+			
+			try {
+				Assertions.assertEquals(expected.size(), MovieGenerator.streamMovie(settings, input, movie::add),
+						"frame counts must match");
+			} catch (IOException e) {
+				throw new AssertionError(e);
+			}
+			Assertions.assertEquals(expected.size(), movie.size(), "all frames must be passed to the consumer");
+			Assertions.assertArrayEquals(expected.get(0), movie.get(movie.size() - 1), "first frame must come last");
+			for (int i = 1; i < expected.size(); i++) {
+				Assertions.assertArrayEquals(expected.get(i), movie.get(i - 1), "regular frames must come in order");
+			}
+		});
+	}
+	
+	@RepeatedTest(5)
+	void testPayloadSources() throws IOException {
+		GeneratorSettings settings = new GeneratorSettings(FrameInfo.ContentResolution._16,
+				GeneratorSettings.Padding.NONE);
+		byte[] payload = new byte[ThreadLocalRandom.current().nextInt(1, 5000)];
+		ThreadLocalRandom.current().nextBytes(payload);
+		List<Color[]> expected = MovieGenerator.createMovie(settings, payload);
+		
+		Path file = Files.createTempFile("payload", ".bin");
+		try (FileChannel channel = FileChannel.open(Files.write(file, payload), StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(payload.length + 3).put(new byte[3]).put(payload);
+			buffer.position(3);
+			PayloadSource[] sources = {PayloadSource.of(channel), PayloadSource.of(buffer),
+					PayloadSource.of(channel.map(FileChannel.MapMode.READ_ONLY, 0, payload.length))};
+			for (PayloadSource source : sources) {
+				VirtualMovie<Color[]> movie = MovieGenerator.createVirtualMovie(settings, source);
+				Assertions.assertEquals(expected.size(), movie.getFrameCount(), "frame counts must match");
+				for (int i = 0; i < expected.size(); i++) {
+					Assertions.assertArrayEquals(expected.get(i), movie.frameAt(i), "frames must match");
+				}
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@RepeatedTest(5)
+	void testAsync() {
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			test((settings, payload) -> {
+				AtomicInteger progress = new AtomicInteger();
+				List<Color[]> movie = MovieGenerator.createMovieAsync(settings, PayloadSource.of(payload), executor,
+						created -> progress.accumulateAndGet(created, Math::max)).join();
+				VirtualMovie<Color[]> expected = MovieGenerator.createVirtualMovie(settings, payload);
+				Assertions.assertEquals(expected.getFrameCount(), progress.get(),
+						"progress must reach the frame count");
+				Assertions.assertEquals(expected.getFrameCount(), movie.size(), "frame counts must match");
+				for (int i = 0; i < movie.size(); i++) {
+					Assertions.assertArrayEquals(expected.frameAt(i), movie.get(i), "frames must match");
+				}
+			});
+		} finally {
+			executor.shutdown();
+		}
+		
+		GeneratorSettings settings = new GeneratorSettings(FrameInfo.ContentResolution._8,
+				GeneratorSettings.Padding.NONE);
+		CompletableFuture<List<Color[]>> invalid = MovieGenerator.createMovieAsync(settings,
+				PayloadSource.of(new byte[0]), Runnable::run, null);
+		Assertions.assertThrows(CompletionException.class, invalid::join, "failures must complete the future");
+		
+		List<Runnable> tasks = new ArrayList<>();
+		AtomicInteger progress = new AtomicInteger();
+		CompletableFuture<List<Color[]>> cancelled = MovieGenerator.createMovieAsync(settings,
+				PayloadSource.of(new byte[MAX_PAYLOAD_LENGTH]), tasks::add, created -> progress.incrementAndGet());
+		tasks.remove(0).run();
+		cancelled.cancel(true);
+		tasks.forEach(Runnable::run);
+		Assertions.assertEquals(0, progress.get(), "no frames must be created after cancellation");
+		Assertions.assertTrue(cancelled.isCancelled(), "the future must stay cancelled");
+	}
+	
+	@RepeatedTest(5)
+	void testUpdateMovie() {
+		test((settings, payload) -> testUpdateMovie(settings, payload, 3));
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (FrameInfo.ContentResolution resolution : PRODUCT_RESOLUTIONS) {
+			GeneratorSettings settings = new GeneratorSettings(resolution, GeneratorSettings.Padding.BOTH,
+					FrameInfo.Redundancy.STANDARD, FrameInfo.Layout.PRODUCT);
+			byte[] payload = new byte[random.nextInt(1, settings.getDataChunks() * 4)];
+			random.nextBytes(payload);
+			testUpdateMovie(settings, payload, 2);
+		}
+		
+		GeneratorSettings settings = new GeneratorSettings(FrameInfo.ContentResolution._8,
+				GeneratorSettings.Padding.NONE);
+		List<Color[]> movie = MovieGenerator.createMovie(settings, new byte[MAX_PAYLOAD_LENGTH]);
+		Assertions.assertThrows(IllegalArgumentException.class, () -> MovieGenerator.updateMovie(settings, movie,
+				new byte[MAX_PAYLOAD_LENGTH - 1], Collections.emptyList()), "payload lengths must match");
+	}
+	
+	private void testUpdateMovie(@NotNull GeneratorSettings settings, @NotNull byte[] payload, int changeCount) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		List<Color[]> movie = MovieGenerator.createMovie(settings, payload);
+		byte[] modified = Arrays.copyOf(payload, payload.length);
+		List<PayloadRange> changes = new ArrayList<>();
+		for (int i = 0; i < changeCount; i++) {
+			int offset = random.nextInt(payload.length);
+			int length = random.nextInt(Math.min(10, payload.length - offset) + 1);
+			for (int j = offset; j < offset + length; j++) {
+				modified[j] = (byte) random.nextInt(256);
+			}
+			changes.add(new PayloadRange(offset, length));
+		}
+		
+		List<Color[]> expected = MovieGenerator.createMovie(settings, modified);
+		List<Color[]> updated = MovieGenerator.updateMovie(settings, movie, modified, changes);
+		List<PackedFrame> packed = MovieGenerator.updatePackedMovie(settings, MovieGenerator.createPackedMovie(
+				settings, payload, PackedFrame.Format.BYTE_PER_CELL, false), modified, changes);
+		Assertions.assertEquals(expected.size(), updated.size(), "frame counts must match");
+		for (int i = 0; i < expected.size(); i++) {
+			Assertions.assertArrayEquals(expected.get(i), updated.get(i), "updated frames must match");
+			Assertions.assertArrayEquals(expected.get(i), packed.get(i).toColors(), "updated packed frames must match");
+		}
+	}
+	
+	@RepeatedTest(5)
+	void testCompression() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		StringBuilder builder = new StringBuilder();
+		int count = random.nextInt(1, 100);
+		for (int i = 0; i < count; i++) {
+			builder.append("{\"id\":").append(random.nextInt(1000)).append(",\"zone\":\"A\"}");
+		}
+		byte[] structured = builder.toString().getBytes(StandardCharsets.UTF_8);
+		byte[] noise = new byte[count];
+		random.nextBytes(noise);
+		
+		for (PayloadCodec codec : PayloadCodec.values()) {
+			for (FrameInfo.ContentResolution resolution : CONTENT_RESOLUTIONS) {
+				GeneratorSettings settings = new GeneratorSettings(resolution, GeneratorSettings.Padding.NONE,
+						FrameInfo.Redundancy.STANDARD, FrameInfo.Layout.INTERLEAVED, codec);
+				for (byte[] payload : new byte[][]{structured, noise}) {
+					if (settings.getFrameCount(payload.length) == -1) {
+						continue;
+					}
+					
+					List<Color[]> movie = MovieGenerator.createMovie(settings, payload);
+					Assertions.assertTrue(movie.size() <= settings.getFrameCount(payload.length),
+							"compression must not increase the frame count");
+					MovieParser parser = new MovieParser(settings);
+					byte[] result = null;
+					for (Color[] frame : movie) {
+						Assertions.assertNull(result, "parsing must not complete before all frames are added");
+						result = parser.tryAddFrame(frame);
+					}
+					Assertions.assertArrayEquals(payload, result, "decoded payload must equal encoded payload");
+					
+					Iterator<Color[]> fountain = MovieGenerator.createFountainMovie(settings, payload);
+					MovieParser fountainParser = new MovieParser(settings);
+					result = null;
+					for (int i = 0; i < 1000 && result == null; i++) {
+						result = fountainParser.tryAddFrame(fountain.next());
+					}
+					Assertions.assertArrayEquals(payload, result, "fountain movies must also be decompressed");
+				}
+			}
+		}
+	}
+	
+	@RepeatedTest(5)
+	void testMovieHeader() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (FrameInfo.ContentResolution resolution : CONTENT_RESOLUTIONS) {
+			GeneratorSettings settings = new GeneratorSettings(resolution, GeneratorSettings.Padding.NONE,
+					FrameInfo.Redundancy.STANDARD, FrameInfo.Layout.INTERLEAVED, PayloadCodec.NONE,
+					FrameInfo.MovieHeader.EVERY_FRAME);
+			byte[] payload = new byte[random.nextInt(1, MAX_PAYLOAD_LENGTH)];
+			byte[] foreignPayload = new byte[payload.length];
+			random.nextBytes(payload);
+			random.nextBytes(foreignPayload);
+			List<Color[]> movie = MovieGenerator.createMovie(settings, payload);
+			List<Color[]> foreignMovie = MovieGenerator.createMovie(settings, foreignPayload);
+			
+			MovieParser parser = new MovieParser(settings);
+			MovieParser otherModeParser = new MovieParser(new FrameInfo(resolution));
+			Assertions.assertEquals(-1, parser.getExpectedFrameCount(), "frame count must be unknown at first");
+			for (int i = 1; i < movie.size(); i++) {
+				Assertions.assertNull(parser.tryAddFrame(movie.get(i)), "first frame must be required");
+				Assertions.assertNull(otherModeParser.tryAddFrame(movie.get(i)), "movie header mode must match");
+				Assertions.assertEquals(movie.size(), parser.getExpectedFrameCount(),
+						"frame count must be known from any regular frame");
+				Assertions.assertEquals(i, parser.getReceivedFrameCount(), "received frames must be counted");
+			}
+			
+			if (movie.size() > 1) {
+				Assertions.assertNull(parser.tryAddFrame(movie.get(1)), "first frame must be required");
+			}
+			for (int i = 1; i < foreignMovie.size(); i++) {
+				Assertions.assertNull(parser.tryAddFrame(foreignMovie.get(i)), "first frame must be required");
+			}
+			Assertions.assertEquals(movie.size() - 1, parser.getReceivedFrameCount(), "foreign frames must be dropped");
+			Assertions.assertArrayEquals(payload, parser.tryAddFrame(movie.get(0)),
+					"frames of other movies must not prevent decoding");
+			
+			VirtualMovie<Color[]> virtual = MovieGenerator.createVirtualMovie(settings, payload);
+			for (int i = 0; i < movie.size(); i++) {
+				Assertions.assertArrayEquals(movie.get(i), virtual.frameAt(i), "virtual frames must match");
+			}
+			
+			byte[] modified = payload.clone();
+			int index = random.nextInt(modified.length);
+			modified[index]++;
+			List<Color[]> updated = MovieGenerator.updateMovie(settings, movie, modified,
+					Collections.singletonList(new PayloadRange(index, 1)));
+			List<Color[]> expected = MovieGenerator.createMovie(settings, modified);
+			for (int i = 0; i < expected.size(); i++) {
+				Assertions.assertArrayEquals(expected.get(i), updated.get(i), "updated movie headers must match");
+			}
+		}
+	}
+	
+	@RepeatedTest(5)
+	void testFrameDigest() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (FrameInfo.ContentResolution resolution : CONTENT_RESOLUTIONS) {
+			for (FrameInfo.MovieHeader movieHeader : FrameInfo.MovieHeader.values()) {
+				GeneratorSettings settings = new GeneratorSettings(resolution, GeneratorSettings.Padding.NONE,
+						FrameInfo.Redundancy.STANDARD, FrameInfo.Layout.INTERLEAVED, PayloadCodec.NONE,
+						movieHeader, FrameInfo.Integrity.FRAME_DIGEST);
+				GeneratorSettings otherSettings = new GeneratorSettings(resolution, GeneratorSettings.Padding.NONE,
+						FrameInfo.Redundancy.STANDARD, FrameInfo.Layout.INTERLEAVED, PayloadCodec.NONE, movieHeader);
+				byte[] payload = new byte[random.nextInt(1, MAX_PAYLOAD_LENGTH)];
+				random.nextBytes(payload);
+				
+				//frames without digests are valid codewords, but they are not intact
+				MovieParser parser = new MovieParser(settings);
+				for (Color[] frame : MovieGenerator.createMovie(otherSettings, payload)) {
+					parser.tryAddFrame(frame);
+				}
+				List<Color[]> movie = MovieGenerator.createMovie(settings, payload);
+				Collections.shuffle(movie);
+				byte[] result = null;
+				for (Color[] frame : movie) {
+					Assertions.assertNull(result, "parsing must not complete before all frames are added");
+					result = parser.tryAddFrame(frame);
+				}
+				Assertions.assertArrayEquals(payload, result, "decoded payload must equal encoded payload");
+				
+				Iterator<Color[]> fountain = MovieGenerator.createFountainMovie(settings, payload);
+				MovieParser fountainParser = new MovieParser(settings);
+				result = null;
+				for (int i = 0; i < 1000 && result == null; i++) {
+					result = fountainParser.tryAddFrame(fountain.next());
+				}
+				Assertions.assertArrayEquals(payload, result, "fountain frames must also contain digests");
+				
+				if (movieHeader == FrameInfo.MovieHeader.FIRST_FRAME) {
+					List<Color[]> streamed = new ArrayList<>();
+					try {
+						MovieGenerator.streamMovie(settings, new ByteArrayInputStream(payload), streamed::add);
+					} catch (IOException e) {
+						throw new AssertionError(e);
+					}
+					MovieParser streamParser = new MovieParser(settings);
+					result = null;
+					for (Color[] frame : streamed) {
+						result = streamParser.tryAddFrame(frame);
+					}
+					Assertions.assertArrayEquals(payload, result, "streamed frames must also contain digests");
+				}
+			}
+		}
+	}
+	
+	@RepeatedTest(5)
+	void testRankedCandidates() {
+		GeneratorSettings settings = new GeneratorSettings(FrameInfo.ContentResolution._8,
+				GeneratorSettings.Padding.NONE);
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		byte[] payload = new byte[2 * MAX_PAYLOAD_LENGTH];
+		byte[] foreignPayload = new byte[payload.length];
+		random.nextBytes(payload);
+		random.nextBytes(foreignPayload);
+		List<Color[]> movie = MovieGenerator.createMovie(settings, payload);
+		List<Color[]> foreignMovie = MovieGenerator.createMovie(settings, foreignPayload);
+		Assertions.assertTrue(movie.size() > 20, "the movie must be long enough for a combinatorial explosion");
+		
+		//every sequence ID has two versions, the combinations would not fit into memory
+		MovieParser parser = new MovieParser(settings);
+		for (int i = 1; i < movie.size(); i++) {
+			Assertions.assertNull(parser.tryAddFrame(foreignMovie.get(i)), "first frame must be required");
+			Assertions.assertNull(parser.tryAddFrame(movie.get(i)), "first frame must be required");
+			Assertions.assertNull(parser.tryAddFrame(movie.get(i)), "first frame must be required");
+		}
+		Assertions.assertArrayEquals(payload, parser.tryAddFrame(movie.get(0)),
+				"the most often received versions must be tried first");
+	}
+	
+	@RepeatedTest(5)
+	void testBestFirstCandidates() {
+		GeneratorSettings settings = new GeneratorSettings(FrameInfo.ContentResolution._8,
+				GeneratorSettings.Padding.NONE);
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		byte[] payload = new byte[2 * MAX_PAYLOAD_LENGTH];
+		byte[] foreignPayload = new byte[payload.length];
+		random.nextBytes(payload);
+		random.nextBytes(foreignPayload);
+		List<Color[]> movie = MovieGenerator.createMovie(settings, payload);
+		List<Color[]> foreignMovie = MovieGenerator.createMovie(settings, foreignPayload);
+		Assertions.assertTrue(movie.size() > 20, "the movie must be long enough for a combinatorial explosion");
+		
+		//the correct versions of the first and last regular frames are only the second most often received ones
+		MovieParser parser = new MovieParser(settings);
+		for (int i = 1; i < movie.size(); i++) {
+			boolean foreignPreferred = i == 1 || i == movie.size() - 1;
+			Assertions.assertNull(parser.tryAddFrame(foreignMovie.get(i)), "first frame must be required");
+			Assertions.assertNull(parser.tryAddFrame(movie.get(i)), "first frame must be required");
+			Assertions.assertNull(parser.tryAddFrame((foreignPreferred ? foreignMovie : movie).get(i)),
+					"first frame must be required");
+		}
+		Assertions.assertArrayEquals(payload, parser.tryAddFrame(movie.get(0)),
+				"combinations with few less often received versions must be tried early");
+		
+		//too many combinations precede the correct one for a single call, the later calls continue the search
+		parser = new MovieParser(settings);
+		for (int i = 1; i < movie.size(); i++) {
+			boolean foreignPreferred = i == 1 || i == movie.size() / 2 || i == movie.size() - 1;
+			Assertions.assertNull(parser.tryAddFrame(foreignMovie.get(i)), "first frame must be required");
+			Assertions.assertNull(parser.tryAddFrame(movie.get(i)), "first frame must be required");
+			Assertions.assertNull(parser.tryAddFrame((foreignPreferred ? foreignMovie : movie).get(i)),
+					"first frame must be required");
+		}
+		byte[] result = null;
+		for (int i = 0; result == null && i < 5; i++) {
+			result = parser.tryAddFrame(movie.get(0));
+		}
+		Assertions.assertArrayEquals(payload, result, "later calls must continue the search");
+	}
+	
+	@RepeatedTest(2)
+	void testLargePayload() {
+		//the frame tasks calculate the CRCs of their segments, the parser combines the CRCs of the frames
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (FrameInfo.MovieHeader movieHeader : FrameInfo.MovieHeader.values()) {
+			GeneratorSettings settings = new GeneratorSettings(FrameInfo.ContentResolution._256,
+					GeneratorSettings.Padding.NONE, FrameInfo.Redundancy.LOW, FrameInfo.Layout.INTERLEAVED,
+					PayloadCodec.NONE, movieHeader);
+			byte[] payload = new byte[random.nextInt(1 << 18, 1 << 19)];
+			random.nextBytes(payload);
+			List<Color[]> movie = MovieGenerator.createMovie(settings, payload);
+			Assertions.assertArrayEquals(MovieGenerator.createVirtualMovie(settings, payload).frameAt(0), movie.get(0),
+					"the combined CRC must equal the CRC of the whole payload");
+			Collections.shuffle(movie);
+			
+			MovieParser parser = new MovieParser(settings);
+			byte[] result = null;
+			for (Color[] frame : movie) {
+				Assertions.assertNull(result, "parsing must not complete before all frames are added");
+				result = parser.tryAddFrame(frame);
+			}
+			Assertions.assertArrayEquals(payload, result, "decoded payload must equal encoded payload");
+		}
+	}
+	
+	
 	@Contract(pure = true)
 	private void test(@NotNull BiConsumer<GeneratorSettings, byte[]> consumer) {
 		for (int payloadLength = 1; payloadLength <= MAX_PAYLOAD_LENGTH; payloadLength++) {
@@ -121,6 +752,62 @@ class GeneratorParserTest {
 		}
 	}
 	
+	private void corruptChunkRows(@NotNull Color[] frame, int rowCount) {
+		int resolution = (int) Math.sqrt(frame.length);
+		int[] rows = IntStream.range(0, resolution / 2).toArray();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int i = 0; i < rowCount; i++) {
+			int j = random.nextInt(i, rows.length);
+			int temp = rows[i];
+			rows[i] = rows[j];
+			rows[j] = temp;
+			for (int x = 0; x < resolution; x++) {
+				int index = x + rows[i] * 2 * resolution;
+				frame[index] = Color.fromBits((frame[index].getBits() + 1) % 8);
+				frame[index + resolution] = Color.fromBits((frame[index + resolution].getBits() + 1) % 8);
+			}
+		}
+	}
+	
+	private void corruptBurst(@NotNull Color[] frame, int length) {
+		int start = ThreadLocalRandom.current().nextInt(frame.length - length);
+		for (int i = start; i < start + length; i++) {
+			frame[i] = Color.fromBits((frame[i].getBits() + 1) % 8);
+		}
+	}
+	
+	@NotNull
+	@Contract(pure = true)
+	private int[] readChunks(@NotNull GeneratorSettings settings, @NotNull Color[] frame) {
+		int[] chunks = new int[settings.getContentChunks()];
+		FrameLayout.get(settings.getContentResolution(), 0).readChunks(removePadding(frame, settings.getPadding()),
+				chunks);
+		return chunks;
+	}
+	
+	@Contract(pure = true)
+	private boolean isFountainFrame(@NotNull GeneratorSettings settings, @NotNull int[] chunks) {
+		byte[] bytes = new byte[ChunkConverter.getByteCount(settings.getDataChunks())];
+		ChunkConverter.chunksToBytes(Arrays.copyOf(chunks, settings.getDataChunks()), bytes);
+		return (bytes[0] & 128) == 0 && (bytes[1] & 0x8) != 0;
+	}
+	
+	/**
+	 * Changes a payload chunk of a single codeword frame, then recalculates the correction chunks,
+	 * therefore the error correction considers the frame to be intact.
+	 */
+	@NotNull
+	private int[] corruptPayload(@NotNull GeneratorSettings settings, @NotNull int[] chunks) {
+		int dataChunks = settings.getDataChunks();
+		int[] data = Arrays.copyOf(chunks, dataChunks);
+		data[dataChunks / 2] ^= 0xfff;
+		int[] corrections = new int[settings.getCorrectionChunks()];
+		InterleavedEncoder.encode(data, corrections, settings.getCodewordCount());
+		System.arraycopy(data, 0, chunks, 0, dataChunks);
+		System.arraycopy(corrections, 0, chunks, dataChunks, corrections.length);
+		return chunks;
+	}
+	
 	@NotNull
 	@Contract(pure = true)
 	private Color[] removePadding(@NotNull Color[] frame, @NotNull GeneratorSettings.Padding padding) {
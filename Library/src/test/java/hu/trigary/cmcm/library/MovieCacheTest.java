@@ -0,0 +1,63 @@
+package hu.trigary.cmcm.library;
+
+import hu.trigary.cmcm.library.generator.GeneratorSettings;
+import hu.trigary.cmcm.library.generator.MovieCache;
+import hu.trigary.cmcm.library.generator.MovieGenerator;
+import hu.trigary.cmcm.library.utilities.Color;
+import hu.trigary.cmcm.library.utilities.FrameInfo;
+import hu.trigary.cmcm.library.utilities.PackedFrame;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Unit test that makes sure that {@link MovieCache} returns the correct movies and respects its size limit.
+ */
+@Execution(ExecutionMode.CONCURRENT)
+class MovieCacheTest {
+	@Test
+	void testCache() {
+		GeneratorSettings settings = new GeneratorSettings(FrameInfo.ContentResolution._16,
+				GeneratorSettings.Padding.NONE);
+		byte[][] payloads = new byte[3][500];
+		for (byte[] payload : payloads) {
+			ThreadLocalRandom.current().nextBytes(payload);
+		}
+		
+		long movieSize = MovieGenerator.createMovie(settings, payloads[0]).size() * (16 + 4 * 16 * 16);
+		MovieCache cache = new MovieCache(2 * movieSize);
+		List<Color[]> first = cache.getMovie(settings, payloads[0]);
+		Assertions.assertSame(first, cache.getMovie(settings, payloads[0].clone()), "movies must be cached");
+		Assertions.assertEquals(1, cache.getHitCount(), "the second request must be a hit");
+		Assertions.assertEquals(1, cache.getMissCount(), "the first request must be a miss");
+		Assertions.assertEquals(movieSize, cache.getSize(), "the size of the movie must be estimated");
+		
+		cache.getMovie(settings, payloads[1]);
+		cache.getMovie(settings, payloads[0]);
+		cache.getMovie(settings, payloads[2]);
+		Assertions.assertEquals(1, cache.getEvictionCount(), "the least recently used movie must be evicted");
+		Assertions.assertSame(first, cache.getMovie(settings, payloads[0]), "recently used movies must be kept");
+		Assertions.assertTrue(cache.getSize() <= 2 * movieSize, "the size limit must be respected");
+		
+		List<Color[]> expected = MovieGenerator.createMovie(settings, payloads[2]);
+		List<Color[]> actual = cache.getMovie(settings, payloads[2]);
+		for (int i = 0; i < expected.size(); i++) {
+			Assertions.assertArrayEquals(expected.get(i), actual.get(i), "cached movies must be correct");
+		}
+		
+		cache = new MovieCache(Long.MAX_VALUE);
+		Assertions.assertNotSame(cache.getMovie(settings, payloads[0]), cache.getMovie(new GeneratorSettings(
+				FrameInfo.ContentResolution._16, GeneratorSettings.Padding.BOTH), payloads[0]),
+				"movies with different settings must be different");
+		List<PackedFrame> packed = cache.getPackedMovie(settings, payloads[2],
+				PackedFrame.Format.BYTE_PER_CELL, false);
+		Assertions.assertSame(packed, cache.getPackedMovie(settings, payloads[2],
+				PackedFrame.Format.BYTE_PER_CELL, false), "packed movies must be cached");
+		Assertions.assertNotSame(packed, cache.getPackedMovie(settings, payloads[2],
+				PackedFrame.Format.THREE_BITS_PER_CELL, false), "formats must be distinguished");
+	}
+}
@@ -0,0 +1,45 @@
+package hu.trigary.cmcm.library;
+
+import hu.trigary.cmcm.library.utilities.PackedFrame;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Unit test that makes sure that {@link PackedFrame} instances store each cell independently.
+ */
+@Execution(ExecutionMode.CONCURRENT)
+class PackedFrameTest {
+	@RepeatedTest(20)
+	void testRoundTrip() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int resolution = random.nextInt(1, 100);
+		int[] expected = random.ints(resolution * resolution, 0, 8).toArray();
+		for (PackedFrame.Format format : PackedFrame.Format.values()) {
+			int offset = random.nextInt(10);
+			int byteCount = PackedFrame.getByteCount(resolution, format);
+			ByteBuffer buffer = random.nextBoolean() ? ByteBuffer.allocate(offset + byteCount + 1)
+					: ByteBuffer.allocateDirect(offset + byteCount + 1);
+			buffer.put(offset + byteCount, (byte) 0x55);
+			buffer.position(offset);
+			PackedFrame frame = PackedFrame.wrap(buffer, resolution, format);
+			
+			for (int i = 0; i < expected.length; i++) {
+				frame.setBits(i, 7);
+				frame.setBits(i, expected[i]);
+			}
+			for (int i = 0; i < expected.length; i++) {
+				Assertions.assertEquals(expected[i], frame.getBits(i), "cells must keep their values");
+			}
+			Assertions.assertEquals(0x55, buffer.get(offset + byteCount), "bytes after the frame must be untouched");
+			Assertions.assertEquals(byteCount, frame.getBuffer().remaining(), "buffer view must contain the frame");
+			
+			PackedFrame copy = PackedFrame.fromColors(frame.toColors(), format, false);
+			Assertions.assertEquals(frame.getBuffer(), copy.getBuffer(), "color conversions must be lossless");
+		}
+	}
+}
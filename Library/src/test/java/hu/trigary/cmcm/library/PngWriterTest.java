@@ -0,0 +1,108 @@
+package hu.trigary.cmcm.library;
+
+import hu.trigary.cmcm.library.utilities.Color;
+import hu.trigary.cmcm.library.utilities.FrameRasterizer;
+import hu.trigary.cmcm.library.utilities.PackedFrame;
+import hu.trigary.cmcm.library.utilities.PngWriter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+/**
+ * Unit test that decodes the images created by {@link PngWriter} and compares them to rasterized frames.
+ */
+@Execution(ExecutionMode.CONCURRENT)
+class PngWriterTest {
+	@RepeatedTest(10)
+	void testPng() throws IOException {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int resolution = random.nextInt(1, 40);
+		int cellSize = random.nextInt(1, 6);
+		int padding = random.nextInt(0, 10);
+		Color[] frame = createFrame(resolution);
+		PngWriter writer = new PngWriter(resolution, cellSize, padding);
+		int[] expected = new FrameRasterizer(resolution, cellSize, padding).rasterize(frame, null);
+		
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		writer.writePng(frame, output);
+		Assertions.assertArrayEquals(expected, decode(output.toByteArray()), "images must be encoded correctly");
+		
+		output.reset();
+		writer.writePng(PackedFrame.fromColors(frame, PackedFrame.Format.BYTE_PER_CELL, false), output);
+		Assertions.assertArrayEquals(expected, decode(output.toByteArray()), "packed frames must be encoded");
+	}
+	
+	@RepeatedTest(5)
+	void testApng() throws IOException {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int resolution = random.nextInt(1, 40);
+		int cellSize = random.nextInt(1, 6);
+		int frameCount = random.nextInt(1, 10);
+		List<Color[]> frames = new ArrayList<>();
+		for (int i = 0; i < frameCount; i++) {
+			frames.add(createFrame(resolution));
+		}
+		
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		new PngWriter(resolution, cellSize, 1).writeApng(frames, 100, output);
+		byte[] bytes = output.toByteArray();
+		int[] expected = new FrameRasterizer(resolution, cellSize, 1).rasterize(frames.get(0), null);
+		Assertions.assertArrayEquals(expected, decode(bytes), "the first frame must be the default image");
+		
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, 8, bytes.length - 8);
+		List<String> types = new ArrayList<>();
+		int sequence = 0;
+		while (buffer.hasRemaining()) {
+			int length = buffer.getInt();
+			int start = buffer.position();
+			String type = new String(bytes, start, 4, StandardCharsets.US_ASCII);
+			types.add(type);
+			if (type.equals("fcTL") || type.equals("fdAT")) {
+				Assertions.assertEquals(sequence++, buffer.getInt(start + 4), "sequence numbers must be consecutive");
+			}
+			
+			CRC32 crc = new CRC32();
+			crc.update(bytes, start, length + 4);
+			Assertions.assertEquals((int) crc.getValue(), buffer.getInt(start + length + 4), "CRCs must be valid");
+			buffer.position(start + length + 8);
+		}
+		
+		List<String> expectedTypes = new ArrayList<>();
+		expectedTypes.add("IHDR");
+		expectedTypes.add("PLTE");
+		expectedTypes.add("acTL");
+		for (int i = 0; i < frameCount; i++) {
+			expectedTypes.add("fcTL");
+			expectedTypes.add(i == 0 ? "IDAT" : "fdAT");
+		}
+		expectedTypes.add("IEND");
+		Assertions.assertEquals(expectedTypes, types, "the chunks must be in the correct order");
+	}
+	
+	private static Color[] createFrame(int resolution) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Color[] frame = new Color[resolution * resolution];
+		for (int i = 0; i < frame.length; i++) {
+			frame[i] = Color.fromBits(random.nextInt(8));
+		}
+		return frame;
+	}
+	
+	private static int[] decode(byte[] png) throws IOException {
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+		return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+	}
+}
@@ -0,0 +1,100 @@
+package hu.trigary.cmcm.library;
+
+import hu.trigary.cmcm.library.generator.TransmissionSchedule;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Unit test that checks the frame orders and the completion times of {@link TransmissionSchedule} instances.
+ */
+@Execution(ExecutionMode.CONCURRENT)
+class TransmissionScheduleTest {
+	@RepeatedTest(20)
+	void testOrder() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int frameCount = random.nextInt(2, 300);
+		int repeats = random.nextInt(1, frameCount);
+		TransmissionSchedule schedule = TransmissionSchedule.create(frameCount, repeats);
+		int[] order = schedule.toArray();
+		Assertions.assertEquals(frameCount - 1 + repeats, schedule.getLength(), "loop length must include repeats");
+		Assertions.assertEquals(0, order[0], "the loop must start with the first frame");
+		
+		int expectedRegular = 1;
+		int firstFrames = 0;
+		int previousFirst = -1;
+		int minDistance = Integer.MAX_VALUE;
+		int maxDistance = 0;
+		for (int i = 0; i < order.length; i++) {
+			Assertions.assertEquals(order[i], schedule.getFrameIndex(i + (long) order.length * 3), "loops must repeat");
+			if (order[i] != 0) {
+				Assertions.assertEquals(expectedRegular++, order[i], "regular frames must keep their order");
+				continue;
+			}
+			
+			firstFrames++;
+			if (previousFirst != -1) {
+				minDistance = Math.min(minDistance, i - previousFirst);
+				maxDistance = Math.max(maxDistance, i - previousFirst);
+			}
+			previousFirst = i;
+		}
+		maxDistance = Math.max(maxDistance, order.length - previousFirst);
+		minDistance = Math.min(minDistance, order.length - previousFirst);
+		
+		Assertions.assertEquals(frameCount, expectedRegular, "all regular frames must be displayed");
+		Assertions.assertEquals(repeats, firstFrames, "the first frame must be repeated");
+		Assertions.assertTrue(maxDistance - minDistance <= 1, "repeats must be spread evenly");
+	}
+	
+	@RepeatedTest(10)
+	void testFrameRate() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int frameCount = random.nextInt(1, 1025);
+		double frameRate = random.nextInt(5, 30);
+		double delay = random.nextDouble(2.5 / frameRate, 10); //at least two frames must fit
+		TransmissionSchedule schedule = TransmissionSchedule.forFrameRate(frameCount, frameRate, delay);
+		int[] order = schedule.toArray();
+		int previous = -1;
+		for (int i = 0; i < order.length * 2; i++) {
+			if (order[i % order.length] == 0) {
+				if (previous != -1) {
+					Assertions.assertTrue((i - previous) / frameRate <= delay, "first frame delay must be respected");
+				}
+				previous = i;
+			}
+		}
+		
+		if (schedule.getFirstFrameRepeats() > 1) {
+			TransmissionSchedule fewer = TransmissionSchedule.create(frameCount, schedule.getFirstFrameRepeats() - 1);
+			Assertions.assertTrue(Math.ceil((double) fewer.getLength() / fewer.getFirstFrameRepeats()) / frameRate
+					> delay, "the first frame must not be repeated more than necessary");
+		}
+	}
+	
+	@Test
+	void testCompletion() {
+		for (int frameCount = 1; frameCount < 100; frameCount += 7) {
+			//a single loop is necessary and sufficient when no frames are missed
+			Assertions.assertEquals(frameCount, TransmissionSchedule.create(frameCount, 1).getExpectedCompletion(0),
+					1e-6, "lossless completion must take a single loop");
+		}
+		
+		for (int frameCount = 2; frameCount < 60; frameCount += 7) {
+			TransmissionSchedule single = TransmissionSchedule.create(frameCount, 1);
+			Assertions.assertEquals((frameCount + 1) / 2.0, single.getExpectedFirstFrameWait(0), 1e-6,
+					"lossless receivers must wait half a loop on average");
+			TransmissionSchedule repeated = TransmissionSchedule.create(frameCount, 2);
+			for (double lossRate = 0; lossRate < 0.9; lossRate += 0.2) {
+				Assertions.assertTrue(repeated.getExpectedFirstFrameWait(lossRate)
+						< single.getExpectedFirstFrameWait(lossRate), "repeats must shorten the first frame wait");
+				Assertions.assertTrue(repeated.getExpectedCompletion(lossRate)
+						>= single.getExpectedCompletion(lossRate), "repeats must lengthen the loop");
+			}
+		}
+	}
+}
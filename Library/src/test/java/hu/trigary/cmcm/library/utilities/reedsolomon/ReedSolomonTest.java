@@ -2,6 +2,7 @@ package hu.trigary.cmcm.library.utilities.reedsolomon;
 
 import hu.trigary.cmcm.library.utilities.FrameInfo;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.parallel.Execution;
@@ -9,6 +10,9 @@ import org.junit.jupiter.api.parallel.ExecutionMode;
 
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.IntStream;
 
@@ -21,8 +25,13 @@ import java.util.stream.IntStream;
 class ReedSolomonTest {
 	private static final int COMBINATION_TEST_BOUND = 100;
 	private static final int LARGEST_STEP_DIVIDER = 20;
+	private static final int MIN_MISCORRECTION_FREE_SIZE = 20;
 	private static final int[] CORRECTION_SIZES = Arrays.stream(FrameInfo.ContentResolution.values())
-			.mapToInt(resolution -> new FrameInfo(resolution).getCorrectionChunks())
+			.flatMap(resolution -> Arrays.stream(FrameInfo.Redundancy.values())
+					.map(redundancy -> new FrameInfo(resolution, redundancy)))
+			.mapToInt(info -> info.getCorrectionChunks() / info.getCodewordCount())
+			.sorted()
+			.distinct()
 			.toArray();
 	
 	@Test
@@ -48,6 +57,266 @@ class ReedSolomonTest {
 		}
 	}
 	
+	@Test
+	void testEncoderMatchesDivision() {
+		Random random = ThreadLocalRandom.current();
+		for (int correctionSize : CORRECTION_SIZES) {
+			GaloisFieldPoly generator = GaloisField.ONE;
+			for (int i = 1; i <= correctionSize; i++) {
+				generator = generator.multiply(new GaloisFieldPoly(new int[]{1, GaloisField.exp(i)}));
+			}
+			
+			for (int payloadSize = 1; payloadSize < GaloisField.SIZE - correctionSize; payloadSize += payloadSize) {
+				int[] payload = new int[payloadSize];
+				Arrays.setAll(payload, i -> random.nextInt(GaloisField.SIZE));
+				int[] remainder = new GaloisFieldPoly(payload)
+						.multiplyByMonomial(correctionSize, 1)
+						.divide(generator)[1].getCoefficients();
+				int[] expected = new int[correctionSize];
+				System.arraycopy(remainder, 0, expected, correctionSize - remainder.length, remainder.length);
+				
+				int[] corrections = new int[correctionSize];
+				Arrays.fill(corrections, -1);
+				ReedSolomonEncoder.encode(payload, corrections);
+				Assertions.assertArrayEquals(expected, corrections,
+						() -> "encoder output must equal division remainder: P=" + payload.length + " C=" + correctionSize);
+			}
+		}
+	}
+	
+	@Test
+	void testSyndromes() {
+		Random random = ThreadLocalRandom.current();
+		for (int correctionSize : CORRECTION_SIZES) {
+			int[] chunks = new int[correctionSize + 1 + random.nextInt(GaloisField.SIZE - correctionSize - 1)];
+			Arrays.setAll(chunks, i -> random.nextInt(4) == 0 ? 0 : random.nextInt(GaloisField.SIZE));
+			GaloisFieldPoly poly = new GaloisFieldPoly(chunks.clone());
+			
+			int[] syndromes = new int[correctionSize];
+			SyndromeKernel.calculate(chunks, syndromes, new int[correctionSize]);
+			for (int j = 0; j < correctionSize; j++) {
+				Assertions.assertEquals(poly.evaluateAt(GaloisField.exp(j + 1)), syndromes[j],
+						"syndrome must equal the evaluation at the root");
+			}
+		}
+	}
+	
+	@Test
+	void testErasures() {
+		Random random = ThreadLocalRandom.current();
+		int[] chunks = new int[GaloisField.SIZE / 4];
+		for (int correctionSize : CORRECTION_SIZES) {
+			if (correctionSize >= chunks.length) {
+				break;
+			}
+			
+			int[] payload = new int[chunks.length - correctionSize];
+			Arrays.setAll(payload, i -> random.nextInt(GaloisField.SIZE));
+			int[] corrections = new int[correctionSize];
+			ReedSolomonEncoder.encode(payload, corrections);
+			ReedSolomonDecoder decoder = new ReedSolomonDecoder(chunks.length, correctionSize);
+			
+			int step = Math.max(1, correctionSize / LARGEST_STEP_DIVIDER);
+			for (int erasureCount = 0; erasureCount <= correctionSize; erasureCount += step) {
+				int errorCount = (correctionSize - erasureCount) / 2;
+				System.arraycopy(payload, 0, chunks, 0, payload.length);
+				System.arraycopy(corrections, 0, chunks, payload.length, corrections.length);
+				int[] indexes = shuffledIndexes(chunks.length);
+				corruptChunks(chunks, indexes, errorCount + erasureCount);
+				int[] erasures = Arrays.copyOfRange(indexes, errorCount, errorCount + erasureCount);
+				
+				String state = "T=" + chunks.length + " C=" + correctionSize + ", E=" + errorCount + ", R=" + erasureCount;
+				Assertions.assertTrue(decoder.decode(chunks, erasures, erasures.length),
+						() -> "errors and erasures within the limit must be corrected: " + state);
+				for (int i = 0; i < payload.length; i++) {
+					Assertions.assertEquals(payload[i], chunks[i], () -> "payload must equal original: " + state);
+				}
+			}
+		}
+	}
+	
+	@Test
+	void testChase() {
+		Random random = ThreadLocalRandom.current();
+		int[] chunks = new int[GaloisField.SIZE / 4];
+		for (int correctionSize : CORRECTION_SIZES) {
+			if (correctionSize < MIN_MISCORRECTION_FREE_SIZE) {
+				continue; //small codes miscorrect too often to assert failures
+			} else if (correctionSize >= chunks.length / 2) {
+				break;
+			}
+			
+			int[] payload = new int[chunks.length - correctionSize];
+			Arrays.setAll(payload, i -> random.nextInt(GaloisField.SIZE));
+			int[] corrections = new int[correctionSize];
+			ReedSolomonEncoder.encode(payload, corrections);
+			System.arraycopy(payload, 0, chunks, 0, payload.length);
+			System.arraycopy(corrections, 0, chunks, payload.length, corrections.length);
+			int[] original = chunks.clone();
+			
+			//one error more than what hard-decision decoding can correct, the first one is the least reliable chunk
+			int[] indexes = shuffledIndexes(chunks.length);
+			corruptChunks(chunks, indexes, correctionSize / 2 + 1);
+			//more unreliable chunks than what can be erased, all but the first one have useless alternatives
+			int uncertainCount = correctionSize + 1;
+			int[] positions = new int[uncertainCount];
+			int[] alternatives = new int[uncertainCount];
+			positions[0] = indexes[0];
+			alternatives[0] = original[indexes[0]];
+			for (int i = 1; i < uncertainCount; i++) {
+				positions[i] = indexes[correctionSize / 2 + i];
+				alternatives[i] = chunks[positions[i]] ^ 1;
+			}
+			
+			String state = "T=" + chunks.length + " C=" + correctionSize;
+			Assertions.assertFalse(new ChaseDecoder(chunks.length, correctionSize, 2)
+					.decode(chunks, positions, alternatives, uncertainCount), () -> "budget must be respected: " + state);
+			Assertions.assertTrue(new ChaseDecoder(chunks.length, correctionSize, 3)
+					.decode(chunks, positions, alternatives, uncertainCount), () -> "decoding must succeed: " + state);
+			Assertions.assertArrayEquals(original, chunks, () -> "chunks must equal original: " + state);
+		}
+	}
+	
+	@Test
+	void testBatch() {
+		Random random = ThreadLocalRandom.current();
+		int blockCount = 70;
+		int[] chunks = new int[GaloisField.SIZE / 8];
+		for (int correctionSize : CORRECTION_SIZES) {
+			if (correctionSize < MIN_MISCORRECTION_FREE_SIZE) {
+				continue; //small codes miscorrect too often to assert failures
+			} else if (correctionSize >= chunks.length) {
+				break;
+			}
+			
+			int[][] originals = new int[blockCount][];
+			int[] batch = new int[chunks.length * blockCount];
+			for (int f = 0; f < blockCount; f++) {
+				int[] payload = new int[chunks.length - correctionSize];
+				Arrays.setAll(payload, i -> random.nextInt(GaloisField.SIZE));
+				int[] corrections = new int[correctionSize];
+				ReedSolomonEncoder.encode(payload, corrections);
+				System.arraycopy(payload, 0, chunks, 0, payload.length);
+				System.arraycopy(corrections, 0, chunks, payload.length, corrections.length);
+				originals[f] = chunks.clone();
+				corruptChunks(chunks, f % 3 == 0 ? 0 : f % 3 == 1 ? correctionSize / 2 : correctionSize);
+				for (int i = 0; i < chunks.length; i++) {
+					batch[i * blockCount + f] = chunks[i];
+				}
+			}
+			
+			long[] successes = new long[2];
+			int successCount = new BatchReedSolomonDecoder(chunks.length, correctionSize, blockCount)
+					.decode(batch, blockCount, successes);
+			Assertions.assertEquals(blockCount - blockCount / 3, successCount, "correctable blocks must be decoded");
+			for (int f = 0; f < blockCount; f++) {
+				boolean success = (successes[f / 64] & (1L << f)) != 0;
+				Assertions.assertEquals(f % 3 != 2, success, "success bitmap must be correct");
+				for (int i = 0; success && i < chunks.length; i++) {
+					Assertions.assertEquals(originals[f][i], batch[i * blockCount + f], "block must equal original");
+				}
+			}
+		}
+	}
+	
+	@Test
+	void testInterleaved() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			testInterleaved(null);
+			testInterleaved(executor);
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	private void testInterleaved(@Nullable Executor executor) {
+		Random random = ThreadLocalRandom.current();
+		for (FrameInfo.ContentResolution resolution : FrameInfo.ContentResolution.values()) {
+			FrameInfo info = new FrameInfo(resolution);
+			int codewordCount = info.getCodewordCount();
+			int[] payload = new int[info.getDataChunks()];
+			Arrays.setAll(payload, i -> random.nextInt(GaloisField.SIZE));
+			int[] corrections = new int[info.getCorrectionChunks()];
+			InterleavedEncoder.encode(payload, corrections, codewordCount);
+			
+			int[] chunks = new int[info.getContentChunks()];
+			System.arraycopy(payload, 0, chunks, 0, payload.length);
+			System.arraycopy(corrections, 0, chunks, payload.length, corrections.length);
+			//a burst crossing the end of the payload may hit a codeword once more on both sides
+			int burstLength = Math.max(0, corrections.length / codewordCount / 2 - 1) * codewordCount;
+			int burstStart = random.nextInt(chunks.length - burstLength + 1);
+			for (int i = burstStart; i < burstStart + burstLength; i++) {
+				chunks[i] ^= 1 + random.nextInt(GaloisField.SIZE - 1);
+			}
+			
+			InterleavedDecoder decoder = new InterleavedDecoder(payload.length, corrections.length, codewordCount, 1,
+					executor);
+			Assertions.assertTrue(decoder.decode(chunks), "burst spread across codewords must be corrected");
+			Assertions.assertArrayEquals(payload, Arrays.copyOf(chunks, payload.length), "payload must be restored");
+			Assertions.assertArrayEquals(corrections, Arrays.copyOfRange(chunks, payload.length, chunks.length),
+					"corrections must be restored");
+			
+			chunks[random.nextInt(chunks.length)] ^= 1;
+			boolean[] erasureMask = new boolean[chunks.length];
+			Assertions.assertTrue(decoder.decode(chunks, erasureMask), "the decoder must be reusable");
+			Assertions.assertArrayEquals(payload, Arrays.copyOf(chunks, payload.length), "payload must be restored");
+		}
+	}
+	
+	@Test
+	void testProduct() {
+		Random random = ThreadLocalRandom.current();
+		for (FrameInfo.ContentResolution resolution : FrameInfo.ContentResolution.values()) {
+			if (resolution == FrameInfo.ContentResolution._8) {
+				continue;
+			}
+			
+			FrameInfo info = new FrameInfo(resolution, FrameInfo.Redundancy.STANDARD, FrameInfo.Layout.PRODUCT);
+			int size = info.getProductSize();
+			int rowCorrections = info.getProductRowCorrections();
+			int columnCorrections = info.getProductColumnCorrections();
+			int[] grid = new int[size * size];
+			for (int row = 0; row < size - columnCorrections; row++) {
+				for (int column = 0; column < size - rowCorrections; column++) {
+					grid[column + row * size] = random.nextInt(GaloisField.SIZE);
+				}
+			}
+			ProductEncoder.encode(grid, size, rowCorrections, columnCorrections);
+			
+			int[] row = new int[size];
+			int[] column = new int[size];
+			for (int i = 0; i < size; i++) {
+				System.arraycopy(grid, i * size, row, 0, size);
+				int index = i;
+				Arrays.setAll(column, j -> grid[index + j * size]);
+				Assertions.assertFalse(SyndromeKernel.calculate(row, new int[rowCorrections], new int[rowCorrections]),
+						"each row must be a codeword");
+				Assertions.assertFalse(SyndromeKernel.calculate(column, new int[columnCorrections],
+						new int[columnCorrections]), "each column must be a codeword");
+			}
+			
+			//whole torn rows and scattered errors
+			int[] chunks = grid.clone();
+			int[] rows = shuffledIndexes(size);
+			for (int i = 0; i < columnCorrections / 2; i++) {
+				for (int j = 0; j < size; j++) {
+					chunks[j + rows[i] * size] ^= 1 + random.nextInt(GaloisField.SIZE - 1);
+				}
+			}
+			for (int i = columnCorrections / 2; i < size; i++) {
+				if (random.nextBoolean()) {
+					chunks[random.nextInt(size) + rows[i] * size] ^= 1 + random.nextInt(GaloisField.SIZE - 1);
+				}
+			}
+			
+			int[] cellIndexes = IntStream.range(0, grid.length).toArray();
+			ProductDecoder decoder = new ProductDecoder(size, rowCorrections, columnCorrections, cellIndexes);
+			Assertions.assertTrue(decoder.decode(chunks), "torn rows must be corrected");
+			Assertions.assertArrayEquals(grid, chunks, "grid must be restored");
+		}
+	}
+	
 	@Test
 	void testHardcoded() {
 		testHardcoded(new int[]{142, 164, 186}, new int[]{3650, 3205, 1961, 2237, 1217});
@@ -57,7 +326,7 @@ class ReedSolomonTest {
 	private void testHardcoded(@NotNull int[] payload, @NotNull int[] corrections) {
 		int[] chunks = new int[payload.length + corrections.length];
 		for (int errorCount = 0; errorCount < chunks.length; errorCount += errorCount / 2 + 2) {
-			corruptAndAssertDecode(chunks, payload, corrections, errorCount);
+			corruptAndAssertDecode(chunks, payload, corrections, errorCount, null);
 		}
 	}
 	
@@ -68,13 +337,14 @@ class ReedSolomonTest {
 		
 		int[] corrections = new int[correctionSize];
 		ReedSolomonEncoder.encode(payload, corrections);
+		ReedSolomonDecoder decoder = new ReedSolomonDecoder(mutableChunksArray.length, correctionSize);
 		for (int errorCount = 0; errorCount <= mutableChunksArray.length; errorCount += errorCountSteps) {
-			corruptAndAssertDecode(mutableChunksArray, payload, corrections, errorCount);
+			corruptAndAssertDecode(mutableChunksArray, payload, corrections, errorCount, decoder);
 		}
 	}
 	
 	private void corruptAndAssertDecode(@NotNull int[] mutableChunksArray, @NotNull int[] payload,
-			@NotNull int[] corrections, int errorCount) {
+			@NotNull int[] corrections, int errorCount, @Nullable ReedSolomonDecoder decoder) {
 		int maxCorrectableErrors = corrections.length / 2;
 		
 		System.arraycopy(payload, 0, mutableChunksArray, 0, payload.length);
@@ -82,7 +352,9 @@ class ReedSolomonTest {
 		corruptChunks(mutableChunksArray, errorCount);
 		String state = "T=" + mutableChunksArray.length + " C=" + corrections.length + ", E=" + errorCount;
 		
-		if (!ReedSolomonDecoder.decode(mutableChunksArray, corrections.length)) {
+		boolean success = decoder == null ? ReedSolomonDecoder.decode(mutableChunksArray, corrections.length)
+				: decoder.decode(mutableChunksArray);
+		if (!success) {
 			Assertions.assertTrue(errorCount > maxCorrectableErrors,
 					() -> "error count must be higher than max: " + state);
 			return;
@@ -101,7 +373,12 @@ class ReedSolomonTest {
 	}
 	
 	private void corruptChunks(@NotNull int[] chunks, int errorCount) {
-		int[] indexes = IntStream.range(0, chunks.length).toArray();
+		corruptChunks(chunks, shuffledIndexes(chunks.length), errorCount);
+	}
+	
+	@NotNull
+	private int[] shuffledIndexes(int length) {
+		int[] indexes = IntStream.range(0, length).toArray();
 		ThreadLocalRandom random = ThreadLocalRandom.current();
 		for (int i = 0; i < indexes.length - 2; i++) {
 			int j = random.nextInt(i, indexes.length);
@@ -109,7 +386,11 @@ class ReedSolomonTest {
 			indexes[i] = indexes[j];
 			indexes[j] = temp;
 		}
-		
+		return indexes;
+	}
+	
+	private void corruptChunks(@NotNull int[] chunks, @NotNull int[] indexes, int errorCount) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
 		for (int i = 0; i < errorCount; i++) {
 			int current = chunks[indexes[i]];
 			int value;